@@ -0,0 +1,48 @@
+package university;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.TreeSet;
+
+/**
+ * Index of the students ordered by decreasing score (average plus bonus).
+ *
+ * The index is maintained incrementally: before the score of a student changes
+ * the student must be {@link #remove(Student) removed} and, once the score
+ * has been updated, {@link #add(Student) added} again.
+ * Both operations cost O(log n), so retrieving the best k students costs O(k log n).
+ *
+ * Students that did not take any exam are not indexed.
+ */
+class ScoreIndex {
+
+	private static final Comparator<Student> PER_PUNTEGGIO =
+			Comparator.comparingDouble(Student::getPunteggio).reversed()
+			.thenComparingInt(Student::getMatricola);
+
+	private final TreeSet<Student> classifica = new TreeSet<>(PER_PUNTEGGIO);
+
+	void add(Student s) {
+		if (s.getPunteggio() > 0)	// solo chi ha sostenuto almeno un esame
+			classifica.add(s);
+	}
+
+	void remove(Student s) {
+		if (s.getPunteggio() > 0)
+			classifica.remove(s);
+	}
+
+	/**
+	 * Retrieves the students with the highest score
+	 *
+	 * @param k the maximum number of students
+	 * @return the best students in order of decreasing score
+	 */
+	Student[] top(int k) {
+		Student[] top = new Student[Math.max(0, Math.min(k, classifica.size()))];
+		Iterator<Student> it = classifica.iterator();
+		for (int i=0; i<top.length; i++)
+			top[i] = it.next();
+		return top;
+	}
+}
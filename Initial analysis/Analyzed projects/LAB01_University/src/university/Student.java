@@ -15,6 +15,9 @@ class Student {	// non metto public, solo classi all'interno del package possono
 	// esami sostenuti
 	private int[] esami = new int[MAX_INS];
 	
+	// media + bonus, aggiornato ad ogni nuovo corso o esame
+	private float punteggio = 0;
+	
 	public Student(String firstName, String lastName, int matricola) {
 		this.firstName = firstName;
 		this.lastName = lastName;
@@ -36,6 +39,7 @@ class Student {	// non metto public, solo classi all'interno del package possono
 	public void aggIns(int codIns) {
 		if (nextCorso < MAX_INS)
 			corsi[nextCorso++] = codIns;
+		punteggio = mediaBonus();
 	}
 	
 	public int[] elencoCorsi() {
@@ -49,6 +53,7 @@ class Student {	// non metto public, solo classi all'interno del package possono
 				break;
 			}
 		}
+		punteggio = mediaBonus();
 	}
 	
 	public String media() {
@@ -87,7 +92,11 @@ class Student {	// non metto public, solo classi all'interno del package possono
 		return 0;
 	}
 	
+	public float getPunteggio() {
+		return punteggio;
+	}
+	
 	public String mediaBonusString() {
-		return firstName + " " + lastName + ": " + this.mediaBonus();
+		return firstName + " " + lastName + ": " + punteggio;
 	}
 }
\ No newline at end of file
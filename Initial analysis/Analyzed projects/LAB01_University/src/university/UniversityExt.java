@@ -6,6 +6,9 @@ public class UniversityExt extends University {
 	
 	private final static int MAX_BEST_STUDENTS = 3;
 	private final static Logger logger = Logger.getLogger("University");
+	
+	// classifica aggiornata da register() ed exam()
+	private final ScoreIndex classifica = new ScoreIndex();
 
 	public UniversityExt(String name) {
 		super(name);
@@ -32,7 +35,14 @@ public class UniversityExt extends University {
 	@Override
 	public void register(int matrStud, int courseCode) {
 		
+		int studId = matrStud - OFFSET_MATR;
+		Student s = (studId >= 0 && studId < nextStudentId) ? studenti[studId] : null;
+		
+		if (s != null)
+			classifica.remove(s);
 		super.register(matrStud, courseCode);
+		if (s != null)
+			classifica.add(s);
 		logger.info("Student " + matrStud + " signed up for course " + courseCode);
 	}
 	
@@ -48,7 +58,9 @@ public class UniversityExt extends University {
 			return;
 		
 		corsi[codIns].aggVoto(matrStud, voto);
+		classifica.remove(studenti[studId]);
 		studenti[studId].aggEsame(courseCode, voto);
+		classifica.add(studenti[studId]);
 		
 		logger.info("Student " + matrStud + " took an exam in course " + courseCode + " with grade " + voto);;
 	}
@@ -72,37 +84,24 @@ public class UniversityExt extends University {
 	}
 	
 	public String topThreeStudents() {
-		int[] topStudsId = new int[MAX_BEST_STUDENTS];
-		float[] topStudsAvg = new float[MAX_BEST_STUDENTS];
+		return topK(MAX_BEST_STUDENTS);
+	}
+	
+	/**
+	 * Retrieves the k students with the highest score, one per line
+	 * 
+	 * @param k number of students
+	 * @return the best students
+	 */
+	public String topK(int k) {
 		StringBuilder topStuds = new StringBuilder();
 		
-		for (int i=0; i<MAX_BEST_STUDENTS; i++) {
-			topStudsId[i] = -1;
-			topStudsAvg[i] = -1;
-		}
-		
-		for (int s=0; s<nextStudentId; s++) {
-			for (int i=0; i<MAX_BEST_STUDENTS; i++) {
-				if (studenti[s].mediaBonus() <= topStudsAvg[i])
-					continue;
-				
-				for (int j=MAX_BEST_STUDENTS-1; j>i; j--) {	// scorro posizioni
-					topStudsId[j] = topStudsId[j-1];
-					topStudsAvg[j] = topStudsAvg[j-1];
-				}
-				
-				topStudsId[i] = s;
-				topStudsAvg[i] = studenti[s].mediaBonus();
-				break;	// ho già scritto lo studente, altrimenti sovrascrivo i successivi
-			}
-		}
-		
-		for (int i=0; i<MAX_BEST_STUDENTS; i++) {
-			if (topStudsId[i] != -1) {
-				topStuds.append(studenti[topStudsId[i]].mediaBonusString()).append("\n");
-			}
+		for (Student s:classifica.top(k)) {
+			if (topStuds.length() > 0)
+				topStuds.append("\n");
+			topStuds.append(s.mediaBonusString());
 		}
 		
-		return topStuds.substring(0, topStuds.length()-1);	// tolgo l'ultimo \n
+		return topStuds.toString();
 	}
-}
\ No newline at end of file
+}
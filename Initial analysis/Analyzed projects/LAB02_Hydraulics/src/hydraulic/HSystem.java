@@ -1,6 +1,8 @@
 package hydraulic;
 
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Main class that act as a container of the elements for
@@ -12,16 +14,87 @@ public class HSystem {
 	// attributi
 	protected Element[] elementi = new Element[10];
 	protected int lastElement = -1;
+	// posizione di ogni elemento in elementi, per nome: con piu' elementi
+	// con lo stesso nome, quella del primo aggiunto
+	protected Map<String, Integer> posizioni = new HashMap<>();
+	// elementi con lo stesso nome di uno aggiunto prima, non presenti in posizioni
+	protected int duplicati = 0;
+	// posizioni lasciate vuote dagli elementi eliminati
+	protected int eliminati = 0;
 	
 	/**
 	 * Adds a new element to the system
 	 * @param elem
 	 */
 	public void addElement(Element elem) {
-		if (lastElement >= elementi.length)
-			elementi = Arrays.copyOf(elementi, 2*elementi.length);
+		if (lastElement+1 >= elementi.length) {
+			if (eliminati > 0)
+				compatta();
+			else
+				elementi = Arrays.copyOf(elementi, 2*elementi.length);
+		}
 		
 		elementi[++lastElement] = elem;
+		if (posizioni.putIfAbsent(elem.getName(), lastElement) != null)
+			duplicati++;
+	}
+	
+	/**
+	 * Retrieves an element of the system by name
+	 * 
+	 * @param name the name of the element
+	 * @return the element, or {@code null} if no element has the given name;
+	 * 			if more elements have the same name, the first one added
+	 */
+	public Element getElement(String name) {
+		Integer i = posizioni.get(name);
+		return i == null ? null : elementi[i];
+	}
+	
+	/**
+	 * Rimuove l'elemento dall'indice e ne lascia vuota la posizione,
+	 * senza spostare gli elementi successivi; se un elemento aggiunto dopo
+	 * ha lo stesso nome, l'indice passa a quello
+	 * @param name nome dell'elemento
+	 * @return l'elemento rimosso, o {@code null} se non presente
+	 */
+	protected Element rimuovi(String name) {
+		Integer i = posizioni.remove(name);
+		if (i == null)
+			return null;
+		
+		Element e = elementi[i];
+		elementi[i] = null;
+		eliminati++;
+		for (int j=i+1; duplicati > 0 && j<=lastElement; j++) {
+			if (elementi[j] != null && elementi[j].getName().equals(name)) {
+				posizioni.put(name, j);
+				duplicati--;
+				break;
+			}
+		}
+		return e;
+	}
+	
+	/**
+	 * Sposta gli elementi nelle posizioni lasciate vuote, mantenendone l'ordine
+	 */
+	protected void compatta() {
+		if (eliminati == 0)
+			return;
+		
+		int n = 0;
+		for (int i=0; i<=lastElement; i++) {
+			if (elementi[i] == null)
+				continue;
+			
+			elementi[n] = elementi[i];
+			posizioni.replace(elementi[n].getName(), i, n); // solo se indicizzato
+			n++;
+		}
+		Arrays.fill(elementi, n, lastElement+1, null);
+		lastElement = n-1;
+		eliminati = 0;
 	}
 	
 	/**
@@ -31,6 +104,7 @@ public class HSystem {
 	 * @return an array of the elements added to the hydraulic system
 	 */
 	public Element[] getElements() {
+		compatta();
 		return Arrays.copyOf(elementi, lastElement+1);
 	}
 	
@@ -77,4 +151,4 @@ public class HSystem {
 				e.simulate(SimulationObserver.NO_FLOW, observer);
 		}
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file
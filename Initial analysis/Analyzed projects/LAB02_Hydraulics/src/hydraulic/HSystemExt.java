@@ -37,19 +37,12 @@ public class HSystemExt extends HSystem {
 	 * Deletes a previously added element with the given name from the system
 	 */
 	public void deleteElement(String name) {
-		boolean trovato = false;
-		for (int i=0; i<=lastElement; i++) {
-			
-			if (!trovato && elementi[i].getName().equals(name)) {
-				((ElementExt) elementi[i]).delete();
-				trovato = true;
-			}
-			
-			if (trovato && i<elementi.length-1)
-				elementi[i] = elementi[i+1];
-		}
+		Element e = getElement(name);
+		if (e == null)
+			return;
 		
-		lastElement--;
+		((ElementExt) e).delete();
+		rimuovi(name);
 	}
 
 	/**
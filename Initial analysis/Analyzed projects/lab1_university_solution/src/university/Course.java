@@ -1,69 +1,113 @@
 package university;
 
+import java.io.IOException;
+
 /**
  * Represents the description of a course
+ * 
+ * The class is not thread-safe: {@link University} accesses the mutable
+ * state of a course while holding the course's monitor.
  */
 class Course {
 	
 	private static final String SEPARATOR = ",";
+	private final int index;
 	private final int code;
 	private final String title;
 	private final String teacher;
-	private Student[] students;
-	private Exam[] exams;
-	private int nextExam=0;
+	// attendees: the chain of registrations in the log, published by the volatile write of its head
+	private volatile int lastRegistration = RegistrationLog.NONE;
+	private final GradeStatistics grades = new GradeStatistics();
+	private int lastExam = ExamLedger.NONE; // row of the latest exam in the ledger
 
-	public Course(int code, String title, String teacher) {
+	/**
+	 * Constructor
+	 * 
+	 * @param index dense index of the course within the university, starting from 0
+	 * @param code code of the course
+	 * @param title title of the course
+	 * @param teacher name of the teacher
+	 */
+	public Course(int index, int code, String title, String teacher) {
+		this.index = index;
 		this.code = code;
 		this.title = title;
 		this.teacher = teacher;
-		this.students = new Student[University.MAX_STUDENTS_PER_COURSE];
-		this.exams = new Exam[University.MAX_COURSES_PER_STUDENT];
 	}
 	
 	public String toString(){
 		return code + SEPARATOR + title + SEPARATOR + teacher;
 	}
+	
+	/**
+	 * Writes the description of the course, as in {@link #toString()}
+	 * 
+	 * @param out the destination
+	 * @throws IOException if the destination cannot be written
+	 */
+	void appendTo(Appendable out) throws IOException {
+		out.append(Integer.toString(code)).append(SEPARATOR).append(title).append(SEPARATOR).append(teacher);
+	}
 
-	public void enroll(Student s) {
-		for (int i = 0; i < students.length; i++) {
-			if(students[i] == null){
-				students[i]=s;
-				break;
-			}
-		}
+	/**
+	 * Records a registration to the course
+	 * 
+	 * @param row the row of the registration in the log
+	 */
+	void enroll(int row) {
+		lastRegistration = row;
 	}
 	
-	public String attendees(){
-		StringBuilder result = new StringBuilder();
-		
-		for(Student s : students){
-			if(s!=null){
-				result.append(s.toString()).append("\n");
-			}
-		}
-		return result.toString();
+	/**
+	 * @return the row of the latest registration in the log, or {@link RegistrationLog#NONE}
+	 */
+	int lastRegistration() {
+		return lastRegistration;
 	}
 
-	public void addExam(Exam exam) {
-		exams[nextExam++] = exam;
+	/**
+	 * Records an exam of the course
+	 * 
+	 * @param grade the grade
+	 * @param row the row of the exam in the ledger
+	 */
+	void addExam(int grade, int row) {
+		grades.add(grade);
+		lastExam = row;
+	}
+	
+	/**
+	 * @return the row of the latest exam in the ledger, or {@link ExamLedger#NONE}
+	 */
+	int lastExam() {
+		return lastExam;
 	}
 	
 	double average() {
-		if(nextExam==0) return Double.NaN;
-		double average = 0.0;
-		for(Exam e : exams) {
-			if(e==null) break;
-			average += e.getGrade();
-		}
-		return average/nextExam;
+		return grades.getAverage();
+	}
+	
+	GradeStatistics getGrades() {
+		return grades;
 	}
 	
 	public static boolean isValid(double x) {
 		return !Double.isNaN(x);
 	}
 	
+	int getIndex() {
+		return index;
+	}
+	
+	public int getCode() {
+		return code;
+	}
+	
 	public String getTitle() {
 		return this.title;
 	}
+	
+	public String getTeacher() {
+		return this.teacher;
+	}
 }
@@ -0,0 +1,61 @@
+package university;
+
+/**
+ * Converts an event into a textual message.
+ *
+ * @see EventSink
+ */
+public interface EventFormatter {
+
+	/**
+	 * Formats an event, appending the message to a buffer
+	 *
+	 * @param kind		kind of event
+	 * @param student	ID of the student
+	 * @param course	code of the course
+	 * @param grade		grade of the exam
+	 * @param text1		first textual information
+	 * @param text2		second textual information
+	 * @param out		buffer the message is appended to
+	 */
+	void format(EventSink.Kind kind, int student, int course, int grade, String text1, String text2, StringBuilder out);
+
+	/**
+	 * Formatter producing the human readable messages described in requirement R7,
+	 * e.g. {@code "Student 10004 signed up for course 11"}
+	 */
+	EventFormatter HUMAN_READABLE = (kind, student, course, grade, text1, text2, out) -> {
+		switch(kind) {
+		case ENROLL:
+			out.append("New student enrolled: ").append(student).append(", ").append(text1).append(" ").append(text2);
+			break;
+		case ACTIVATE:
+			out.append("New course activated: ").append(course).append(", ").append(text1).append(" ").append(text2);
+			break;
+		case REGISTER:
+			out.append("Student ").append(student).append(" signed up for course ").append(course);
+			break;
+		case EXAM:
+			out.append("Student ").append(student).append(" took an exam in course ").append(course)
+				.append(" with grade ").append(grade);
+			break;
+		}
+	};
+
+	/**
+	 * Formatter producing compact comma separated records:
+	 * {@code KIND,STUDENT,COURSE,GRADE,TEXT1,TEXT2}, where missing values are left empty
+	 */
+	EventFormatter CSV = (kind, student, course, grade, text1, text2, out) -> {
+		out.append(kind.name()).append(',');
+		if(student != EventSink.NONE_VALUE) out.append(student);
+		out.append(',');
+		if(course != EventSink.NONE_VALUE) out.append(course);
+		out.append(',');
+		if(grade != EventSink.NONE_VALUE) out.append(grade);
+		out.append(',');
+		if(text1 != null) out.append(text1);
+		out.append(',');
+		if(text2 != null) out.append(text2);
+	};
+}
@@ -0,0 +1,50 @@
+package university;
+
+/**
+ * Receiver of the events generated by the operations performed
+ * through the {@link University} facade class.
+ *
+ * The events are passed as primitive values and references to
+ * already existing strings, so that generating an event does not
+ * require formatting a message or allocating memory:
+ * formatting is left to the sink, that can perform it lazily
+ * (see {@link EventFormatter}).
+ */
+public interface EventSink {
+
+	/**
+	 * Kinds of events
+	 */
+	enum Kind {
+		/** a new student has been enrolled, texts are first and last name */
+		ENROLL,
+		/** a new course has been activated, texts are title and teacher */
+		ACTIVATE,
+		/** a student signed up for a course */
+		REGISTER,
+		/** a student took an exam */
+		EXAM
+	}
+
+	/**
+	 * Value used for the fields that are not relevant for a kind of event
+	 */
+	int NONE_VALUE = -1;
+
+	/**
+	 * Sink that discards all the events, used to turn the event log off
+	 */
+	EventSink NONE = (kind, student, course, grade, text1, text2) -> {};
+
+	/**
+	 * Notifies an event
+	 *
+	 * @param kind		kind of event
+	 * @param student	ID of the student, or {@link #NONE_VALUE}
+	 * @param course	code of the course, or {@link #NONE_VALUE}
+	 * @param grade		grade of the exam, or {@link #NONE_VALUE}
+	 * @param text1		first textual information (e.g. first name), or {@code null}
+	 * @param text2		second textual information (e.g. last name), or {@code null}
+	 */
+	void event(Kind kind, int student, int course, int grade, String text1, String text2);
+}
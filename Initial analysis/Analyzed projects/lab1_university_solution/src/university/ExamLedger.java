@@ -0,0 +1,179 @@
+package university;
+
+import java.util.Arrays;
+
+/**
+ * Columnar store of all the exams recorded in a university.
+ *
+ * Each exam is a row spread over parallel primitive arrays: student index,
+ * course index, grade and date (as epoch day). Two further columns link each row
+ * to the previous exam of the same student and of the same course, so that
+ * the exams of a student or of a course can be visited without scanning the whole
+ * ledger, while aggregations over all the exams are tight loops over the columns.
+ *
+ * Rows are only appended and never modified. The columns grow geometrically
+ * and the number of rows is published after the row is written, so a reader
+ * that reads {@link #size()} first can access the rows below it without locking.
+ */
+final class ExamLedger {
+
+	static final int NONE = -1;
+	private static final int INITIAL_CAPACITY = 64;
+
+	/**
+	 * The columns of the ledger, replaced by larger copies when full
+	 */
+	private static final class Columns {
+		final int[] students;
+		final int[] courses;
+		final byte[] grades;
+		final int[] days;
+		final int[] previousOfStudent;
+		final int[] previousOfCourse;
+
+		Columns(int capacity) {
+			students = new int[capacity];
+			courses = new int[capacity];
+			grades = new byte[capacity];
+			days = new int[capacity];
+			previousOfStudent = new int[capacity];
+			previousOfCourse = new int[capacity];
+		}
+
+		Columns(Columns other, int capacity) {
+			students = Arrays.copyOf(other.students, capacity);
+			courses = Arrays.copyOf(other.courses, capacity);
+			grades = Arrays.copyOf(other.grades, capacity);
+			days = Arrays.copyOf(other.days, capacity);
+			previousOfStudent = Arrays.copyOf(other.previousOfStudent, capacity);
+			previousOfCourse = Arrays.copyOf(other.previousOfCourse, capacity);
+		}
+	}
+
+	private volatile Columns columns;
+	private volatile int size;
+
+	ExamLedger() {
+		this(INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Constructor for a ledger that will hold about the given number of exams,
+	 * e.g. when a university is restored from a snapshot
+	 *
+	 * @param expectedExams expected number of exams
+	 */
+	ExamLedger(int expectedExams) {
+		columns = new Columns(Math.max(INITIAL_CAPACITY, expectedExams));
+	}
+
+	/**
+	 * Appends an exam to the ledger
+	 *
+	 * @param student index of the student
+	 * @param course index of the course
+	 * @param grade a valid grade
+	 * @param day date of the exam as epoch day
+	 * @param lastOfStudent last row of the same student, or {@link #NONE}
+	 * @param lastOfCourse last row of the same course, or {@link #NONE}
+	 * @return the row of the new exam
+	 */
+	synchronized int append(int student, int course, int grade, int day, int lastOfStudent, int lastOfCourse) {
+		int row = size;
+		Columns c = columns;
+		if(row == c.students.length) {
+			c = new Columns(c, row * 2);
+			columns = c;
+		}
+		c.students[row] = student;
+		c.courses[row] = course;
+		c.grades[row] = (byte)grade;
+		c.days[row] = day;
+		c.previousOfStudent[row] = lastOfStudent;
+		c.previousOfCourse[row] = lastOfCourse;
+		size = row + 1;
+		return row;
+	}
+
+	/**
+	 * @return number of exams in the ledger
+	 */
+	int size() {
+		return size;
+	}
+
+	int student(int row) {
+		return columns.students[row];
+	}
+
+	int course(int row) {
+		return columns.courses[row];
+	}
+
+	int grade(int row) {
+		return columns.grades[row];
+	}
+
+	int day(int row) {
+		return columns.days[row];
+	}
+
+	/**
+	 * Computes the statistics of the exams of a student taken in a range of dates
+	 *
+	 * @param lastRow the last exam of the student, or {@link #NONE}
+	 * @param fromDay first day of the range (epoch day, inclusive)
+	 * @param toDay last day of the range (epoch day, inclusive)
+	 * @return the statistics of the exams
+	 */
+	GradeStatistics statisticsOfStudent(int lastRow, int fromDay, int toDay) {
+		Columns c = columns;
+		return statistics(lastRow, c, c.previousOfStudent, fromDay, toDay);
+	}
+
+	/**
+	 * Computes the statistics of the exams of a course taken in a range of dates
+	 *
+	 * @param lastRow the last exam of the course, or {@link #NONE}
+	 * @param fromDay first day of the range (epoch day, inclusive)
+	 * @param toDay last day of the range (epoch day, inclusive)
+	 * @return the statistics of the exams
+	 */
+	GradeStatistics statisticsOfCourse(int lastRow, int fromDay, int toDay) {
+		Columns c = columns;
+		return statistics(lastRow, c, c.previousOfCourse, fromDay, toDay);
+	}
+
+	private static GradeStatistics statistics(int row, Columns c, int[] previous, int fromDay, int toDay) {
+		byte[] grades = c.grades;
+		int[] days = c.days;
+		GradeStatistics result = new GradeStatistics();
+		for(; row != NONE; row = previous[row]) {
+			if(days[row] >= fromDay && days[row] <= toDay) {
+				result.add(grades[row]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Computes per-course totals with a single pass over the columns of the first rows
+	 *
+	 * @param rows number of rows to be considered, at most {@link #size()}
+	 * @param counts number of exams of each course, indexed by course index
+	 * @param sums sum of the grades of each course
+	 * @param passed number of passed exams of each course
+	 */
+	void courseTotals(int rows, int[] counts, long[] sums, int[] passed) {
+		Columns c = columns;
+		int[] courses = c.courses;
+		byte[] grades = c.grades;
+		for(int row=0; row<rows; ++row) {
+			int course = courses[row];
+			int g = grades[row];
+			counts[course]++;
+			sums[course] += g;
+			passed[course] += g >= GradeStatistics.PASSING_GRADE ? 1 : 0;
+		}
+	}
+}
@@ -0,0 +1,191 @@
+package university;
+
+import java.util.Arrays;
+
+/**
+ * Aggregate statistics about a set of exam grades.
+ *
+ * The statistics are updated incrementally whenever a grade is added,
+ * so that average, standard deviation, median and the histogram of
+ * the grades are available in constant time, without iterating over the exams.
+ */
+public final class GradeStatistics {
+
+	public static final int MIN_GRADE = 0;
+	public static final int MAX_GRADE = 30;
+	public static final int PASSING_GRADE = 18;
+
+	private int count;
+	private long sum;
+	private long sumOfSquares;
+	private int min = Integer.MAX_VALUE;
+	private int max = Integer.MIN_VALUE;
+	private final int[] histogram;
+
+	GradeStatistics() {
+		histogram = new int[MAX_GRADE - MIN_GRADE + 1];
+	}
+
+	private GradeStatistics(GradeStatistics other) {
+		this.count = other.count;
+		this.sum = other.sum;
+		this.sumOfSquares = other.sumOfSquares;
+		this.min = other.min;
+		this.max = other.max;
+		this.histogram = Arrays.copyOf(other.histogram, other.histogram.length);
+	}
+
+	/**
+	 * Checks whether a grade is within the valid range {@value #MIN_GRADE}-{@value #MAX_GRADE}
+	 *
+	 * @param grade the grade
+	 * @return {@code true} if the grade is valid
+	 */
+	public static boolean isValidGrade(int grade) {
+		return grade >= MIN_GRADE && grade <= MAX_GRADE;
+	}
+
+	/**
+	 * Adds a grade to the statistics
+	 *
+	 * @param grade a valid grade
+	 */
+	void add(int grade) {
+		count++;
+		sum += grade;
+		sumOfSquares += (long)grade * grade;
+		if(grade < min) min = grade;
+		if(grade > max) max = grade;
+		histogram[grade - MIN_GRADE]++;
+	}
+
+	/**
+	 * Adds all the grades of other statistics to these statistics
+	 *
+	 * @param other the statistics to be merged
+	 */
+	void merge(GradeStatistics other) {
+		if(other.count == 0) return;
+		count += other.count;
+		sum += other.sum;
+		sumOfSquares += other.sumOfSquares;
+		if(other.min < min) min = other.min;
+		if(other.max > max) max = other.max;
+		for(int i=0; i<histogram.length; ++i) {
+			histogram[i] += other.histogram[i];
+		}
+	}
+
+	/**
+	 * Creates an independent copy of the current statistics
+	 *
+	 * @return a copy of the statistics
+	 */
+	GradeStatistics copy() {
+		return new GradeStatistics(this);
+	}
+
+	/**
+	 * @return the number of grades
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the sum of all grades
+	 */
+	public long getSum() {
+		return sum;
+	}
+
+	/**
+	 * @return the average grade, or {@code NaN} if there are no grades
+	 */
+	public double getAverage() {
+		if(count==0) return Double.NaN;
+		return sum / (double)count;
+	}
+
+	/**
+	 * @return the (population) standard deviation of the grades, or {@code NaN} if there are no grades
+	 */
+	public double getStandardDeviation() {
+		if(count==0) return Double.NaN;
+		double avg = getAverage();
+		double variance = sumOfSquares / (double)count - avg*avg;
+		return Math.sqrt(Math.max(0.0, variance));
+	}
+
+	/**
+	 * Computes the median using the histogram, i.e. in a time
+	 * that does not depend on the number of grades.
+	 *
+	 * @return the median grade, or {@code NaN} if there are no grades
+	 */
+	public double getMedian() {
+		if(count==0) return Double.NaN;
+		int lower = gradeAtRank((count - 1) / 2);
+		int upper = gradeAtRank(count / 2);
+		return (lower + upper) / 2.0;
+	}
+
+	private int gradeAtRank(int rank) {
+		int seen = 0;
+		for(int i=0; i<histogram.length; ++i) {
+			seen += histogram[i];
+			if(seen > rank) return i + MIN_GRADE;
+		}
+		return max;
+	}
+
+	/**
+	 * @return the lowest grade, or {@code -1} if there are no grades
+	 */
+	public int getMin() {
+		return count==0 ? -1 : min;
+	}
+
+	/**
+	 * @return the highest grade, or {@code -1} if there are no grades
+	 */
+	public int getMax() {
+		return count==0 ? -1 : max;
+	}
+
+	/**
+	 * Retrieves how many times a grade has been assigned
+	 *
+	 * @param grade the grade
+	 * @return number of occurrences of the grade
+	 */
+	public int getFrequency(int grade) {
+		if(! isValidGrade(grade)) return 0;
+		return histogram[grade - MIN_GRADE];
+	}
+
+	/**
+	 * @return number of grades greater or equal to {@value #PASSING_GRADE}
+	 */
+	public int getPassed() {
+		int passed = 0;
+		for(int g=PASSING_GRADE; g<=MAX_GRADE; ++g) {
+			passed += histogram[g - MIN_GRADE];
+		}
+		return passed;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder res = new StringBuilder();
+		res.append("count=").append(count);
+		if(count > 0) {
+			res.append(String.format(", avg=%.1f, std=%.1f, median=%.1f, min=%d, max=%d",
+					getAverage(), getStandardDeviation(), getMedian(), min, max));
+		}
+		for(int g=PASSING_GRADE; g<=MAX_GRADE; ++g) {
+			res.append("\n").append(g).append(": ").append(histogram[g - MIN_GRADE]);
+		}
+		return res.toString();
+	}
+}
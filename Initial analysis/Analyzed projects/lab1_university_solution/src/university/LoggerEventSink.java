@@ -0,0 +1,36 @@
+package university;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Event sink that forwards the events to a {@link java.util.logging.Logger}
+ * at level {@code INFO}.
+ *
+ * The message is formatted only if the logger is going to accept it,
+ * so filtering out the {@code INFO} level costs a single check per event.
+ */
+public class LoggerEventSink implements EventSink {
+
+	private final Logger logger;
+	private final EventFormatter formatter;
+
+	/**
+	 * Constructor
+	 *
+	 * @param logger	the destination logger
+	 * @param formatter	the formatter used to build the messages
+	 */
+	public LoggerEventSink(Logger logger, EventFormatter formatter) {
+		this.logger = logger;
+		this.formatter = formatter;
+	}
+
+	@Override
+	public void event(Kind kind, int student, int course, int grade, String text1, String text2) {
+		if(! logger.isLoggable(Level.INFO)) return;
+		StringBuilder msg = new StringBuilder();
+		formatter.format(kind, student, course, grade, text1, text2, msg);
+		logger.info(msg.toString());
+	}
+}
@@ -0,0 +1,225 @@
+package university;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Dictionary of the names used by the students of a university.
+ *
+ * Each distinct name is stored once and identified by a dense number, its id,
+ * so a student refers to its names with two ints
+ * (first names, in particular, repeat a lot).
+ * The names are packed as UTF-8 bytes in a single array, delimited by an array of offsets,
+ * and found by an open-addressing table of ids: the dictionary takes a few arrays
+ * however many names it holds, and a {@link String} is built only when a name is read.
+ *
+ * The dictionary can be used concurrently and looking up an existing name does not lock:
+ * names are only added, under the lock of the dictionary, and each id is published
+ * in the table only after its bytes.
+ */
+final class NameDictionary {
+
+	private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(int[].class);
+	private static final int INITIAL_NAMES = 64;
+
+	/**
+	 * The packed names, replaced by larger copies when full:
+	 * the name with id {@code i} takes the bytes from {@code offsets[i]} to {@code offsets[i+1]}
+	 */
+	private static final class Pool {
+		final byte[] bytes;
+		final int[] offsets;
+
+		Pool(byte[] bytes, int[] offsets) {
+			this.bytes = bytes;
+			this.offsets = offsets;
+		}
+	}
+
+	private volatile Pool pool;
+	private volatile int[] slots; // open addressing, id + 1 or 0 if free
+	private volatile int size;
+	private int used; // bytes of the pool in use, guarded by this
+
+	NameDictionary() {
+		this(INITIAL_NAMES);
+	}
+
+	/**
+	 * Constructor for a dictionary that will hold about the given number of names,
+	 * e.g. when a university is restored from a snapshot
+	 *
+	 * @param expectedNames expected number of distinct names
+	 */
+	NameDictionary(int expectedNames) {
+		int names = Math.max(INITIAL_NAMES, expectedNames);
+		pool = new Pool(new byte[names * 8], new int[names + 1]);
+		slots = new int[Integer.highestOneBit(names * 2 - 1) << 1];
+	}
+
+	/**
+	 * Retrieves the id of a name, adding it if not present
+	 *
+	 * @param name the name
+	 * @return the id of the name
+	 */
+	int intern(String name) {
+		int hash = name.hashCode();
+		int id = find(name, hash);
+		if(id >= 0) return id;
+		synchronized(this) {
+			id = find(name, hash);
+			if(id >= 0) return id;
+			byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+			return add(bytes, 0, bytes.length, hash);
+		}
+	}
+
+	/**
+	 * Adds a name that is not in the dictionary yet, e.g. while restoring a snapshot
+	 *
+	 * @param bytes the name encoded as UTF-8
+	 * @param offset the position of the first byte of the name
+	 * @param length the number of bytes of the name
+	 * @return the id of the name, or -1 if it is already present
+	 */
+	synchronized int add(byte[] bytes, int offset, int length) {
+		int hash = hash(bytes, offset, length);
+		Pool p = pool;
+		int[] table = slots;
+		int mask = table.length - 1;
+		for(int i = hash & mask; table[i] != 0; i = (i + 1) & mask) {
+			int id = table[i] - 1;
+			if(Arrays.equals(p.bytes, p.offsets[id], p.offsets[id + 1], bytes, offset, offset + length)) return -1;
+		}
+		return add(bytes, offset, length, hash);
+	}
+
+	/**
+	 * Retrieves a name
+	 *
+	 * @param id the id of the name, less than {@link #size()}
+	 * @return the name
+	 */
+	String name(int id) {
+		Pool p = pool;
+		int from = p.offsets[id];
+		return new String(p.bytes, from, p.offsets[id + 1] - from, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @param id the id of the name, less than {@link #size()}
+	 * @return the number of bytes of the name encoded as UTF-8
+	 */
+	int encodedLength(int id) {
+		Pool p = pool;
+		return p.offsets[id + 1] - p.offsets[id];
+	}
+
+	/**
+	 * Copies the UTF-8 bytes of a name, without building a {@link String}
+	 *
+	 * @param id the id of the name, less than {@link #size()}
+	 * @param out the destination, with at least {@link #encodedLength(int)} bytes remaining
+	 */
+	void copyEncoded(int id, ByteBuffer out) {
+		Pool p = pool;
+		out.put(p.bytes, p.offsets[id], p.offsets[id + 1] - p.offsets[id]);
+	}
+
+	/**
+	 * @return number of distinct names
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Looks a name up without locking
+	 *
+	 * @return the id of the name, or -1 if not present
+	 */
+	private int find(String name, int hash) {
+		int[] table = slots;
+		int mask = table.length - 1;
+		for(int i = hash & mask; ; i = (i + 1) & mask) {
+			int id = (int)SLOT.getAcquire(table, i) - 1;
+			if(id < 0) return -1;
+			if(matches(pool, id, name)) return id; // the pool is read after the id, so it holds the name
+		}
+	}
+
+	/**
+	 * Appends a name to the pool and publishes its id in the table.
+	 * The caller must hold the lock of the dictionary.
+	 */
+	private int add(byte[] bytes, int offset, int length, int hash) {
+		int id = size;
+		Pool p = pool;
+		if(used + length > p.bytes.length || id + 1 == p.offsets.length) {
+			p = new Pool(Arrays.copyOf(p.bytes, Math.max(p.bytes.length * 2, used + length)),
+					Arrays.copyOf(p.offsets, Math.max(p.offsets.length * 2, id + 2)));
+			pool = p;
+		}
+		System.arraycopy(bytes, offset, p.bytes, used, length);
+		used += length;
+		p.offsets[id + 1] = used;
+		size = id + 1;
+
+		int[] table = slots;
+		if(2 * (id + 1) > table.length) {
+			table = rehash(table.length * 2, p, id);
+		}
+		insert(table, hash, id);
+		slots = table;
+		return id;
+	}
+
+	private int[] rehash(int capacity, Pool p, int numNames) {
+		int[] table = new int[capacity];
+		for(int id=0; id<numNames; ++id) {
+			insert(table, hash(p.bytes, p.offsets[id], p.offsets[id + 1] - p.offsets[id]), id);
+		}
+		return table;
+	}
+
+	private static void insert(int[] table, int hash, int id) {
+		int mask = table.length - 1;
+		int i = hash & mask;
+		while(table[i] != 0) i = (i + 1) & mask;
+		SLOT.setRelease(table, i, id + 1);
+	}
+
+	/**
+	 * Compares a stored name with a string, without decoding the name if it is ASCII
+	 */
+	private static boolean matches(Pool p, int id, String name) {
+		int from = p.offsets[id];
+		int length = p.offsets[id + 1] - from;
+		if(length < name.length()) return false;
+		for(int i=0; i<length; ++i) {
+			byte b = p.bytes[from + i];
+			if(b < 0) {
+				return name.equals(new String(p.bytes, from, length, StandardCharsets.UTF_8));
+			}
+			if(i >= name.length() || name.charAt(i) != b) return false;
+		}
+		return length == name.length();
+	}
+
+	/**
+	 * Computes the {@link String#hashCode()} of an encoded name,
+	 * without decoding it if it is ASCII
+	 */
+	private static int hash(byte[] bytes, int offset, int length) {
+		int h = 0;
+		for(int i=offset; i<offset+length; ++i) {
+			if(bytes[i] < 0) return new String(bytes, offset, length, StandardCharsets.UTF_8).hashCode();
+			h = 31 * h + bytes[i];
+		}
+		return h;
+	}
+}
@@ -0,0 +1,156 @@
+package university;
+
+import java.util.Arrays;
+
+/**
+ * Append-only log of the registrations of the students to the courses.
+ *
+ * Each registration is a row of four int columns: student index, course index, and
+ * the rows of the previous registration of the same student and of the same course.
+ * As in the {@link ExamLedger}, the last two columns chain the registrations
+ * of each student (its study plan) and of each course (its attendees), so the log
+ * is the only adjacency structure of the university: a registration costs 16 bytes.
+ * The rows are kept in pages of {@value #PAGE} rows that are never copied.
+ *
+ * The log identifies any past point in time by its number of rows, so the
+ * {@link SnapshotAggregates} of a snapshot can be advanced to the next one applying only
+ * the rows recorded in between, while registrations continue.
+ * The number of rows is published after the row is written, so
+ * the rows below {@link #size()} can be read without locking.
+ */
+final class RegistrationLog {
+
+	static final int NONE = -1;
+	private static final int PAGE_BITS = 12;
+	private static final int PAGE = 1 << PAGE_BITS;
+
+	/**
+	 * The columns of {@value #PAGE} consecutive rows
+	 */
+	private static final class Page {
+		final int[] students = new int[PAGE];
+		final int[] courses = new int[PAGE];
+		final int[] previousOfStudent = new int[PAGE];
+		final int[] previousOfCourse = new int[PAGE];
+	}
+
+	private volatile Page[] pages = new Page[0];
+	private volatile int size;
+
+	/**
+	 * Appends a registration to the log
+	 *
+	 * @param student index of the student
+	 * @param course index of the course
+	 * @param lastOfStudent last row of the same student, or {@link #NONE}
+	 * @param lastOfCourse last row of the same course, or {@link #NONE}
+	 * @return the row of the new registration
+	 */
+	synchronized int append(int student, int course, int lastOfStudent, int lastOfCourse) {
+		int row = size;
+		Page[] dir = pages;
+		int n = row >>> PAGE_BITS;
+		if(n == dir.length) {
+			dir = Arrays.copyOf(dir, Math.max(1, n * 2));
+			pages = dir;
+		}
+		if(dir[n] == null) dir[n] = new Page();
+		Page p = dir[n];
+		int i = row & (PAGE - 1);
+		p.students[i] = student;
+		p.courses[i] = course;
+		p.previousOfStudent[i] = lastOfStudent;
+		p.previousOfCourse[i] = lastOfCourse;
+		size = row + 1;
+		return row;
+	}
+
+	/**
+	 * @return number of registrations in the log
+	 */
+	int size() {
+		return size;
+	}
+
+	int student(int row) {
+		return pages[row >>> PAGE_BITS].students[row & (PAGE - 1)];
+	}
+
+	int course(int row) {
+		return pages[row >>> PAGE_BITS].courses[row & (PAGE - 1)];
+	}
+
+	int previousOfStudent(int row) {
+		return pages[row >>> PAGE_BITS].previousOfStudent[row & (PAGE - 1)];
+	}
+
+	int previousOfCourse(int row) {
+		return pages[row >>> PAGE_BITS].previousOfCourse[row & (PAGE - 1)];
+	}
+
+	/**
+	 * Checks whether the registrations of a student include a course
+	 *
+	 * @param lastRow the last registration of the student, or {@link #NONE}
+	 * @param course index of the course
+	 * @return {@code true} if the student is registered for the course
+	 */
+	boolean includes(int lastRow, int course) {
+		for(int row = lastRow; row != NONE; row = previousOfStudent(row)) {
+			if(course(row) == course) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Counts the registrations of a student
+	 *
+	 * @param lastRow the last registration of the student, or {@link #NONE}
+	 * @return the number of courses of the study plan
+	 */
+	int planSize(int lastRow) {
+		int n = 0;
+		for(int row = lastRow; row != NONE; row = previousOfStudent(row)) {
+			n++;
+		}
+		return n;
+	}
+
+	/**
+	 * Retrieves the courses of a student, in order of registration
+	 *
+	 * @param lastRow the last registration of the student, or {@link #NONE}
+	 * @param rows only the registrations in the first {@code rows} rows are considered
+	 * @return the indices of the courses
+	 */
+	int[] coursesOf(int lastRow, int rows) {
+		int n = 0;
+		for(int row = lastRow; row != NONE; row = previousOfStudent(row)) {
+			if(row < rows) n++;
+		}
+		int[] courses = new int[n];
+		for(int row = lastRow; row != NONE; row = previousOfStudent(row)) {
+			if(row < rows) courses[--n] = course(row);
+		}
+		return courses;
+	}
+
+	/**
+	 * Retrieves the attendees of a course, in order of registration
+	 *
+	 * @param lastRow the last registration of the course, or {@link #NONE}
+	 * @param rows only the registrations in the first {@code rows} rows are considered
+	 * @return the indices of the students
+	 */
+	int[] studentsOf(int lastRow, int rows) {
+		int n = 0;
+		for(int row = lastRow; row != NONE; row = previousOfCourse(row)) {
+			if(row < rows) n++;
+		}
+		int[] students = new int[n];
+		for(int row = lastRow; row != NONE; row = previousOfCourse(row)) {
+			if(row < rows) students[--n] = student(row);
+		}
+		return students;
+	}
+}
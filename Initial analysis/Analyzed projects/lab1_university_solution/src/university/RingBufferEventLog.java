@@ -0,0 +1,199 @@
+package university;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Event sink that stores the events in a pre-allocated ring buffer
+ * and writes them asynchronously to a {@link Writer}.
+ *
+ * The events are kept as primitive values in parallel arrays, so that
+ * recording an event does not allocate memory; the messages are formatted
+ * by a background thread only when they are written out.
+ * When the buffer is full the producers wait for the writer thread to catch up,
+ * therefore no event is lost.
+ *
+ * The log must be {@link #close() closed} to write the pending events
+ * and release the output.
+ */
+public class RingBufferEventLog implements EventSink, Closeable {
+
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+
+	private final EventSink.Kind[] kinds;
+	private final int[] students;
+	private final int[] courses;
+	private final int[] grades;
+	private final String[] texts1;
+	private final String[] texts2;
+	private final int mask;
+
+	// sequence numbers: events in [head, tail) are waiting to be written
+	private long head;
+	private long tail;
+	private boolean closed;
+	private IOException failure;
+
+	private final Writer out;
+	private final EventFormatter formatter;
+	private final Thread writer;
+
+	/**
+	 * Creates a log that appends the events to a file
+	 *
+	 * @param file		the destination file, created if not existing
+	 * @param formatter	the formatter used to build the messages
+	 * @throws IOException if the file cannot be opened
+	 */
+	public RingBufferEventLog(Path file, EventFormatter formatter) throws IOException {
+		this(Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+				StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE),
+				formatter, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a log that writes the events to a writer
+	 *
+	 * @param out		the destination of the messages, one per line
+	 * @param formatter	the formatter used to build the messages
+	 * @param capacity	minimum number of events the buffer can hold, rounded up to a power of two
+	 */
+	public RingBufferEventLog(Writer out, EventFormatter formatter, int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		kinds = new EventSink.Kind[size];
+		students = new int[size];
+		courses = new int[size];
+		grades = new int[size];
+		texts1 = new String[size];
+		texts2 = new String[size];
+		mask = size - 1;
+
+		this.out = out instanceof BufferedWriter ? out : new BufferedWriter(out);
+		this.formatter = formatter;
+		writer = new Thread(this::drain, "university-event-log");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	@Override
+	public synchronized void event(Kind kind, int student, int course, int grade, String text1, String text2) {
+		while(tail - head > mask && !closed) {
+			waitUninterruptibly();
+		}
+		if(closed) return;
+		boolean wasEmpty = head == tail;
+		int slot = (int)(tail & mask);
+		kinds[slot] = kind;
+		students[slot] = student;
+		courses[slot] = course;
+		grades[slot] = grade;
+		texts1[slot] = text1;
+		texts2[slot] = text2;
+		tail++;
+		if(wasEmpty) notifyAll();
+	}
+
+	/**
+	 * Waits until all the events recorded so far have been written out
+	 *
+	 * @throws IOException if writing the events failed
+	 */
+	public synchronized void flush() throws IOException {
+		while(head != tail && failure == null) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("interrupted while flushing the event log");
+			}
+		}
+		if(failure != null) throw failure;
+	}
+
+	/**
+	 * Writes the pending events, stops the writer thread and closes the output
+	 *
+	 * @throws IOException if writing the events failed
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized(this) {
+			if(closed) return;
+			closed = true;
+			notifyAll();
+		}
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		out.close();
+		if(failure != null) throw failure;
+	}
+
+	private void waitUninterruptibly() {
+		try {
+			wait();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Body of the writer thread: formats and writes the events in batches
+	 */
+	private void drain() {
+		StringBuilder line = new StringBuilder();
+		char[] chars = new char[256];
+		while(true) {
+			long from;
+			long to;
+			synchronized(this) {
+				while(head == tail && !closed) {
+					waitUninterruptibly();
+				}
+				if(head == tail) return; // closed and drained
+				from = head;
+				to = tail;
+			}
+			try {
+				// slots in [from, to) are not touched by the producers until head advances
+				for(long i=from; i<to; ++i) {
+					int slot = (int)(i & mask);
+					line.setLength(0);
+					formatter.format(kinds[slot], students[slot], courses[slot], grades[slot],
+							texts1[slot], texts2[slot], line);
+					line.append('\n');
+					if(line.length() > chars.length) chars = new char[line.length() * 2];
+					line.getChars(0, line.length(), chars, 0);
+					out.write(chars, 0, line.length());
+				}
+				out.flush();
+			} catch (IOException e) {
+				synchronized(this) {
+					failure = e;
+					closed = true;
+					head = tail;
+					notifyAll();
+				}
+				return;
+			}
+			synchronized(this) {
+				for(long i=from; i<to; ++i) {
+					int slot = (int)(i & mask);
+					texts1[slot] = null;
+					texts2[slot] = null;
+				}
+				head = to;
+				notifyAll();
+			}
+		}
+	}
+}
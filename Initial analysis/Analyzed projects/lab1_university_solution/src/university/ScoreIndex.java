@@ -0,0 +1,97 @@
+package university;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Index of the students ordered by decreasing score.
+ *
+ * The index is maintained incrementally: whenever the score of a student
+ * changes, the student must be {@link #update updated} in the index.
+ * The update costs O(log n), so retrieving the best k students costs O(k log n)
+ * instead of a scan of all the students.
+ *
+ * The index stores immutable entries, so it can be read and updated
+ * concurrently; updates of the same student must be serialized
+ * (e.g. holding the lock of the student).
+ * The entry of a student is found by its previous score, so the students
+ * keep no reference to the index.
+ * An update adds the new entry of the student before removing the old one,
+ * so a concurrent reader may meet both: {@link #top(int)} reports only the first.
+ *
+ * Students without a valid score (i.e. that did not take any exam) are not indexed.
+ */
+class ScoreIndex {
+
+	/**
+	 * Position of a student in the index: the score it had when it was indexed
+	 */
+	static final class Entry {
+		final double score;
+		final Student student;
+
+		Entry(double score, Student student) {
+			this.score = score;
+			this.student = student;
+		}
+	}
+
+	static final Comparator<Entry> BY_SCORE = (a, b) -> {
+		int cmp = Double.compare(b.score, a.score);
+		return cmp != 0 ? cmp : Integer.compare(a.student.getId(), b.student.getId());
+	};
+
+	private final ConcurrentSkipListSet<Entry> ranking = new ConcurrentSkipListSet<>(BY_SCORE);
+
+	/**
+	 * Updates the position of a student in the index after its score changed
+	 *
+	 * @param s the student
+	 * @param oldScore the score of the student before the change, {@code NaN} if not indexed
+	 * @param newScore the current score of the student
+	 */
+	void update(Student s, double oldScore, double newScore) {
+		if(Double.compare(oldScore, newScore) == 0) return;
+		if(Student.isValid(newScore)) {
+			ranking.add(new Entry(newScore, s));
+		}
+		if(Student.isValid(oldScore)) {
+			ranking.remove(new Entry(oldScore, s));
+		}
+	}
+
+	/**
+	 * Indexes many students at once, e.g. after they have been restored from a snapshot.
+	 * The entries are sorted before being inserted, which is considerably faster
+	 * than updating the students one by one.
+	 *
+	 * @param entries the entries of the students, not yet indexed
+	 */
+	void addAll(List<Entry> entries) {
+		entries.sort(BY_SCORE);
+		ranking.addAll(entries);
+	}
+
+	/**
+	 * Retrieves the students with the highest score
+	 *
+	 * @param k the maximum number of students
+	 * @return the entries of the best students in order of decreasing score,
+	 * 			one per student also while students are being updated
+	 */
+	List<Entry> top(int k) {
+		List<Entry> top = new ArrayList<>();
+		Set<Student> seen = new HashSet<>();
+		Iterator<Entry> it = ranking.iterator();
+		while(top.size() < k && it.hasNext()) {
+			Entry e = it.next();
+			if(seen.add(e.student)) top.add(e);
+		}
+		return top;
+	}
+}
@@ -0,0 +1,163 @@
+package university;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Growable store of objects indexed by a dense, zero-based index.
+ *
+ * The elements are kept in segments whose size doubles every time
+ * a new segment is needed: the first segment holds {@value #FIRST_SEGMENT} elements,
+ * the second twice as many, and so on.
+ * Therefore the store never copies its content when it grows,
+ * an empty store costs just the (small) segment directory,
+ * and the mapping from index to slot is computed in constant time.
+ *
+ * Elements can be {@link #set(int, Object) stored} concurrently by different threads
+ * at distinct indices, and are safely published to the threads that {@link #get(int) read} them.
+ * {@link #add(Object)} instead must be invoked by one thread at a time
+ * (e.g. while holding the lock of the owner of the store).
+ *
+ * @param <T> type of the stored elements
+ */
+class SegmentedStore<T> implements Iterable<T> {
+
+	private static final int FIRST_SEGMENT_BITS = 3;
+	static final int FIRST_SEGMENT = 1 << FIRST_SEGMENT_BITS;
+	private static final int MAX_SEGMENTS = Integer.SIZE - 1 - FIRST_SEGMENT_BITS;
+
+	private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(Object[].class);
+	private static final VarHandle SEGMENT = MethodHandles.arrayElementVarHandle(Object[][].class);
+
+	private final Object[][] segments = new Object[MAX_SEGMENTS][];
+	private final AtomicInteger size = new AtomicInteger();
+
+	/**
+	 * Computes the segment that contains the given index
+	 *
+	 * @param index the index of the element
+	 * @return the segment number
+	 */
+	static int segmentOf(int index) {
+		return Integer.SIZE - 1 - Integer.numberOfLeadingZeros(index + FIRST_SEGMENT) - FIRST_SEGMENT_BITS;
+	}
+
+	/**
+	 * Computes the position of the given index within its segment
+	 *
+	 * @param index the index of the element
+	 * @return the offset within the segment
+	 */
+	static int offsetOf(int index) {
+		int i = index + FIRST_SEGMENT;
+		return i - Integer.highestOneBit(i);
+	}
+
+	/**
+	 * Computes the capacity of a segment
+	 *
+	 * @param segment the segment number
+	 * @return number of slots in the segment
+	 */
+	static int segmentSize(int segment) {
+		return FIRST_SEGMENT << segment;
+	}
+
+	/**
+	 * Appends an element at the end of the store
+	 *
+	 * @param element the element to be added
+	 * @return the index assigned to the element
+	 */
+	int add(T element) {
+		int index = size.get();
+		set(index, element);
+		return index;
+	}
+
+	/**
+	 * Stores an element at the given index.
+	 * The size of the store grows to include the index, if needed.
+	 *
+	 * @param index the index of the element, not negative
+	 * @param element the element to be stored
+	 */
+	void set(int index, T element) {
+		SLOT.setRelease(segment(segmentOf(index)), offsetOf(index), element);
+		size.accumulateAndGet(index + 1, Math::max);
+	}
+
+	private Object[] segment(int s) {
+		Object[] segment = (Object[]) SEGMENT.getAcquire(segments, s);
+		if(segment == null) {
+			synchronized(segments) {
+				segment = segments[s];
+				if(segment == null) {
+					segment = new Object[segmentSize(s)];
+					SEGMENT.setRelease(segments, s, segment);
+				}
+			}
+		}
+		return segment;
+	}
+
+	/**
+	 * Retrieves the element at the given index
+	 *
+	 * @param index the index of the element
+	 * @return the element or {@code null} if no element is stored at the index
+	 */
+	@SuppressWarnings("unchecked")
+	T get(int index) {
+		if(index < 0 || index >= size.get()) return null;
+		Object[] segment = (Object[]) SEGMENT.getAcquire(segments, segmentOf(index));
+		if(segment == null) return null;
+		return (T) SLOT.getAcquire(segment, offsetOf(index));
+	}
+
+	/**
+	 * Retrieves the number of slots of the store, i.e. the highest stored index plus one
+	 *
+	 * @return number of elements
+	 */
+	int size() {
+		return size.get();
+	}
+
+	boolean isEmpty() {
+		return size() == 0;
+	}
+
+	/**
+	 * Iterates over the stored elements in order of index,
+	 * skipping the slots that are still empty.
+	 */
+	@Override
+	public Iterator<T> iterator() {
+		return new Iterator<T>() {
+			private final int end = size();
+			private int next = advance(0);
+
+			private int advance(int from) {
+				while(from < end && get(from) == null) from++;
+				return from;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return next < end;
+			}
+
+			@Override
+			public T next() {
+				if(next >= end) throw new NoSuchElementException();
+				T element = get(next);
+				next = advance(next + 1);
+				return element;
+			}
+		};
+	}
+}
@@ -0,0 +1,260 @@
+package university;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable aggregates of the registrations and exams of a {@link University}
+ * (study plan sizes, grade totals and ranking) at the time of a snapshot.
+ *
+ * The university keeps the aggregates of its latest {@link UniversitySnapshot} and
+ * {@link #advance advances} them to the next snapshot by applying only the registrations
+ * and exams recorded in between. The new aggregates share with the previous ones all
+ * the parts that did not change (copy-on-write): the totals of the students are kept in pages
+ * of {@value #PAGE} students, and only the pages of the students involved in the new records
+ * are copied; the ranking is kept in sorted chunks, and only the chunks where students
+ * moved are copied.
+ * So a snapshot costs time proportional to the changes since the previous one
+ * (plus the directories of pages and chunks), and its queries never scan the whole university.
+ */
+final class SnapshotAggregates {
+
+	private static final int PAGE_BITS = 10;
+	static final int PAGE = 1 << PAGE_BITS;
+	private static final int CHUNK = 256;
+
+	static final SnapshotAggregates EMPTY = new SnapshotAggregates(0, 0, 0, 0,
+			new int[0][], new int[0][], new int[0][], new GradeStatistics[0], new ScoreIndex.Entry[0][]);
+
+	final int numStudents;
+	final int numCourses;
+	final int numRegistrations;
+	final int numExams;
+
+	// pages of the totals of the students, null if no student of the page has any
+	private final int[][] planSizes;
+	private final int[][] examCounts;
+	private final int[][] gradeSums;
+	private final GradeStatistics[] courseGrades;
+	private final ScoreIndex.Entry[][] ranking; // chunks of the students with a score, sorted by decreasing score
+
+	private SnapshotAggregates(int numStudents, int numCourses, int numRegistrations, int numExams,
+			int[][] planSizes, int[][] examCounts, int[][] gradeSums,
+			GradeStatistics[] courseGrades, ScoreIndex.Entry[][] ranking) {
+		this.numStudents = numStudents;
+		this.numCourses = numCourses;
+		this.numRegistrations = numRegistrations;
+		this.numExams = numExams;
+		this.planSizes = planSizes;
+		this.examCounts = examCounts;
+		this.gradeSums = gradeSums;
+		this.courseGrades = courseGrades;
+		this.ranking = ranking;
+	}
+
+	int examCount(int student) {
+		return get(examCounts, student);
+	}
+
+	int gradeSum(int student) {
+		return get(gradeSums, student);
+	}
+
+	/**
+	 * @param course index of the course
+	 * @return the statistics of the grades of the course, shared and not to be modified
+	 */
+	GradeStatistics courseGrades(int course) {
+		return courseGrades[course];
+	}
+
+	/**
+	 * Retrieves the students with the highest score
+	 *
+	 * @param k the maximum number of students
+	 * @return the entries of the best students in order of decreasing score
+	 */
+	List<ScoreIndex.Entry> top(int k) {
+		List<ScoreIndex.Entry> top = new ArrayList<>();
+		for(ScoreIndex.Entry[] chunk : ranking) {
+			for(ScoreIndex.Entry e : chunk) {
+				if(top.size() == k) return top;
+				top.add(e);
+			}
+		}
+		return top;
+	}
+
+	private static int get(int[][] pages, int student) {
+		int page = student >>> PAGE_BITS;
+		if(page >= pages.length || pages[page] == null) return 0;
+		return pages[page][student & (PAGE - 1)];
+	}
+
+	/**
+	 * Computes the score of a student as {@link Student#score(int, int, int)}
+	 */
+	private static double score(int[][] planSizes, int[][] examCounts, int[][] gradeSums, int student) {
+		return Student.score(get(examCounts, student), get(gradeSums, student), get(planSizes, student));
+	}
+
+	/**
+	 * Computes the aggregates of a later snapshot of the same university,
+	 * applying the registrations and exams recorded after this one.
+	 * The counts must not be smaller than the ones of these aggregates.
+	 *
+	 * @param university the university
+	 * @param numStudents number of students in the later snapshot
+	 * @param numCourses number of courses in the later snapshot
+	 * @param numRegistrations number of registrations in the later snapshot
+	 * @param numExams number of exams in the later snapshot
+	 * @return the aggregates of the later snapshot
+	 */
+	SnapshotAggregates advance(University university, int numStudents, int numCourses,
+			int numRegistrations, int numExams) {
+		if(numRegistrations == this.numRegistrations && numExams == this.numExams
+				&& numStudents == this.numStudents && numCourses == this.numCourses) {
+			return this;
+		}
+		RegistrationLog registrations = university.registrations();
+		ExamLedger exams = university.exams();
+
+		// the students whose totals, hence score, change
+		int[] touched = new int[numRegistrations - this.numRegistrations + numExams - this.numExams];
+		int n = 0;
+		for(int row=this.numRegistrations; row<numRegistrations; ++row) {
+			touched[n++] = registrations.student(row);
+		}
+		for(int row=this.numExams; row<numExams; ++row) {
+			touched[n++] = exams.student(row);
+		}
+		Arrays.sort(touched);
+		int numTouched = 0;
+		for(int i=0; i<touched.length; ++i) {
+			if(numTouched == 0 || touched[i] != touched[numTouched - 1]) touched[numTouched++] = touched[i];
+		}
+
+		Ranking newRanking = new Ranking(ranking);
+		for(int i=0; i<numTouched; ++i) {
+			int s = touched[i];
+			if(examCount(s) > 0) {
+				newRanking.remove(new ScoreIndex.Entry(score(planSizes, examCounts, gradeSums, s), university.studentAt(s)));
+			}
+		}
+
+		int numPages = (numStudents + PAGE - 1) >>> PAGE_BITS;
+		int[][] newPlanSizes = Arrays.copyOf(planSizes, Math.max(numPages, planSizes.length));
+		int[][] newExamCounts = Arrays.copyOf(examCounts, Math.max(numPages, examCounts.length));
+		int[][] newGradeSums = Arrays.copyOf(gradeSums, Math.max(numPages, gradeSums.length));
+		GradeStatistics[] newCourseGrades = Arrays.copyOf(courseGrades, numCourses);
+		for(int c=this.numCourses; c<numCourses; ++c) {
+			newCourseGrades[c] = new GradeStatistics();
+		}
+		boolean[] copiedGrades = new boolean[numCourses];
+
+		for(int row=this.numRegistrations; row<numRegistrations; ++row) {
+			int s = registrations.student(row);
+			writable(newPlanSizes, planSizes, s)[s & (PAGE - 1)]++;
+		}
+		for(int row=this.numExams; row<numExams; ++row) {
+			int s = exams.student(row);
+			int c = exams.course(row);
+			int grade = exams.grade(row);
+			writable(newExamCounts, examCounts, s)[s & (PAGE - 1)]++;
+			writable(newGradeSums, gradeSums, s)[s & (PAGE - 1)] += grade;
+			if(c < this.numCourses && ! copiedGrades[c]) { // shared with these aggregates
+				newCourseGrades[c] = newCourseGrades[c].copy();
+				copiedGrades[c] = true;
+			}
+			newCourseGrades[c].add(grade);
+		}
+
+		for(int i=0; i<numTouched; ++i) {
+			int s = touched[i];
+			if(get(newExamCounts, s) > 0) {
+				newRanking.add(new ScoreIndex.Entry(score(newPlanSizes, newExamCounts, newGradeSums, s), university.studentAt(s)));
+			}
+		}
+		return new SnapshotAggregates(numStudents, numCourses, numRegistrations, numExams,
+				newPlanSizes, newExamCounts, newGradeSums, newCourseGrades, newRanking.chunks());
+	}
+
+	/**
+	 * Returns the page of a student in a new directory, copying it the first time
+	 * it is written if it is shared with the old directory
+	 */
+	private static int[] writable(int[][] pages, int[][] oldPages, int student) {
+		int page = student >>> PAGE_BITS;
+		int[] p = pages[page];
+		if(p == null) {
+			p = new int[PAGE];
+			pages[page] = p;
+		} else if(page < oldPages.length && p == oldPages[page]) {
+			p = p.clone();
+			pages[page] = p;
+		}
+		return p;
+	}
+
+	/**
+	 * Ranking being updated: the chunks where entries are removed or added are replaced
+	 * by mutable copies, split again into chunks of at most {@value #CHUNK} entries at the end
+	 */
+	private static final class Ranking {
+		private final ScoreIndex.Entry[][] chunks;
+		private final List<List<ScoreIndex.Entry>> changed;
+
+		Ranking(ScoreIndex.Entry[][] chunks) {
+			this.chunks = chunks.length > 0 ? chunks : new ScoreIndex.Entry[][] {new ScoreIndex.Entry[0]};
+			this.changed = new ArrayList<>(Collections.nCopies(this.chunks.length, null));
+		}
+
+		void remove(ScoreIndex.Entry e) {
+			List<ScoreIndex.Entry> chunk = chunkOf(e);
+			chunk.remove(Collections.binarySearch(chunk, e, ScoreIndex.BY_SCORE));
+		}
+
+		void add(ScoreIndex.Entry e) {
+			List<ScoreIndex.Entry> chunk = chunkOf(e);
+			chunk.add(-Collections.binarySearch(chunk, e, ScoreIndex.BY_SCORE) - 1, e);
+		}
+
+		/**
+		 * Finds the chunk where an entry is, or should be inserted: the last one
+		 * whose original first entry does not follow it
+		 */
+		private List<ScoreIndex.Entry> chunkOf(ScoreIndex.Entry e) {
+			int low = 1;
+			int high = chunks.length - 1;
+			while(low <= high) {
+				int mid = (low + high) >>> 1;
+				if(ScoreIndex.BY_SCORE.compare(chunks[mid][0], e) <= 0) low = mid + 1;
+				else high = mid - 1;
+			}
+			int i = low - 1;
+			List<ScoreIndex.Entry> chunk = changed.get(i);
+			if(chunk == null) {
+				chunk = new ArrayList<>(Arrays.asList(chunks[i]));
+				changed.set(i, chunk);
+			}
+			return chunk;
+		}
+
+		ScoreIndex.Entry[][] chunks() {
+			List<ScoreIndex.Entry[]> result = new ArrayList<>(chunks.length);
+			for(int i=0; i<chunks.length; ++i) {
+				List<ScoreIndex.Entry> chunk = changed.get(i);
+				if(chunk == null) {
+					if(chunks[i].length > 0) result.add(chunks[i]);
+					continue;
+				}
+				for(int from=0; from<chunk.size(); from+=CHUNK) {
+					result.add(chunk.subList(from, Math.min(chunk.size(), from + CHUNK)).toArray(new ScoreIndex.Entry[0]));
+				}
+			}
+			return result.toArray(new ScoreIndex.Entry[0][]);
+		}
+	}
+}
@@ -0,0 +1,616 @@
+package university;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary snapshot of the state of a {@link University},
+ * used to restart without replaying all the operations.
+ *
+ * The file starts with a header (magic number, format version, name
+ * of the university and ID of its first student) followed by one or more segments.
+ * A segment is a sequence of blocks, each containing up to {@value #BLOCK_RECORDS}
+ * consecutive records of one kind:
+ * <ul>
+ * <li>names: the distinct first and last names, in order of id in the {@link NameDictionary}</li>
+ * <li>students: the ids of the first and last name</li>
+ * <li>courses: title and teacher</li>
+ * <li>registrations: the rows of the registration log (student, course)</li>
+ * <li>exams: the rows of the exam ledger (student, course, grade, date)</li>
+ * </ul>
+ * and ends with a commit block, holding the rector and the total number of records
+ * of each kind in the segment and in the ones before it.
+ *
+ * Records are only ever appended to a university, so a snapshot is brought up to date
+ * by {@link #append appending} a segment with the records added since its last commit,
+ * at a cost proportional to them; {@link #write} writes a snapshot with a single segment.
+ * Each registration is stored once: the study plans and the attendee lists are rebuilt
+ * by replaying the log in order, which is the order both of them were filled in.
+ *
+ * Numbers are stored as variable-length integers and strings as UTF-8 bytes.
+ * The header and every block are protected by a CRC32 checksum, so a corrupted
+ * or truncated file is detected while loading. Only the bytes after the last commit
+ * are ignored: they are the partial segment of an append that was interrupted,
+ * and the university is restored as of the last commit.
+ *
+ * The snapshot is written block by block, so the whole content is never held in memory;
+ * a new snapshot is written to a temporary file that replaces the destination only when complete.
+ * It is loaded through a memory-mapped file, one block at a time, into a university
+ * whose stores are sized from the totals of the last commit.
+ *
+ * The numbers of records to be written are read in reverse order of dependency,
+ * as by {@link University#snapshot()}, so the snapshot of a university can be taken
+ * while other threads modify it: every record in the file refers to records in the file.
+ * A snapshot file must not be written by several threads at once.
+ */
+public final class SnapshotFile {
+
+	static final int MAGIC = 0x554E4956; // "UNIV"
+	static final short VERSION = 2;
+	static final int BLOCK_RECORDS = 4096;
+
+	private static final byte COMMIT = 0;
+	private static final byte STUDENTS = 1;
+	private static final byte COURSES = 2;
+	private static final byte REGISTRATIONS = 3;
+	private static final byte EXAMS = 4;
+	private static final byte NAMES = 5;
+
+	// magic (int), version (short), reserved (short), payload length (int)
+	private static final int HEADER = 4 + 2 + 2 + 4;
+	// kind (byte), first record (int), number of records (int), payload length (int)
+	private static final int BLOCK_HEADER = 1 + 4 + 4 + 4;
+
+	private SnapshotFile() {}
+
+	/**
+	 * Number of records of each kind in a snapshot up to a commit
+	 */
+	private static final class Totals {
+		static final Totals NONE = new Totals(0, 0, 0, 0, 0, null);
+
+		final int names;
+		final int students;
+		final int courses;
+		final int registrations;
+		final int exams;
+		final String rector;
+
+		Totals(int names, int students, int courses, int registrations, int exams, String rector) {
+			this.names = names;
+			this.students = students;
+			this.courses = courses;
+			this.registrations = registrations;
+			this.exams = exams;
+			this.rector = rector;
+		}
+
+		/**
+		 * @return {@code true} if the university has exactly these records
+		 */
+		boolean matches(University university) {
+			return university.names().size() == names && university.studentCount() == students
+					&& university.courseCount() == courses && university.registrations().size() == registrations
+					&& university.exams().size() == exams;
+		}
+
+		/**
+		 * @return {@code true} if the university has at least these records
+		 */
+		boolean isCoveredBy(University university) {
+			return university.names().size() >= names && university.studentCount() >= students
+					&& university.courseCount() >= courses && university.registrations().size() >= registrations
+					&& university.exams().size() >= exams;
+		}
+	}
+
+	/**
+	 * Writes the snapshot of a university
+	 *
+	 * @param university the university
+	 * @param file the destination file, replaced if existing
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(University university, Path file) throws IOException {
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		try(FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			Encoder out = new Encoder(channel);
+			out.beginHeader();
+			out.putString(university.getName());
+			out.putVarint(university.firstId());
+			out.endHeader();
+			out.putSegment(university, Totals.NONE);
+			channel.force(false);
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Brings the snapshot of a university up to date, appending the records
+	 * added since it was last written.
+	 *
+	 * If a previous append was interrupted, its partial segment is replaced.
+	 *
+	 * @param university the university
+	 * @param file a snapshot of the same university, written by {@link #write} and possibly
+	 * 			already appended to
+	 * @throws StreamCorruptedException if the file is not a valid snapshot, or it is corrupted
+	 * @throws IllegalArgumentException if the file is the snapshot of another university
+	 * @throws IOException if the file cannot be read or written
+	 */
+	public static void append(University university, Path file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer header = readRecord(channel, 0, HEADER, 8, file);
+			Decoder decoder = new Decoder(header);
+			decoder.readHeader();
+			long commit = findLastCommit(channel, header.capacity());
+			if(commit < 0) throw new StreamCorruptedException("Truncated snapshot " + file);
+			ByteBuffer block = readRecord(channel, commit, BLOCK_HEADER, 9, file);
+			Totals last = new Decoder(block).readCommit();
+			if(! decoder.name.equals(university.getName()) || decoder.firstId != university.firstId()
+					|| ! last.isCoveredBy(university)) {
+				throw new IllegalArgumentException("Snapshot of another university: " + file);
+			}
+
+			long end = commit + block.capacity();
+			channel.truncate(end); // drops the partial segment of an interrupted append
+			channel.position(end);
+			new Encoder(channel).putSegment(university, last);
+			channel.force(false);
+		}
+	}
+
+	/**
+	 * Loads a university from a snapshot
+	 *
+	 * @param file the snapshot file
+	 * @return the restored university
+	 * @throws StreamCorruptedException if the file is not a valid snapshot, or it is corrupted
+	 * @throws IOException if the file cannot be read
+	 */
+	public static University read(Path file) throws IOException {
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if(channel.size() > Integer.MAX_VALUE) {
+				throw new StreamCorruptedException("Snapshot too large: " + channel.size() + " bytes");
+			}
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			Decoder decoder = new Decoder(map);
+			decoder.readHeader();
+			long commit = findLastCommit(channel, map.position());
+			if(commit < 0) throw new StreamCorruptedException("Truncated snapshot " + file);
+			return decoder.read((int)commit);
+		} catch(BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+			StreamCorruptedException error = new StreamCorruptedException("Truncated or malformed snapshot " + file);
+			error.initCause(e);
+			throw error;
+		}
+	}
+
+	/**
+	 * Finds the last commit block, looking only at the fixed part of the blocks
+	 *
+	 * @param channel the snapshot file
+	 * @param from the offset of the first block
+	 * @return the offset of the last commit block, or -1 if there is none
+	 */
+	private static long findLastCommit(FileChannel channel, long from) throws IOException {
+		ByteBuffer fixed = ByteBuffer.allocate(BLOCK_HEADER);
+		long size = channel.size();
+		long last = -1;
+		for(long position = from; size - position >= BLOCK_HEADER + 4; ) {
+			fixed.clear();
+			while(fixed.hasRemaining() && channel.read(fixed, position + fixed.position()) >= 0);
+			int length = fixed.getInt(9);
+			if(length < 0 || length > size - position - BLOCK_HEADER - 4) break;
+			if(fixed.get(0) == COMMIT) last = position;
+			position += BLOCK_HEADER + length + 4;
+		}
+		return last;
+	}
+
+	/**
+	 * Reads the header or a block, with its checksum, into a buffer of the same size
+	 *
+	 * @param position the offset of the header or of the block
+	 * @param headerLength length of the fixed part before the payload
+	 * @param lengthOffset offset of the payload length within the fixed part
+	 */
+	private static ByteBuffer readRecord(FileChannel channel, long position, int headerLength, int lengthOffset,
+			Path file) throws IOException {
+		ByteBuffer fixed = ByteBuffer.allocate(headerLength);
+		while(fixed.hasRemaining() && channel.read(fixed, position + fixed.position()) >= 0);
+		int length = fixed.getInt(lengthOffset);
+		if(fixed.hasRemaining() || length < 0 || length > channel.size() - position - headerLength - 4) {
+			throw new StreamCorruptedException("Truncated snapshot " + file);
+		}
+		ByteBuffer record = ByteBuffer.allocate(headerLength + length + 4);
+		while(record.hasRemaining() && channel.read(record, position + record.position()) >= 0);
+		record.flip();
+		return record;
+	}
+
+	/**
+	 * Encodes the header and the blocks into a reusable buffer,
+	 * then writes each of them followed by its checksum.
+	 */
+	private static final class Encoder {
+		private final FileChannel channel;
+		private final CRC32 crc = new CRC32();
+		private ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+		Encoder(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		/**
+		 * Writes the records of a university that follow the ones of a commit,
+		 * then a new commit
+		 */
+		void putSegment(University university, Totals from) throws IOException {
+			// read in reverse order of dependency, so that everything referenced is included
+			ExamLedger exams = university.exams();
+			int numExams = exams.size();
+			RegistrationLog registrations = university.registrations();
+			int numRegistrations = registrations.size();
+			StudentTable students = university.students();
+			int numStudents = university.studentCount();
+			for(int i=from.students; i<numStudents; ++i) {
+				while(! students.contains(i)) Thread.yield(); // enrollment in progress
+			}
+			NameDictionary names = university.names();
+			int numNames = names.size();
+			int numCourses = university.courseCount();
+			for(int i=from.courses; i<numCourses; ++i) {
+				while(university.courseAt(i) == null) Thread.yield(); // activation in progress
+			}
+
+			for(int first=from.names; first<numNames; first+=BLOCK_RECORDS) {
+				int count = Math.min(BLOCK_RECORDS, numNames - first);
+				beginBlock(NAMES, first);
+				for(int id=first; id<first+count; ++id) {
+					int length = names.encodedLength(id);
+					putVarint(length);
+					ensure(length);
+					names.copyEncoded(id, buffer);
+				}
+				endBlock(count);
+			}
+			for(int first=from.students; first<numStudents; first+=BLOCK_RECORDS) {
+				int count = Math.min(BLOCK_RECORDS, numStudents - first);
+				beginBlock(STUDENTS, first);
+				for(int i=first; i<first+count; ++i) {
+					putVarint(students.firstNameId(i));
+					putVarint(students.lastNameId(i));
+				}
+				endBlock(count);
+			}
+			for(int first=from.courses; first<numCourses; first+=BLOCK_RECORDS) {
+				int count = Math.min(BLOCK_RECORDS, numCourses - first);
+				beginBlock(COURSES, first);
+				for(int i=first; i<first+count; ++i) {
+					Course c = university.courseAt(i);
+					putString(c.getTitle());
+					putString(c.getTeacher());
+				}
+				endBlock(count);
+			}
+			for(int first=from.registrations; first<numRegistrations; first+=BLOCK_RECORDS) {
+				int count = Math.min(BLOCK_RECORDS, numRegistrations - first);
+				beginBlock(REGISTRATIONS, first);
+				for(int row=first; row<first+count; ++row) {
+					putVarint(registrations.student(row));
+					putVarint(registrations.course(row));
+				}
+				endBlock(count);
+			}
+			for(int first=from.exams; first<numExams; first+=BLOCK_RECORDS) {
+				int count = Math.min(BLOCK_RECORDS, numExams - first);
+				beginBlock(EXAMS, first);
+				for(int row=first; row<first+count; ++row) {
+					putVarint(exams.student(row));
+					putVarint(exams.course(row));
+					putVarint(exams.grade(row));
+					putVarint(exams.day(row));
+				}
+				endBlock(count);
+			}
+
+			beginBlock(COMMIT, 0);
+			putVarint(numNames);
+			putVarint(numStudents);
+			putVarint(numCourses);
+			putVarint(numRegistrations);
+			putVarint(numExams);
+			putString(university.getRector());
+			endBlock(0);
+		}
+
+		void beginHeader() {
+			buffer.clear();
+			buffer.putInt(MAGIC);
+			buffer.putShort(VERSION);
+			buffer.putShort((short)0); // reserved
+			buffer.putInt(0); // length, filled in by endHeader
+		}
+
+		void endHeader() throws IOException {
+			buffer.putInt(8, buffer.position() - HEADER);
+			flushWithChecksum();
+		}
+
+		void beginBlock(byte kind, int first) {
+			buffer.clear();
+			buffer.put(kind);
+			buffer.putInt(first);
+			buffer.putInt(0); // count, filled in by endBlock
+			buffer.putInt(0); // length, filled in by endBlock
+		}
+
+		void endBlock(int count) throws IOException {
+			buffer.putInt(5, count);
+			buffer.putInt(9, buffer.position() - BLOCK_HEADER);
+			flushWithChecksum();
+		}
+
+		private void flushWithChecksum() throws IOException {
+			ensure(4);
+			buffer.flip();
+			crc.reset();
+			crc.update(buffer.duplicate());
+			buffer.limit(buffer.limit() + 4);
+			buffer.putInt(buffer.limit() - 4, (int)crc.getValue());
+			while(buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+
+		void putVarint(int value) {
+			ensure(5);
+			while((value & ~0x7F) != 0) {
+				buffer.put((byte)((value & 0x7F) | 0x80));
+				value >>>= 7;
+			}
+			buffer.put((byte)value);
+		}
+
+		void putString(String s) {
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			putVarint(bytes.length);
+			ensure(bytes.length);
+			buffer.put(bytes);
+		}
+
+		private void ensure(int bytes) {
+			if(buffer.remaining() < bytes) {
+				ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+				buffer.flip();
+				larger.put(buffer);
+				buffer = larger;
+			}
+		}
+	}
+
+	/**
+	 * Verifies and decodes the content of a snapshot.
+	 * Each block is copied into a reusable array, where its checksum
+	 * is verified and its records are decoded.
+	 */
+	private static final class Decoder {
+		private final ByteBuffer in;
+		private final CRC32 crc = new CRC32();
+		private byte[] block = new byte[1 << 16];
+		private int position;
+		private int limit;
+
+		private String name;
+		private int firstId;
+		private University university;
+		private Totals totals; // of the last commit
+
+		Decoder(ByteBuffer in) {
+			this.in = in;
+		}
+
+		/**
+		 * Decodes the header, leaving the input at the first block
+		 */
+		void readHeader() throws IOException {
+			load(HEADER, 8, "header");
+			if(getInt(0) != MAGIC) throw new StreamCorruptedException("Not a university snapshot");
+			short version = (short)(((block[4] & 0xFF) << 8) | (block[5] & 0xFF));
+			if(version != VERSION) throw new StreamCorruptedException("Unsupported snapshot version " + version);
+			name = getString();
+			firstId = getVarint();
+			expect(position == limit);
+		}
+
+		/**
+		 * Decodes the commit block at the current position of the input
+		 */
+		Totals readCommit() throws IOException {
+			load(BLOCK_HEADER, 9, "commit");
+			expect(block[0] == COMMIT);
+			Totals t = new Totals(getVarint(), getVarint(), getVarint(), getVarint(), getVarint(), getString());
+			expect(t.names >= 0 && t.students >= 0 && t.courses >= 0 && t.registrations >= 0 && t.exams >= 0
+					&& t.names <= 2 * t.students && position == limit);
+			return t;
+		}
+
+		/**
+		 * Decodes the blocks after the header, up to the last commit
+		 *
+		 * @param lastCommit the offset of the last commit
+		 * @return the restored university
+		 */
+		University read(int lastCommit) throws IOException {
+			int start = in.position();
+			in.position(lastCommit);
+			totals = readCommit();
+			in.position(start);
+			university = new University(name, firstId, totals.names, totals.exams);
+
+			while(in.position() <= lastCommit) {
+				start = in.position();
+				if(in.get(start) == COMMIT) {
+					Totals committed = readCommit();
+					if(! committed.matches(university)) {
+						throw new StreamCorruptedException("Incomplete segment before offset " + start);
+					}
+					university.restoreRector(committed.rector);
+					continue;
+				}
+				load(BLOCK_HEADER, 9, "block at offset " + start);
+				int first = getInt(1);
+				int count = getInt(5);
+				if(first < 0 || count < 0) {
+					throw new StreamCorruptedException("Malformed block at offset " + start);
+				}
+				decodeBlock(block[0], first, count);
+				if(position != limit) {
+					throw new StreamCorruptedException("Inconsistent block at offset " + start);
+				}
+			}
+			university.restoreRanking();
+			return university;
+		}
+
+		/**
+		 * Copies the header or the block at the current position of the input into the array,
+		 * verifies its checksum and moves the position of the array to the start of its payload
+		 *
+		 * @param headerLength length of the fixed part before the payload
+		 * @param lengthOffset offset of the payload length within the fixed part
+		 */
+		private void load(int headerLength, int lengthOffset, String what) throws StreamCorruptedException {
+			int start = in.position();
+			if(in.remaining() < headerLength) throw new StreamCorruptedException("Truncated " + what);
+			int length = in.getInt(start + lengthOffset);
+			if(length < 0 || length > in.remaining() - headerLength - 4) {
+				throw new StreamCorruptedException("Malformed " + what);
+			}
+			int total = headerLength + length;
+			if(block.length < total) block = new byte[Math.max(total, block.length * 2)];
+			in.get(block, 0, total);
+			crc.reset();
+			crc.update(block, 0, total);
+			if(in.getInt() != (int)crc.getValue()) {
+				throw new StreamCorruptedException("Checksum mismatch in " + what);
+			}
+			position = headerLength;
+			limit = total;
+		}
+
+		private void decodeBlock(byte kind, int first, int count) throws StreamCorruptedException {
+			switch(kind) {
+			case NAMES:
+				NameDictionary names = university.names();
+				expect(first == names.size() && count <= totals.names - first);
+				for(int i=0; i<count; ++i) {
+					int length = getVarint();
+					expect(length >= 0 && length <= limit - position);
+					expect(names.add(block, position, length) == first + i);
+					position += length;
+				}
+				break;
+			case STUDENTS:
+				expect(first == university.studentCount() && count <= totals.students - first);
+				for(int i=0; i<count; ++i) {
+					int firstName = getName();
+					university.restoreStudent(firstName, getName());
+				}
+				break;
+			case COURSES:
+				expect(first == university.courseCount() && count <= totals.courses - first);
+				for(int i=0; i<count; ++i) {
+					String title = getString();
+					university.addCourse(title, getString());
+				}
+				break;
+			case REGISTRATIONS:
+				expect(first == university.registrations().size() && count <= totals.registrations - first);
+				for(int i=0; i<count; ++i) {
+					int s = student(getVarint());
+					Course c = course(getVarint());
+					expect(! university.attends(s, c));
+					university.recordRegistration(s, c);
+				}
+				break;
+			case EXAMS:
+				expect(first == university.exams().size() && count <= totals.exams - first);
+				for(int i=0; i<count; ++i) {
+					int s = student(getVarint());
+					Course c = course(getVarint());
+					int grade = getGrade();
+					university.recordExam(s, c, grade, getVarint());
+				}
+				break;
+			default:
+				throw new StreamCorruptedException("Unknown block kind " + kind);
+			}
+		}
+
+		private int student(int index) throws StreamCorruptedException {
+			expect(university.hasStudent(index));
+			return index;
+		}
+
+		private Course course(int index) throws StreamCorruptedException {
+			Course c = university.courseAt(index);
+			expect(c != null);
+			return c;
+		}
+
+		/**
+		 * Reads the id of a name already restored
+		 */
+		private int getName() throws StreamCorruptedException {
+			int id = getVarint();
+			expect(id >= 0 && id < university.names().size());
+			return id;
+		}
+
+		private int getGrade() throws StreamCorruptedException {
+			int grade = getVarint();
+			expect(GradeStatistics.isValidGrade(grade));
+			return grade;
+		}
+
+		private static void expect(boolean condition) throws StreamCorruptedException {
+			if(! condition) throw new StreamCorruptedException("Inconsistent snapshot content");
+		}
+
+		private int getInt(int offset) {
+			return ((block[offset] & 0xFF) << 24) | ((block[offset + 1] & 0xFF) << 16)
+					| ((block[offset + 2] & 0xFF) << 8) | (block[offset + 3] & 0xFF);
+		}
+
+		private int getVarint() throws StreamCorruptedException {
+			int value = 0;
+			for(int shift=0; shift<32 && position<limit; shift+=7) {
+				byte b = block[position++];
+				value |= (b & 0x7F) << shift;
+				if(b >= 0) return value;
+			}
+			throw new StreamCorruptedException("Malformed number");
+		}
+
+		private String getString() throws StreamCorruptedException {
+			int length = getVarint();
+			if(length < 0 || length > limit - position) throw new StreamCorruptedException("Malformed string");
+			String s = new String(block, position, length, StandardCharsets.UTF_8);
+			position += length;
+			return s;
+		}
+	}
+}
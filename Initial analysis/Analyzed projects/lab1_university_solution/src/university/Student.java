@@ -1,89 +1,98 @@
 package university;
 
-class Student {
-	
+import java.io.IOException;
+
+/**
+ * View of a student enrolled in the university.
+ *
+ * The students are stored as rows of the university's {@link StudentTable},
+ * so a student takes a few ints and no object while it is not being looked at:
+ * a view is built only when a student is requested, e.g. by {@link University#student(int)}
+ * or to be listed in the ranking, and its names are read from the
+ * {@link NameDictionary} when needed.
+ * Views of the same student are equal.
+ *
+ * The names of a student never change, so the view is immutable and thread-safe.
+ */
+final class Student {
+
 	private static final String SEPARATOR = " ";
+	private final StudentTable table;
+	private final int index;
 	private final int ID;
-	private final String first;
-	private final String last;
-	
-	private Course[] courses;
-	private Exam[] exams;
-	private int nextExam=0;
-	
-	public Student(int id, String first, String last) {
+
+	/**
+	 * Constructor
+	 *
+	 * @param table the table where the student is stored
+	 * @param index the index of the student in the table
+	 * @param id the ID of the student
+	 */
+	Student(StudentTable table, int index, int id) {
+		this.table = table;
+		this.index = index;
 		this.ID = id;
-		this.first = first;
-		this.last = last;
-		courses = new Course[University.MAX_COURSES_PER_STUDENT];
-		exams = new Exam[University.MAX_COURSES_PER_STUDENT];
 	}
-	
+
 	public String toString(){
-		return ID + SEPARATOR + first + SEPARATOR + last;
-		// TODO: probably to be optimized with StringBuffer
-//		return (new StringBuffer()).append(ID).append(SEPARATOR).
-//				append(first).append(SEPARATOR).
-//				append(last).toString();
-	}
-	
-	public void enroll(Course c){
-		for(int i=0; i< courses.length; ++i){
-			if( courses[i] == null){
-				courses[i] = c;
-				break;
-			}
-		}
+		return ID + SEPARATOR + getFirst() + SEPARATOR + getLast();
 	}
 
-	public String courses() {
-		StringBuilder result = new StringBuilder();
-		for(Course c : courses){
-			if(c!=null){
-				result.append(c).append("\n");
-			}
-		}
-		return result.toString();
-	}
-	
-	void addExam(Exam e) {
-		exams[nextExam++] = e;
+	/**
+	 * Writes the description of the student, as in {@link #toString()}
+	 *
+	 * @param out the destination
+	 * @throws IOException if the destination cannot be written
+	 */
+	void appendTo(Appendable out) throws IOException {
+		out.append(Integer.toString(ID)).append(SEPARATOR).append(getFirst()).append(SEPARATOR).append(getLast());
 	}
-	
+
 	public static boolean isValid(double x) {
 		return ! Double.isNaN(x);
 	}
-	
-	double average() {
-		if(nextExam==0) return Double.NaN;
-		double average = 0.0;
-		for(Exam e : exams) {
-			if(e==null) break;
-			average += e.getGrade();
-		}
-		return average/nextExam;
+
+	/**
+	 * Computes the score of a student, i.e. the average grade plus the bonus
+	 * for the number of exams taken w.r.t. the courses the student is enrolled to.
+	 *
+	 * @param numExams number of exams taken
+	 * @param gradeSum sum of the grades
+	 * @param planSize number of courses of the study plan
+	 * @return the score or {@code NaN} if the student took no exam
+	 */
+	static double score(int numExams, int gradeSum, int planSize) {
+		if(numExams == 0) return Double.NaN;
+		return gradeSum / (double)numExams + 10*numExams/(double)planSize;
 	}
 
 	public int getId() {
 		return ID;
 	}
-	
-	public double getScore() {
-		double avg = average();
-		if(! isValid(avg)) return avg;
-		int taken = nextExam;
-		int enrolled = 0;
-		while(courses[enrolled]!=null) {enrolled++;}
-		
-		return avg + 10*taken/(double)enrolled;
+
+	/**
+	 * @return the index of the student in its table
+	 */
+	int getIndex() {
+		return index;
 	}
 
 	public String getLast() {
-		return last;
+		return table.lastName(index);
 	}
 
 	public String getFirst() {
-		return first;
+		return table.firstName(index);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof Student && ((Student)o).table == table && ((Student)o).index == index;
+	}
+
+	@Override
+	public int hashCode() {
+		return ID;
 	}
 
 }
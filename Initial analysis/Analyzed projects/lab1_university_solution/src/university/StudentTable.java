@@ -0,0 +1,195 @@
+package university;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Columnar store of the students of a university, indexed by their dense,
+ * zero-based index (i.e. the position in order of enrollment).
+ *
+ * Each student is a row of int columns, kept in pages of {@value #PAGE} students:
+ * the ids of its names in the {@link NameDictionary}, the heads of its chains
+ * in the {@link RegistrationLog} and in the {@link ExamLedger}, and the totals of its grades.
+ * The pages are allocated when first needed and never copied, so a student costs
+ * a few ints and no object; the {@link Student} objects are only views built on request.
+ * The full {@link GradeStatistics} of a student are kept only after they have been asked for.
+ *
+ * Students can be {@link #add stored} concurrently at distinct indices, and are
+ * safely published to the threads that read them. The other columns must be written
+ * while holding the lock of the student (see {@link University}); the heads of the chains
+ * are published when written, so the chains can be visited without locking.
+ */
+final class StudentTable {
+
+	private static final int PAGE_BITS = 10;
+	static final int PAGE = 1 << PAGE_BITS;
+
+	private static final VarHandle CELL = MethodHandles.arrayElementVarHandle(int[].class);
+
+	/**
+	 * The columns of {@value #PAGE} consecutive students.
+	 * Names and chain heads are stored plus one, so that 0 means absent.
+	 */
+	private static final class Page {
+		final int[] firstNames = new int[PAGE];
+		final int[] lastNames = new int[PAGE];
+		final int[] lastRegistrations = new int[PAGE];
+		final int[] lastExams = new int[PAGE];
+		final int[] examCounts = new int[PAGE];
+		final int[] gradeSums = new int[PAGE];
+		final GradeStatistics[] grades = new GradeStatistics[PAGE];
+	}
+
+	private final NameDictionary names;
+	private volatile Page[] pages = new Page[0];
+
+	/**
+	 * Constructor
+	 *
+	 * @param names the dictionary of the names of the students
+	 */
+	StudentTable(NameDictionary names) {
+		this.names = names;
+	}
+
+	/**
+	 * Stores a new student
+	 *
+	 * @param index the index of the student, not used yet
+	 * @param first first name
+	 * @param last last name
+	 */
+	void add(int index, String first, String last) {
+		add(index, names.intern(first), names.intern(last));
+	}
+
+	/**
+	 * Stores a new student whose names are already in the dictionary
+	 *
+	 * @param index the index of the student, not used yet
+	 * @param firstName id of the first name
+	 * @param lastName id of the last name
+	 */
+	void add(int index, int firstName, int lastName) {
+		Page p = writablePage(index);
+		int i = index & (PAGE - 1);
+		p.lastNames[i] = lastName + 1;
+		CELL.setRelease(p.firstNames, i, firstName + 1); // publishes the student
+	}
+
+	/**
+	 * @param index the index of the student
+	 * @return {@code true} if a student has been stored at the index
+	 */
+	boolean contains(int index) {
+		if(index < 0) return false;
+		Page p = page(index);
+		return p != null && (int)CELL.getAcquire(p.firstNames, index & (PAGE - 1)) != 0;
+	}
+
+	String firstName(int index) {
+		return names.name(firstNameId(index));
+	}
+
+	String lastName(int index) {
+		return names.name(lastNameId(index));
+	}
+
+	/**
+	 * @return the id of the first name of the student in the {@link NameDictionary}
+	 */
+	int firstNameId(int index) {
+		return page(index).firstNames[index & (PAGE - 1)] - 1;
+	}
+
+	/**
+	 * @return the id of the last name of the student in the {@link NameDictionary}
+	 */
+	int lastNameId(int index) {
+		return page(index).lastNames[index & (PAGE - 1)] - 1;
+	}
+
+	/**
+	 * @return the row of the latest registration of the student, or {@link RegistrationLog#NONE}
+	 */
+	int lastRegistration(int index) {
+		return (int)CELL.getAcquire(page(index).lastRegistrations, index & (PAGE - 1)) - 1;
+	}
+
+	void setLastRegistration(int index, int row) {
+		CELL.setRelease(page(index).lastRegistrations, index & (PAGE - 1), row + 1);
+	}
+
+	/**
+	 * @return the row of the latest exam of the student, or {@link ExamLedger#NONE}
+	 */
+	int lastExam(int index) {
+		return page(index).lastExams[index & (PAGE - 1)] - 1;
+	}
+
+	int examCount(int index) {
+		return page(index).examCounts[index & (PAGE - 1)];
+	}
+
+	int gradeSum(int index) {
+		return page(index).gradeSums[index & (PAGE - 1)];
+	}
+
+	/**
+	 * Records an exam taken by the student
+	 *
+	 * @param index the index of the student
+	 * @param grade the grade
+	 * @param row the row of the exam in the ledger
+	 */
+	void addExam(int index, int grade, int row) {
+		Page p = page(index);
+		int i = index & (PAGE - 1);
+		p.examCounts[i]++;
+		p.gradeSums[i] += grade;
+		p.lastExams[i] = row + 1;
+		if(p.grades[i] != null) p.grades[i].add(grade);
+	}
+
+	/**
+	 * @return the statistics of the grades of the student, or {@code null} if not kept
+	 */
+	GradeStatistics grades(int index) {
+		return page(index).grades[index & (PAGE - 1)];
+	}
+
+	/**
+	 * Starts keeping the statistics of the grades of the student,
+	 * updated by each later {@link #addExam exam}
+	 *
+	 * @param index the index of the student
+	 * @param grades the statistics of the exams taken so far
+	 */
+	void keepGrades(int index, GradeStatistics grades) {
+		page(index).grades[index & (PAGE - 1)] = grades;
+	}
+
+	private Page page(int index) {
+		Page[] dir = pages;
+		int p = index >>> PAGE_BITS;
+		return p < dir.length ? dir[p] : null;
+	}
+
+	private Page writablePage(int index) {
+		Page p = page(index);
+		if(p != null) return p;
+		synchronized(this) {
+			Page[] dir = pages;
+			int n = index >>> PAGE_BITS;
+			if(n >= dir.length) {
+				dir = Arrays.copyOf(dir, Math.max(n + 1, dir.length * 2));
+			}
+			if(dir[n] == null) {
+				dir[n] = new Page();
+			}
+			pages = dir;
+			return dir[n];
+		}
+	}
+}
@@ -1,33 +1,69 @@
 package university;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 
 /**
  * This class represents a university education system.
  * 
  * It manages students and courses.
+ * 
+ * The class is thread-safe: many threads can enroll students, register them
+ * and record exams concurrently. IDs and codes are allocated atomically,
+ * students are stored in a columnar {@link StudentTable} and courses in a lock-free
+ * segmented store, and each operation locks only the student and/or course it modifies
+ * (always the student first). Since students are not objects, each of them is guarded
+ * by one of {@value #STUDENT_LOCKS} locks, chosen by its index.
  *
  */
 public class University {
 	// System-level parameters (constants)
 	
+	/** @deprecated students are kept in a growable store, this is no longer a limit */
+	@Deprecated
 	public static final int MAX_STUDENTS = 1000;
+	/** @deprecated courses are kept in a growable store, this is no longer a limit */
+	@Deprecated
 	public static final int MAX_COURSES = 50;
+	/** @deprecated study plans are kept in the registration log, this is no longer a limit */
+	@Deprecated
 	public static final int MAX_COURSES_PER_STUDENT = 25;
+	/** @deprecated attendees are kept in the registration log, this is no longer a limit */
+	@Deprecated
 	public static final int MAX_STUDENTS_PER_COURSE = 100;
 
 	public final static int INITIAL_ID = 10000;
 	public final static int INITIAL_CODE = 10;
+	public final static int TOP_STUDENTS = 3;
+	private final static int STUDENT_LOCKS = 64;
 	
 	// Attributes
 	private final String name;
-	private String rector;
+	private volatile String rector;
+	
+	private final NameDictionary names;
+	private final StudentTable students;
+	private final Object[] studentLocks = new Object[STUDENT_LOCKS];
+	private final int firstId;
+	private final AtomicInteger nextId;
+	
+	private final SegmentedStore<Course> offers = new SegmentedStore<>();
+	private final AtomicInteger nextCode = new AtomicInteger(INITIAL_CODE);
 	
-	private Student[] students; // = null
-	private int nextId = INITIAL_ID;
+	private final ScoreIndex ranking = new ScoreIndex();
 	
-	private Course[] offers;
-	private int nextCode = INITIAL_CODE;
+	private final RegistrationLog registrations = new RegistrationLog();
+	private final ExamLedger exams;
+	
+	private final Object snapshotLock = new Object();
+	private SnapshotAggregates lastAggregates = SnapshotAggregates.EMPTY; // guarded by snapshotLock
 
 
 // R1
@@ -36,11 +72,44 @@ public class University {
 	 * @param name name of the university
 	 */
 	public University(String name){
+		this(name, INITIAL_ID);
+	}
+	
+	/**
+	 * Constructor for a university whose student IDs start from a given value,
+	 * e.g. a shard of a {@link UniversityFederation}
+	 * 
+	 * @param name name of the university
+	 * @param firstId ID of the first enrolled student
+	 */
+	University(String name, int firstId){
+		this(name, firstId, new NameDictionary(), new ExamLedger());
+	}
+	
+	/**
+	 * Constructor for a university that will hold about the given number
+	 * of distinct names and exams, e.g. when restored from a snapshot
+	 * 
+	 * @param name name of the university
+	 * @param firstId ID of the first enrolled student
+	 * @param expectedNames expected number of distinct first and last names
+	 * @param expectedExams expected number of exams
+	 */
+	University(String name, int firstId, int expectedNames, int expectedExams){
+		this(name, firstId, new NameDictionary(expectedNames), new ExamLedger(expectedExams));
+	}
+	
+	private University(String name, int firstId, NameDictionary names, ExamLedger exams){
 		this.name = name;
 		this.rector = "<none>";
-		
-		students = new Student[MAX_STUDENTS];
-		offers = new Course[MAX_COURSES];
+		this.firstId = firstId;
+		this.nextId = new AtomicInteger(firstId);
+		this.names = names;
+		this.exams = exams;
+		this.students = new StudentTable(names);
+		for(int i=0; i<STUDENT_LOCKS; ++i) {
+			studentLocks[i] = new Object();
+		}
 	}
 	
 	/**
@@ -81,12 +150,26 @@ public class University {
 	 * @return unique ID of the newly enrolled student
 	 */
 	public int enroll(String first, String last){
-		Student s = new Student( nextId , first, last);
-		students[ nextId - INITIAL_ID ] = s;
+		int id = addStudent(first, last);
 		
-		logger.info("New student enrolled: " + nextId + ", " + first + " " + last ); // R7
+		events.event(EventSink.Kind.ENROLL, id, EventSink.NONE_VALUE, EventSink.NONE_VALUE, first, last); // R7
 
-		return nextId++;
+		return id;
+	}
+	
+	/**
+	 * Creates and stores a new student.
+	 * Internal method, shared with the bulk importer, that does not log.
+	 * 
+	 * @param first first name of the student
+	 * @param last last name of the student
+	 * 
+	 * @return unique ID of the newly enrolled student
+	 */
+	int addStudent(String first, String last){
+		int id = nextId.getAndIncrement();
+		students.add(id - firstId, first, last);
+		return id;
 	}
 	
 	/**
@@ -97,11 +180,11 @@ public class University {
 	 * @return information about the student
 	 */
 	public String student(int id){
-		if(id<INITIAL_ID||id>=nextId){
+		Student s = findStudent(id);
+		if(s==null){
 			logger.info("Error Student " + id + " is not enrolled in university " + name);
 			return "";
 		}
-		Student s = students[ id - INITIAL_ID ];
 		return s.toString();
 	}
 	
@@ -115,12 +198,26 @@ public class University {
 	 * @return the unique code assigned to the course
 	 */
 	public int activate(String title, String teacher){
-		Course c = new Course(nextCode,title,teacher);
-		offers[nextCode - INITIAL_CODE] = c;
+		int code = addCourse(title, teacher);
 		
-		logger.info("New course activated: " + nextCode + ", " + title + " " + teacher ); // R7
+		events.event(EventSink.Kind.ACTIVATE, EventSink.NONE_VALUE, code, EventSink.NONE_VALUE, title, teacher); // R7
 
-		return nextCode++;
+		return code;
+	}
+	
+	/**
+	 * Creates and stores a new course.
+	 * Internal method, shared with the bulk importer, that does not log.
+	 * 
+	 * @param title title of the course
+	 * @param teacher name of the teacher
+	 * 
+	 * @return the unique code assigned to the course
+	 */
+	int addCourse(String title, String teacher){
+		int code = nextCode.getAndIncrement();
+		offers.set(code - INITIAL_CODE, new Course(code-INITIAL_CODE,code,title,teacher));
+		return code;
 	}
 	
 	/**
@@ -135,11 +232,12 @@ public class University {
 	 * @return information about the course
 	 */
 	public String course(int code){
-		if( code >= nextCode ){
+		Course c = findCourse(code);
+		if( c==null ){
 			logger.info("ERROR: course " + code + " is not activated in university " + name);
 			return "";
 		}
-		return offers[code-INITIAL_CODE].toString();
+		return c.toString();
 	}
 	
 // R4
@@ -149,18 +247,62 @@ public class University {
 	 * @param courseCode id of the course
 	 */
 	public void register(int studentID, int courseCode){
-		Student s = students[studentID-INITIAL_ID];
-		Course c = offers[courseCode-INITIAL_CODE];
+		int index = studentIndex(studentID);
+		Course c = findCourse(courseCode);
 
-		if(s==null || c==null){
+		if(index<0 || c==null){
 			logger.info("ERROR: Invalid arguments to method register: existing student and course required.");
 			return;
 		}
-
-		s.enroll(c);
-		c.enroll(s);
+		if(! addRegistration(index, c)){
+			logger.info("ERROR: student " + studentID + " already registered for course " + courseCode);
+			return;
+		}
 		
-		logger.info("Student " + studentID + " signed up for course " + courseCode);
+		events.event(EventSink.Kind.REGISTER, studentID, courseCode, EventSink.NONE_VALUE, null, null);
+	}
+	
+	/**
+	 * Registers a student to a course, unless already registered.
+	 * Internal method, shared with the bulk importer, that does not log.
+	 * 
+	 * @param index the index of the student
+	 * @param c the course
+	 * @return {@code true} if the registration has been added
+	 */
+	boolean addRegistration(int index, Course c){
+		synchronized(lockOf(index)) {
+			int planSize;
+			synchronized(c) {
+				if(attends(index, c)) return false;
+				planSize = registrations.planSize(students.lastRegistration(index));
+				recordRegistration(index, c);
+			}
+			updateRanking(index, score(index, planSize), score(index, planSize + 1));
+		}
+		return true;
+	}
+	
+	/**
+	 * Appends a registration to the log and links it to the student and the course.
+	 * The caller must hold the locks of both.
+	 */
+	void recordRegistration(int index, Course c) {
+		int row = registrations.append(index, c.getIndex(), students.lastRegistration(index), c.lastRegistration());
+		students.setLastRegistration(index, row);
+		c.enroll(row);
+	}
+	
+	/**
+	 * Checks whether a student attends a course, visiting the study plan in the log.
+	 * The caller must hold the lock of the student.
+	 * 
+	 * @param index the index of the student
+	 * @param c the course
+	 * @return {@code true} if the student is registered for the course
+	 */
+	boolean attends(int index, Course c) {
+		return registrations.includes(students.lastRegistration(index), c.getIndex());
 	}
 	
 	/**
@@ -170,12 +312,68 @@ public class University {
 	 * @return list of attendees separated by "\n"
 	 */
 	public String listAttendees(int courseCode){
-		Course c = offers[courseCode-INITIAL_CODE];
+		Course c = findCourse(courseCode);
 		if(c==null){
 			logger.info("ERROR: course " + courseCode + " is not activated in university " + name);
 			return "";
 		}
-		return c.attendees();
+		StringBuilder result = new StringBuilder();
+		try {
+			appendAttendees(c, result);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); // cannot happen with a StringBuilder
+		}
+		return result.toString();
+	}
+	
+	/**
+	 * Writes the list of attendees, one per line, to the given destination.
+	 * 
+	 * The list is streamed without building the whole string in memory,
+	 * e.g. to export a large course directly to a file.
+	 * The format is the same as {@link #listAttendees(int)}.
+	 * 
+	 * @param courseCode unique id of the course
+	 * @param out the destination of the list
+	 * @throws IOException if the destination cannot be written
+	 */
+	public void listAttendees(int courseCode, Appendable out) throws IOException {
+		Course c = findCourse(courseCode);
+		if(c==null){
+			logger.info("ERROR: course " + courseCode + " is not activated in university " + name);
+			return;
+		}
+		appendAttendees(c, out);
+	}
+	
+	/**
+	 * Writes the attendees, one per line, without building an intermediate string.
+	 * 
+	 * The registrations are only appended to the log, so the method can run
+	 * without holding the lock of the course: it writes the attendees registered
+	 * when the method started.
+	 */
+	private void appendAttendees(Course c, Appendable out) throws IOException {
+		for(int index : attendeesOf(c, Integer.MAX_VALUE)) {
+			studentAt(index).appendTo(out);
+			out.append('\n');
+		}
+	}
+	
+	/**
+	 * Retrieves the IDs of the attendees of a course, in order of registration
+	 * 
+	 * @param courseCode unique id of the course
+	 * @return the stream of student IDs, empty if the course does not exist
+	 */
+	public IntStream attendeeIds(int courseCode){
+		Course c = findCourse(courseCode);
+		if(c==null){
+			logger.info("ERROR: course " + courseCode + " is not activated in university " + name);
+			return IntStream.empty();
+		}
+		int[] attendees = attendeesOf(c, Integer.MAX_VALUE);
+		return Arrays.stream(attendees).map(index -> index + firstId);
 	}
 
 	/**
@@ -190,25 +388,73 @@ public class University {
 	 * @return the list of courses the student is registered for
 	 */
 	public String studyPlan(int studentID){
-		Student s = students[studentID-INITIAL_ID];
-		if(s==null){
+		int index = studentIndex(studentID);
+		if(index<0){
 			logger.info("ERROR: Student " + studentID + " is not enrolled in university " + name);
 			return "";
 		}
-		return s.courses();
+		StringBuilder result = new StringBuilder();
+		try {
+			appendCourses(index, result);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); // cannot happen with a StringBuilder
+		}
+		return result.toString();
+	}
+	
+	/**
+	 * Writes the study plan of a student, one course per line, to the given destination.
+	 * 
+	 * The format is the same as {@link #studyPlan(int)}.
+	 * 
+	 * @param studentID id of the student
+	 * @param out the destination of the study plan
+	 * @throws IOException if the destination cannot be written
+	 */
+	public void studyPlan(int studentID, Appendable out) throws IOException {
+		int index = studentIndex(studentID);
+		if(index<0){
+			logger.info("ERROR: Student " + studentID + " is not enrolled in university " + name);
+			return;
+		}
+		appendCourses(index, out);
+	}
+	
+	/**
+	 * Writes the courses of the study plan, one per line, without building an intermediate string.
+	 * 
+	 * As for the attendees, the method can run without holding the lock of the student:
+	 * it writes the courses registered when the method started.
+	 */
+	private void appendCourses(int index, Appendable out) throws IOException {
+		for(int course : planOf(index, Integer.MAX_VALUE)) {
+			offers.get(course).appendTo(out);
+			out.append('\n');
+		}
 	}
 
 // R5
 	/**
-	 * Retrieves a student given its id.
+	 * Retrieves the index of a student given its id.
 	 * Internal method that encapsulates the mapping between id and index
 	 * 
 	 * @param studentId id of the student
-	 * @return the student with the given id
+	 * @return the index of the student, or -1 if not enrolled
 	 */
-	private Student findStudent(int studentId) {
-		if(studentId<INITIAL_ID || studentId >= nextId) return null;
-		return students[studentId-INITIAL_ID];
+	int studentIndex(int studentId) {
+		int index = studentId - firstId;
+		return students.contains(index) ? index : -1;
+	}
+	
+	/**
+	 * Retrieves a student given its id
+	 * 
+	 * @param studentId id of the student
+	 * @return a view of the student with the given id, or {@code null} if not enrolled
+	 */
+	Student findStudent(int studentId) {
+		int index = studentIndex(studentId);
+		return index < 0 ? null : studentAt(index);
 	}
 
 	/**
@@ -218,43 +464,129 @@ public class University {
 	 * @param courseId id of the course
 	 * @return the course with the given id
 	 */
-	private Course findCourse(int courseId) {
-		if(courseId<INITIAL_CODE || courseId >= nextCode) return null;
-		return offers[courseId-INITIAL_CODE];
+	Course findCourse(int courseId) {
+		return offers.get(courseId-INITIAL_CODE);
 	}
 	
 	/**
-	 * Retrieves the number of enrolled students.
-	 * Internal method that encapsulates the mapping between id and index
+	 * records the grade (integer 0-30) for an exam can 
 	 * 
-	 * @return the course with the given id
+	 * @param studentId the ID of the student
+	 * @param courseId	course code
+	 * @param grade		grade ( 0-30)
 	 */
-	private int numStudents() {
-		return nextId - INITIAL_ID;
+	public void exam(int studentId, int courseId, int grade) {
+		exam(studentId, courseId, grade, LocalDate.now());
 	}
 	
 	/**
-	 * records the grade (integer 0-30) for an exam can 
+	 * records the grade (integer 0-30) for an exam taken on a given date
 	 * 
 	 * @param studentId the ID of the student
 	 * @param courseId	course code
 	 * @param grade		grade ( 0-30)
+	 * @param date		date of the exam
 	 */
-	public void exam(int studentId, int courseId, int grade) {
-		Student s = findStudent(studentId);
+	public void exam(int studentId, int courseId, int grade, LocalDate date) {
+		int index = studentIndex(studentId);
 		Course c = findCourse(courseId);
 
-		if(s==null || c==null){
+		if(index<0 || c==null){
 			logger.info("ERROR: Invalid arguments to method exam: existing student and course required.");
 			return;
 		}
-		if(c.attendees().contains(Integer.toString(studentId))) {
-			new Exam(s,c,grade);
-			logger.info("Student " + studentId + " took an exam in course " + courseId + " with grade" + grade);
+		if(! GradeStatistics.isValidGrade(grade)){
+			logger.info("ERROR: invalid grade " + grade + " for student " + studentId + " in course " + courseId);
+			return;
+		}
+		if(addExam(index, c, grade, (int)date.toEpochDay())) {
+			events.event(EventSink.Kind.EXAM, studentId, courseId, grade, null, null);
 		}else {
 			logger.info("ERROR: student " + studentId + " not enrolled in course " + courseId + ": cannot assign a grade.");
 		}
 	}
+	
+	/**
+	 * Records a valid grade, provided the student attends the course.
+	 * Internal method, shared with the bulk importer, that does not log.
+	 * 
+	 * @param index the index of the student
+	 * @param c the course
+	 * @param grade the grade (0-30)
+	 * @param day date of the exam as epoch day
+	 * @return {@code true} if the grade has been recorded
+	 */
+	boolean addExam(int index, Course c, int grade, int day) {
+		synchronized(lockOf(index)) {
+			double oldScore;
+			int planSize;
+			synchronized(c) {
+				if(! attends(index, c)) return false;
+				planSize = registrations.planSize(students.lastRegistration(index));
+				oldScore = score(index, planSize);
+				recordExam(index, c, grade, day);
+			}
+			updateRanking(index, oldScore, score(index, planSize));
+		}
+		return true;
+	}
+	
+	/**
+	 * Appends an exam to the ledger and updates the student and the course.
+	 * The caller must hold the locks of both.
+	 */
+	void recordExam(int index, Course c, int grade, int day) {
+		int row = exams.append(index, c.getIndex(), grade, day, students.lastExam(index), c.lastExam());
+		students.addExam(index, grade, row);
+		c.addExam(grade, row);
+	}
+	
+	/**
+	 * Computes the score of a student, as described in {@link #topThreeStudents()}.
+	 * The caller must hold the lock of the student.
+	 * 
+	 * @param index the index of the student
+	 * @param planSize the number of courses of the study plan of the student
+	 * @return the score or {@code NaN} if the student took no exam
+	 */
+	private double score(int index, int planSize) {
+		return Student.score(students.examCount(index), students.gradeSum(index), planSize);
+	}
+	
+	/**
+	 * Moves a student in the ranking after its score changed.
+	 * The view of the student is built only if the score actually changed.
+	 * The caller must hold the lock of the student.
+	 */
+	private void updateRanking(int index, double oldScore, double newScore) {
+		if(Double.compare(oldScore, newScore) != 0) {
+			ranking.update(studentAt(index), oldScore, newScore);
+		}
+	}
+	
+	/**
+	 * Retrieves the lock that guards a student
+	 * 
+	 * @param index the index of the student
+	 * @return the lock, shared with other students
+	 */
+	private Object lockOf(int index) {
+		return studentLocks[index & (STUDENT_LOCKS - 1)];
+	}
+	
+	/**
+	 * @return the log of all the registrations
+	 */
+	RegistrationLog registrations() {
+		return registrations;
+	}
+	
+	/**
+	 * @return the ledger of all the exams
+	 */
+	ExamLedger exams() {
+		return exams;
+	}
 
 	/**
 	 * Computes the average grade for a student and formats it as a string
@@ -269,14 +601,19 @@ public class University {
 	 * @return the average grade formatted as a string.
 	 */
 	public String studentAvg(int studentId) {
-		Student s = findStudent(studentId);
-		if(s==null){
+		int index = studentIndex(studentId);
+		if(index<0){
 			logger.info("ERROR: student " + studentId + " not enrolled in university " + name);
 			return "";
 		}
-		double avg = s.average();
-		if(! Student.isValid(avg)) return String.format("Student %d hasn't taken any exams", s.getId());
-		return String.format("Student %d : %.1f", s.getId(), avg);
+		int numExams;
+		int gradeSum;
+		synchronized(lockOf(index)) {
+			numExams = students.examCount(index);
+			gradeSum = students.gradeSum(index);
+		}
+		if(numExams == 0) return String.format("Student %d hasn't taken any exams", studentId);
+		return String.format("Student %d : %.1f", studentId, gradeSum / (double)numExams);
 	}
 	
 	/**
@@ -296,11 +633,146 @@ public class University {
 			logger.info("ERROR: course " + courseId + " not activated in university " + name);
 			return "";
 		}
-		double avg = c.average();
+		double avg;
+		synchronized(c) {
+			avg = c.average();
+		}
 		if(! Course.isValid(avg)) return String.format("No student has taken the exam in %s", c.getTitle());
 		return String.format("The average for the course %s is: %.1f", c.getTitle(), avg);
 	}
 	
+	/**
+	 * Retrieves the statistics of the grades recorded for a course:
+	 * number of exams, average, standard deviation, median, min, max
+	 * and the histogram of the grades.
+	 * 
+	 * The statistics are maintained incrementally, so this method 
+	 * does not depend on the number of exams taken.
+	 * The returned object is a copy that is not affected by later exams.
+	 * 
+	 * @param courseId	course code
+	 * @return the grade statistics of the course, or {@code null} if the course does not exist
+	 */
+	public GradeStatistics gradeDistribution(int courseId) {
+		Course c = findCourse(courseId);
+		if(c==null){
+			logger.info("ERROR: course " + courseId + " not activated in university " + name);
+			return null;
+		}
+		synchronized(c) {
+			return c.getGrades().copy();
+		}
+	}
+	
+	/**
+	 * Computes the statistics of the grades recorded for a course
+	 * in exams taken within a range of dates.
+	 * 
+	 * The exams of the course are visited in the exam ledger.
+	 * 
+	 * @param courseId	course code
+	 * @param from		first date of the range (inclusive)
+	 * @param to		last date of the range (inclusive)
+	 * @return the grade statistics, or {@code null} if the course does not exist
+	 */
+	public GradeStatistics gradeDistribution(int courseId, LocalDate from, LocalDate to) {
+		Course c = findCourse(courseId);
+		if(c==null){
+			logger.info("ERROR: course " + courseId + " not activated in university " + name);
+			return null;
+		}
+		int last;
+		synchronized(c) {
+			last = c.lastExam();
+		}
+		return exams.statisticsOfCourse(last, (int)from.toEpochDay(), (int)to.toEpochDay());
+	}
+	
+	/**
+	 * Retrieves the statistics of the grades of a student,
+	 * as {@link #gradeDistribution(int)} for a course.
+	 * 
+	 * The statistics of a student are built from the exam ledger the first time
+	 * they are requested, and from then on maintained incrementally, so later requests
+	 * do not depend on the number of exams taken.
+	 * The returned object is a copy that is not affected by later exams.
+	 * 
+	 * @param studentId	the ID of the student
+	 * @return the grade statistics, or {@code null} if the student does not exist
+	 */
+	public GradeStatistics studentGrades(int studentId) {
+		int index = studentIndex(studentId);
+		if(index<0){
+			logger.info("ERROR: student " + studentId + " not enrolled in university " + name);
+			return null;
+		}
+		synchronized(lockOf(index)) {
+			GradeStatistics grades = students.grades(index);
+			if(grades == null) {
+				grades = exams.statisticsOfStudent(students.lastExam(index), Integer.MIN_VALUE, Integer.MAX_VALUE);
+				students.keepGrades(index, grades);
+			}
+			return grades.copy();
+		}
+	}
+	
+	/**
+	 * Computes the statistics of the grades of a student
+	 * in exams taken within a range of dates.
+	 * 
+	 * @param studentId	the ID of the student
+	 * @param from		first date of the range (inclusive)
+	 * @param to		last date of the range (inclusive)
+	 * @return the grade statistics, or {@code null} if the student does not exist
+	 */
+	public GradeStatistics studentGrades(int studentId, LocalDate from, LocalDate to) {
+		int index = studentIndex(studentId);
+		if(index<0){
+			logger.info("ERROR: student " + studentId + " not enrolled in university " + name);
+			return null;
+		}
+		int last;
+		synchronized(lockOf(index)) {
+			last = students.lastExam(index);
+		}
+		return exams.statisticsOfStudent(last, (int)from.toEpochDay(), (int)to.toEpochDay());
+	}
+	
+	/**
+	 * Reports number of exams, average grade and pass rate of all the courses,
+	 * computed with a single scan of the exam ledger.
+	 * 
+	 * The report has one line per course, in order of code, formatted as
+	 * {@code "COURSE_CODE,COURSE_TITLE,EXAMS,AVG_GRADE,PASS_RATE"}
+	 * where the pass rate is the percentage of exams with a passing grade;
+	 * average and pass rate are empty if the course has no exam.
+	 * Courses that another thread is still activating are not reported.
+	 * 
+	 * @return the report
+	 */
+	public String coursesReport() {
+		int rows = exams.size();
+		int numCourses = offers.size(); // after the exams, so it covers all their courses
+		int[] counts = new int[numCourses];
+		long[] sums = new long[numCourses];
+		int[] passed = new int[numCourses];
+		exams.courseTotals(rows, counts, sums, passed);
+		
+		StringBuilder res = new StringBuilder();
+		for(int i=0; i<numCourses; ++i) {
+			Course c = offers.get(i);
+			if(c==null) continue; // code allocated, course not stored yet
+			res.append(c.getCode()).append(',').append(c.getTitle()).append(',').append(counts[i]).append(',');
+			if(counts[i] > 0) {
+				res.append(String.format("%.1f,%.1f", sums[i] / (double)counts[i], 100.0 * passed[i] / counts[i]));
+			} else {
+				res.append(',');
+			}
+			res.append('\n');
+		}
+		return res.toString();
+	}
+	
 
 // R6
 	/**
@@ -319,48 +791,226 @@ public class University {
 	 * @return info on the best three students.
 	 */
 	public String topThreeStudents() {
-		int n = Math.min(3, numStudents() );
-		Student[] top = new Student[n];
-		for(int i=0; i<numStudents(); ++i){
-			insert(students[i], top);
-		}
-		
+		return topK(TOP_STUDENTS);
+	}
+	
+	/**
+	 * Retrieve information for the {@code k} students with the highest score.
+	 * 
+	 * The score is computed as described in {@link #topThreeStudents()} and the result
+	 * is formatted in the same way.
+	 * The students are kept in an index updated whenever an exam is taken or 
+	 * a student registers for a course, so the cost depends on {@code k}
+	 * and not on the number of students.
+	 * 
+	 * @param k maximum number of students to be reported
+	 * @return info on the best {@code k} students.
+	 */
+	public String topK(int k) {
 		StringBuilder res= new StringBuilder();
-		for(Student s : top) {
-			if(s==null || ! Student.isValid(s.getScore()) ) continue;
-			res.append(s.getLast()).append(" ").append(s.getFirst()).append(" : ").append(s.getScore()).append("\n");
+		for(ScoreIndex.Entry e : ranking.top(k)) {
+			appendRankingEntry(e, res);
 		}
 		return res.toString();
 	}
 	
 	/**
-	 * Adds a student into an array in order of decreasing score
+	 * Retrieves the {@code k} students with the highest score
 	 * 
-	 * @param s		the student to be added
-	 * @param ary	the array of students
+	 * @param k maximum number of students to be reported
+	 * @return the entries of the ranking, sorted by decreasing score
 	 */
-	private void insert(Student s, Student[] ary) {
-		if(Student.isValid(s.getScore())) {
-			for(int i=0; i<ary.length; ++i) {
-				if(ary[i] == null || s.getScore() > ary[i].getScore()) {
-//					for(int j=ary.length-1; j>i; j--) {
-//						ary[j] = ary[j-1];
-//					}
-					// OR, more efficient:
-					if (ary.length - 1 - i >= 0) System.arraycopy(ary, i, ary, i + 1, ary.length - 1 - i);
-					ary[i] = s;
-					break;
-				}
-			}
+	List<ScoreIndex.Entry> topEntries(int k) {
+		return ranking.top(k);
+	}
+	
+	/**
+	 * Formats a student of the ranking as {@code "STUDENT_LASTNAME STUDENT_FIRSTNAME : SCORE"}
+	 * followed by a new line
+	 */
+	static void appendRankingEntry(ScoreIndex.Entry e, StringBuilder res) {
+		Student s = e.student;
+		res.append(s.getLast()).append(" ").append(s.getFirst()).append(" : ").append(e.score).append("\n");
+	}
+	
+	/**
+	 * Takes an immutable snapshot of the current state of the university.
+	 * 
+	 * Taking the snapshot costs time and memory proportional to the registrations
+	 * and exams recorded since the previous snapshot, whose aggregates it updates
+	 * sharing the unchanged parts, and it never blocks the threads that keep modifying
+	 * the university. The snapshot can be queried without blocking them either.
+	 * The snapshot is consistent: every exam it contains refers to a registration,
+	 * and every registration to a student and a course, in the same snapshot.
+	 * 
+	 * @return the snapshot
+	 */
+	public UniversitySnapshot snapshot() {
+		synchronized(snapshotLock) {
+			// read in reverse order of dependency, so that everything referenced is included
+			int numExams = exams.size();
+			int numRegistrations = registrations.size();
+			int numStudents = studentCount();
+			int numCourses = courseCount();
+			lastAggregates = lastAggregates.advance(this, numStudents, numCourses, numRegistrations, numExams);
+			return new UniversitySnapshot(this, lastAggregates);
 		}
 	}
 
 	
+// Snapshot file
+	/**
+	 * @return number of students enrolled so far
+	 */
+	int studentCount() {
+		return nextId.get() - firstId;
+	}
+	
+	/**
+	 * @return the dictionary of the first and last names of the students
+	 */
+	NameDictionary names() {
+		return names;
+	}
+	
+	/**
+	 * @return the table of the students
+	 */
+	StudentTable students() {
+		return students;
+	}
+	
+	/**
+	 * Stores a new student whose names are already in the dictionary,
+	 * e.g. while restoring a snapshot
+	 * 
+	 * @param firstName id of the first name
+	 * @param lastName id of the last name
+	 * @return unique ID of the new student
+	 */
+	int restoreStudent(int firstName, int lastName) {
+		int id = nextId.getAndIncrement();
+		students.add(id - firstId, firstName, lastName);
+		return id;
+	}
+	
+	/**
+	 * @return the ID of the first student of the university
+	 */
+	int firstId() {
+		return firstId;
+	}
+	
+	/**
+	 * Retrieves a student given its index, i.e. its position in order of enrollment
+	 * 
+	 * @param index index of the student
+	 * @return a view of the student, or {@code null} if not existing
+	 */
+	Student studentAt(int index) {
+		return hasStudent(index) ? new Student(students, index, firstId + index) : null;
+	}
+	
+	/**
+	 * @param index index of the student
+	 * @return {@code true} if a student is stored at the index
+	 */
+	boolean hasStudent(int index) {
+		return students.contains(index);
+	}
+	
+	/**
+	 * Retrieves the study plan of a student from the log
+	 * 
+	 * @param index index of the student
+	 * @param rows only the registrations in the first {@code rows} rows of the log are considered
+	 * @return the indices of the courses, in order of registration
+	 */
+	int[] planOf(int index, int rows) {
+		return registrations.coursesOf(students.lastRegistration(index), rows);
+	}
+	
+	/**
+	 * Retrieves the attendees of a course from the log
+	 * 
+	 * @param c the course
+	 * @param rows only the registrations in the first {@code rows} rows of the log are considered
+	 * @return the indices of the students, in order of registration
+	 */
+	int[] attendeesOf(Course c, int rows) {
+		return registrations.studentsOf(c.lastRegistration(), rows);
+	}
+	
+	/**
+	 * Retrieves a course given its index, i.e. its position in order of activation
+	 * 
+	 * @param index index of the course
+	 * @return the course, or {@code null} if not existing
+	 */
+	Course courseAt(int index) {
+		return offers.get(index);
+	}
+	
+	/**
+	 * @return number of courses activated so far
+	 */
+	int courseCount() {
+		return nextCode.get() - INITIAL_CODE;
+	}
+	
+	/**
+	 * Restores the rector as returned by {@link #getRector()}
+	 * 
+	 * @param rector full name of the rector
+	 */
+	void restoreRector(String rector) {
+		this.rector = rector;
+	}
+	
+	/**
+	 * Indexes all the students in the ranking after their courses
+	 * and grades have been restored, before the university is shared with other threads.
+	 */
+	void restoreRanking() {
+		int numStudents = studentCount();
+		int[] planSizes = new int[numStudents];
+		for(int row=0; row<registrations.size(); ++row) {
+			planSizes[registrations.student(row)]++;
+		}
+		List<ScoreIndex.Entry> entries = new ArrayList<>();
+		for(int index=0; index<numStudents; ++index) {
+			if(students.examCount(index) > 0) {
+				entries.add(new ScoreIndex.Entry(score(index, planSizes[index]), studentAt(index)));
+			}
+		}
+		ranking.addAll(entries);
+	}
+
 // R7
     /**
      * This field points to the logger for the class that can be used
      * throughout the methods to log the activities.
      */
     private final static Logger logger = Logger.getLogger("University");
+    
+    /**
+     * Destination of the events generated by enroll, activate, register and exam.
+     * By default the events are formatted as human readable messages
+     * and sent to the {@link #logger}.
+     */
+    private EventSink events = new LoggerEventSink(logger, EventFormatter.HUMAN_READABLE);
+    
+    /**
+     * Defines the destination of the events generated by the operations
+     * that modify the university (enroll, activate, register, and exam).
+     * 
+     * Use {@link EventSink#NONE} to turn the event log off, or 
+     * a {@link RingBufferEventLog} to write the events asynchronously to a file.
+     * 
+     * @param sink the new event sink
+     */
+    public void setEventSink(EventSink sink) {
+    	this.events = sink == null ? EventSink.NONE : sink;
+    }
 
 }
@@ -0,0 +1,433 @@
+package university;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * A university whose students are partitioned over several {@link University} shards.
+ *
+ * Each shard owns a contiguous range of student IDs: shard {@code i} assigns
+ * the IDs starting from {@code INITIAL_ID + i * studentsPerShard}, so the shard
+ * of a student is found with a division. New students are assigned to
+ * the shards in round-robin. Courses are activated in every shard with the
+ * same code, so each shard can register its students and record their exams
+ * without involving the other ones.
+ *
+ * Operations on a single student are executed by its shard, while the queries
+ * about courses and rankings are executed by all the shards in parallel and their
+ * results are merged: attendee lists are concatenated in order of shard,
+ * grade statistics are summed (so the averages are weighted by the number of exams
+ * of each shard) and the best students of each shard are merged by score.
+ *
+ * The methods have the same meaning and report the same formats as
+ * the corresponding methods of {@link University}.
+ */
+public class UniversityFederation {
+
+	private final String name;
+	private final List<University> shards;
+	private final int studentsPerShard;
+	private final AtomicInteger nextSlot = new AtomicInteger();
+
+	/**
+	 * Constructor
+	 *
+	 * @param name name of the university
+	 * @param numShards number of shards
+	 * @param studentsPerShard maximum number of students of each shard
+	 */
+	public UniversityFederation(String name, int numShards, int studentsPerShard) {
+		if(numShards <= 0 || studentsPerShard <= 0) {
+			throw new IllegalArgumentException("Number of shards and students per shard must be positive");
+		}
+		this.name = name;
+		this.studentsPerShard = studentsPerShard;
+		List<University> shards = new ArrayList<>(numShards);
+		for(int i=0; i<numShards; ++i) {
+			shards.add(new University(name, University.INITIAL_ID + i * studentsPerShard));
+		}
+		this.shards = Collections.unmodifiableList(shards);
+	}
+
+	/**
+	 * @return name of university
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return number of shards
+	 */
+	public int getShards() {
+		return shards.size();
+	}
+
+	/**
+	 * Defines the rector for the university
+	 *
+	 * @param first first name of the rector
+	 * @param last	last name of the rector
+	 */
+	public void setRector(String first, String last) {
+		for(University u : shards) {
+			u.setRector(first, last);
+		}
+	}
+
+	/**
+	 * @return name of the rector
+	 */
+	public String getRector() {
+		return shards.get(0).getRector();
+	}
+
+	/**
+	 * Enrol a student in the university
+	 *
+	 * @param first first name of the student
+	 * @param last last name of the student
+	 * @return unique ID of the newly enrolled student
+	 * @throws IllegalStateException if all the shards are full
+	 */
+	public int enroll(String first, String last) {
+		int slot = nextSlot.getAndIncrement();
+		if(slot / shards.size() >= studentsPerShard) {
+			nextSlot.decrementAndGet();
+			throw new IllegalStateException("All the shards of university " + name + " are full");
+		}
+		return shards.get(slot % shards.size()).enroll(first, last);
+	}
+
+	/**
+	 * Retrieves the information for a given student
+	 *
+	 * @param id the ID of the student
+	 * @return information about the student
+	 */
+	public String student(int id) {
+		return shardOf(id).student(id);
+	}
+
+	/**
+	 * Activates a new course with the given teacher in all the shards
+	 *
+	 * @param title title of the course
+	 * @param teacher name of the teacher
+	 * @return the unique code assigned to the course
+	 */
+	public synchronized int activate(String title, String teacher) {
+		int code = 0;
+		for(University u : shards) {
+			code = u.activate(title, teacher);
+		}
+		return code;
+	}
+
+	/**
+	 * Retrieve the information for a given course.
+	 *
+	 * @param code unique code of the course
+	 * @return information about the course
+	 */
+	public String course(int code) {
+		return shards.get(0).course(code);
+	}
+
+	/**
+	 * Register a student to attend a course
+	 *
+	 * @param studentID id of the student
+	 * @param courseCode id of the course
+	 */
+	public void register(int studentID, int courseCode) {
+		shardOf(studentID).register(studentID, courseCode);
+	}
+
+	/**
+	 * Retrieve a list of attendees, grouped by shard
+	 *
+	 * @param courseCode unique id of the course
+	 * @return list of attendees separated by "\n"
+	 */
+	public String listAttendees(int courseCode) {
+		if(findCourse(courseCode) == null) return "";
+		return shards.parallelStream()
+				.map(u -> u.listAttendees(courseCode))
+				.collect(Collectors.joining());
+	}
+
+	/**
+	 * Writes the list of attendees, one per line, to the given destination
+	 *
+	 * @param courseCode unique id of the course
+	 * @param out the destination of the list
+	 * @throws IOException if the destination cannot be written
+	 */
+	public void listAttendees(int courseCode, Appendable out) throws IOException {
+		if(findCourse(courseCode) == null) return;
+		for(University u : shards) {
+			u.listAttendees(courseCode, out);
+		}
+	}
+
+	/**
+	 * Retrieves the IDs of the attendees of a course, grouped by shard
+	 *
+	 * @param courseCode unique id of the course
+	 * @return the stream of student IDs, empty if the course does not exist
+	 */
+	public IntStream attendeeIds(int courseCode) {
+		if(findCourse(courseCode) == null) return IntStream.empty();
+		return shards.stream().flatMapToInt(u -> u.attendeeIds(courseCode));
+	}
+
+	/**
+	 * Retrieves the study plan for a student
+	 *
+	 * @param studentID id of the student
+	 * @return the list of courses the student is registered for
+	 */
+	public String studyPlan(int studentID) {
+		return shardOf(studentID).studyPlan(studentID);
+	}
+
+	/**
+	 * Writes the study plan of a student, one course per line, to the given destination
+	 *
+	 * @param studentID id of the student
+	 * @param out the destination of the study plan
+	 * @throws IOException if the destination cannot be written
+	 */
+	public void studyPlan(int studentID, Appendable out) throws IOException {
+		shardOf(studentID).studyPlan(studentID, out);
+	}
+
+	/**
+	 * records the grade (integer 0-30) for an exam
+	 *
+	 * @param studentId the ID of the student
+	 * @param courseId	course code
+	 * @param grade		grade ( 0-30)
+	 */
+	public void exam(int studentId, int courseId, int grade) {
+		shardOf(studentId).exam(studentId, courseId, grade);
+	}
+
+	/**
+	 * records the grade (integer 0-30) for an exam taken on a given date
+	 *
+	 * @param studentId the ID of the student
+	 * @param courseId	course code
+	 * @param grade		grade ( 0-30)
+	 * @param date		date of the exam
+	 */
+	public void exam(int studentId, int courseId, int grade, LocalDate date) {
+		shardOf(studentId).exam(studentId, courseId, grade, date);
+	}
+
+	/**
+	 * Computes the average grade for a student
+	 *
+	 * @param studentId the ID of the student
+	 * @return the average grade formatted as a string.
+	 */
+	public String studentAvg(int studentId) {
+		return shardOf(studentId).studentAvg(studentId);
+	}
+
+	/**
+	 * Computes the average grade of all the exams of a course in all the shards
+	 *
+	 * @param courseId	course code
+	 * @return the course average formatted as a string
+	 */
+	public String courseAvg(int courseId) {
+		Course c = findCourse(courseId);
+		if(c==null) return "";
+		GradeStatistics grades = gradeDistribution(courseId);
+		if(grades.getCount() == 0) return String.format("No student has taken the exam in %s", c.getTitle());
+		return String.format("The average for the course %s is: %.1f", c.getTitle(), grades.getAverage());
+	}
+
+	/**
+	 * Retrieves the statistics of the grades recorded for a course in all the shards
+	 *
+	 * @param courseId	course code
+	 * @return the grade statistics of the course, or {@code null} if the course does not exist
+	 */
+	public GradeStatistics gradeDistribution(int courseId) {
+		if(findCourse(courseId) == null) return null;
+		return shards.parallelStream()
+				.map(u -> u.gradeDistribution(courseId))
+				.filter(Objects::nonNull) // shards the course has not been activated on yet
+				.collect(GradeStatistics::new, GradeStatistics::merge, GradeStatistics::merge);
+	}
+
+	/**
+	 * Computes the statistics of the grades recorded for a course
+	 * in exams taken within a range of dates, in all the shards
+	 *
+	 * @param courseId	course code
+	 * @param from		first date of the range (inclusive)
+	 * @param to		last date of the range (inclusive)
+	 * @return the grade statistics, or {@code null} if the course does not exist
+	 */
+	public GradeStatistics gradeDistribution(int courseId, LocalDate from, LocalDate to) {
+		if(findCourse(courseId) == null) return null;
+		return shards.parallelStream()
+				.map(u -> u.gradeDistribution(courseId, from, to))
+				.filter(Objects::nonNull) // shards the course has not been activated on yet
+				.collect(GradeStatistics::new, GradeStatistics::merge, GradeStatistics::merge);
+	}
+
+	/**
+	 * Computes the statistics of the grades of a student
+	 * in exams taken within a range of dates
+	 *
+	 * @param studentId	the ID of the student
+	 * @param from		first date of the range (inclusive)
+	 * @param to		last date of the range (inclusive)
+	 * @return the grade statistics, or {@code null} if the student does not exist
+	 */
+	public GradeStatistics studentGrades(int studentId, LocalDate from, LocalDate to) {
+		return shardOf(studentId).studentGrades(studentId, from, to);
+	}
+
+	/**
+	 * Reports number of exams, average grade and pass rate of all the courses,
+	 * as {@link University#coursesReport()}.
+	 *
+	 * The exam ledgers of the shards are scanned in parallel.
+	 * Courses that are still being activated in some shard are not reported.
+	 *
+	 * @return the report
+	 */
+	public String coursesReport() {
+		CourseTotals totals = shards.parallelStream()
+				.map(CourseTotals::new)
+				.reduce(CourseTotals::add)
+				.get();
+		int[] counts = totals.counts;
+		long[] sums = totals.sums;
+		int[] passed = totals.passed;
+		int numCourses = counts.length;
+		for(University u : shards) {
+			numCourses = Math.min(numCourses, u.courseCount()); // activated in all the shards
+		}
+
+		StringBuilder res = new StringBuilder();
+		for(int i=0; i<numCourses; ++i) {
+			Course c = shards.get(0).courseAt(i);
+			if(c==null) continue; // code allocated, course not stored yet
+			res.append(c.getCode()).append(',').append(c.getTitle()).append(',').append(counts[i]).append(',');
+			if(counts[i] > 0) {
+				res.append(String.format("%.1f,%.1f", sums[i] / (double)counts[i], 100.0 * passed[i] / counts[i]));
+			} else {
+				res.append(',');
+			}
+			res.append('\n');
+		}
+		return res.toString();
+	}
+
+	/**
+	 * Retrieve information for the best three students of all the shards
+	 *
+	 * @return info on the best three students.
+	 */
+	public String topThreeStudents() {
+		return topK(University.TOP_STUDENTS);
+	}
+
+	/**
+	 * Retrieve information for the {@code k} students with the highest score
+	 * in all the shards.
+	 *
+	 * Each shard reports its best {@code k} students, which are then merged by score.
+	 *
+	 * @param k maximum number of students to be reported
+	 * @return info on the best {@code k} students.
+	 */
+	public String topK(int k) {
+		List<ScoreIndex.Entry> best = shards.parallelStream()
+				.flatMap(u -> u.topEntries(k).stream())
+				.sorted(ScoreIndex.BY_SCORE)
+				.limit(k)
+				.collect(Collectors.toList());
+		StringBuilder res = new StringBuilder();
+		for(ScoreIndex.Entry e : best) {
+			University.appendRankingEntry(e, res);
+		}
+		return res.toString();
+	}
+
+	/**
+	 * Defines the destination of the events generated by all the shards
+	 *
+	 * @param sink the new event sink
+	 */
+	public void setEventSink(EventSink sink) {
+		for(University u : shards) {
+			u.setEventSink(sink);
+		}
+	}
+
+	/**
+	 * Finds the shard that owns a student ID; IDs outside all the ranges
+	 * are sent to the first or last shard, which reports them as not enrolled
+	 */
+	private University shardOf(int studentId) {
+		int shard = Math.floorDiv(studentId - University.INITIAL_ID, studentsPerShard);
+		return shards.get(Math.max(0, Math.min(shards.size() - 1, shard)));
+	}
+
+	private Course findCourse(int code) {
+		Course c = shards.get(0).findCourse(code);
+		if(c==null) {
+			logger.info("ERROR: course " + code + " is not activated in university " + name);
+		}
+		return c;
+	}
+
+	/**
+	 * Per-course totals of the exams of one or more shards.
+	 * The totals of a shard cover the courses it had when its exams were counted,
+	 * so the totals of different shards may cover different numbers of courses.
+	 */
+	private static final class CourseTotals {
+		final int[] counts;
+		final long[] sums;
+		final int[] passed;
+
+		CourseTotals(University shard) {
+			ExamLedger exams = shard.exams();
+			int rows = exams.size();
+			int numCourses = shard.courseCount(); // after the exams, so it covers all their courses
+			counts = new int[numCourses];
+			sums = new long[numCourses];
+			passed = new int[numCourses];
+			exams.courseTotals(rows, counts, sums, passed);
+		}
+
+		CourseTotals add(CourseTotals other) {
+			if(other.counts.length > counts.length) return other.add(this);
+			for(int i=0; i<other.counts.length; ++i) {
+				counts[i] += other.counts[i];
+				sums[i] += other.sums[i];
+				passed[i] += other.passed[i];
+			}
+			return this;
+		}
+	}
+
+	private final static Logger logger = Logger.getLogger("University");
+}
@@ -0,0 +1,307 @@
+package university;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDate;
+import java.util.logging.Logger;
+
+/**
+ * Bulk loader that populates a {@link University} from CSV extracts.
+ *
+ * The supported files contain one record per line, with comma separated fields:
+ * <ul>
+ * <li>students: {@code first,last} (IDs are assigned in order as by {@link University#enroll})</li>
+ * <li>courses: {@code title,teacher} (codes are assigned in order as by {@link University#activate};
+ *     the title may contain commas since the teacher is taken after the last comma)</li>
+ * <li>registrations: {@code studentId,courseCode}</li>
+ * <li>grades: {@code studentId,courseCode,grade}</li>
+ * </ul>
+ * Blank lines are ignored.
+ *
+ * The input is read as a stream and applied in batches of {@value #BATCH_SIZE} rows.
+ * Each row is validated (existing IDs, registered students, valid grades):
+ * invalid rows are skipped and counted, and a single summary message is logged
+ * for each file instead of one message per row.
+ */
+public class UniversityImporter {
+
+	public static final int BATCH_SIZE = 4096;
+	private static final char SEPARATOR = ',';
+
+	private final University university;
+	private final boolean hasHeader;
+
+	/**
+	 * Constructor for files without a header line
+	 *
+	 * @param university the university to be populated
+	 */
+	public UniversityImporter(University university) {
+		this(university, false);
+	}
+
+	/**
+	 * Constructor
+	 *
+	 * @param university the university to be populated
+	 * @param hasHeader whether the first line of the files is a header to be skipped
+	 */
+	public UniversityImporter(University university, boolean hasHeader) {
+		this.university = university;
+		this.hasHeader = hasHeader;
+	}
+
+	/**
+	 * Outcome of an import
+	 */
+	public static final class Summary {
+		private final String kind;
+		private final int rows;
+		private final int rejected;
+		private final long millis;
+
+		Summary(String kind, int rows, int rejected, long millis) {
+			this.kind = kind;
+			this.rows = rows;
+			this.rejected = rejected;
+			this.millis = millis;
+		}
+
+		/**
+		 * @return number of data rows read
+		 */
+		public int getRows() {
+			return rows;
+		}
+
+		/**
+		 * @return number of rows successfully loaded
+		 */
+		public int getImported() {
+			return rows - rejected;
+		}
+
+		/**
+		 * @return number of invalid rows that have been skipped
+		 */
+		public int getRejected() {
+			return rejected;
+		}
+
+		@Override
+		public String toString() {
+			return "Imported " + getImported() + " " + kind + " (" + rejected + " rejected) in " + millis + " ms";
+		}
+	}
+
+	/**
+	 * Imports students from lines formatted as {@code first,last}
+	 *
+	 * @param in the source of the CSV data
+	 * @return the summary of the import
+	 * @throws IOException in case of read errors
+	 */
+	public Summary importStudents(Reader in) throws IOException {
+		return load("students", in, new TextBatch() {
+			@Override
+			boolean parse(String line, int row) {
+				int sep = line.indexOf(SEPARATOR);
+				if(sep < 0 || line.indexOf(SEPARATOR, sep+1) >= 0) return false;
+				first[row] = line.substring(0, sep).trim();
+				second[row] = line.substring(sep+1).trim();
+				return !first[row].isEmpty() && !second[row].isEmpty();
+			}
+
+			@Override
+			int apply(int rows) {
+				for(int i=0; i<rows; ++i) {
+					university.addStudent(first[i], second[i]);
+				}
+				return 0;
+			}
+		});
+	}
+
+	/**
+	 * Imports courses from lines formatted as {@code title,teacher}
+	 *
+	 * @param in the source of the CSV data
+	 * @return the summary of the import
+	 * @throws IOException in case of read errors
+	 */
+	public Summary importCourses(Reader in) throws IOException {
+		return load("courses", in, new TextBatch() {
+			@Override
+			boolean parse(String line, int row) {
+				int sep = line.lastIndexOf(SEPARATOR);
+				if(sep < 0) return false;
+				first[row] = line.substring(0, sep).trim();
+				second[row] = line.substring(sep+1).trim();
+				return !first[row].isEmpty() && !second[row].isEmpty();
+			}
+
+			@Override
+			int apply(int rows) {
+				for(int i=0; i<rows; ++i) {
+					university.addCourse(first[i], second[i]);
+				}
+				return 0;
+			}
+		});
+	}
+
+	/**
+	 * Imports registrations from lines formatted as {@code studentId,courseCode}.
+	 *
+	 * Rows referring to unknown students or courses, or to registrations
+	 * already present, are rejected.
+	 *
+	 * @param in the source of the CSV data
+	 * @return the summary of the import
+	 * @throws IOException in case of read errors
+	 */
+	public Summary importRegistrations(Reader in) throws IOException {
+		return load("registrations", in, new NumericBatch(2) {
+			@Override
+			int apply(int rows) {
+				int rejected = 0;
+				for(int i=0; i<rows; ++i) {
+					int s = university.studentIndex(values[0][i]);
+					Course c = university.findCourse(values[1][i]);
+					if(s<0 || c==null || ! university.addRegistration(s, c)) {
+						rejected++;
+					}
+				}
+				return rejected;
+			}
+		});
+	}
+
+	/**
+	 * Imports grades from lines formatted as {@code studentId,courseCode,grade}.
+	 * The exams are recorded with the current date.
+	 *
+	 * Rows referring to unknown students or courses, to students not attending
+	 * the course, or with grades outside the range 0-30 are rejected.
+	 *
+	 * @param in the source of the CSV data
+	 * @return the summary of the import
+	 * @throws IOException in case of read errors
+	 */
+	public Summary importGrades(Reader in) throws IOException {
+		final int today = (int)LocalDate.now().toEpochDay();
+		return load("grades", in, new NumericBatch(3) {
+			@Override
+			int apply(int rows) {
+				int rejected = 0;
+				for(int i=0; i<rows; ++i) {
+					int s = university.studentIndex(values[0][i]);
+					Course c = university.findCourse(values[1][i]);
+					int grade = values[2][i];
+					if(s<0 || c==null || !GradeStatistics.isValidGrade(grade) || ! university.addExam(s, c, grade, today)) {
+						rejected++;
+					}
+				}
+				return rejected;
+			}
+		});
+	}
+
+	/**
+	 * Reads the lines of the input, accumulates them in the batch
+	 * and applies the batch each time it is full.
+	 */
+	private Summary load(String kind, Reader in, Batch batch) throws IOException {
+		long start = System.currentTimeMillis();
+		BufferedReader reader = in instanceof BufferedReader ? (BufferedReader)in : new BufferedReader(in);
+		int rows = 0;
+		int rejected = 0;
+		int pending = 0;
+		boolean skip = hasHeader;
+		String line;
+		while((line = reader.readLine()) != null) {
+			if(skip) {
+				skip = false;
+				continue;
+			}
+			if(line.isBlank()) continue;
+			rows++;
+			if(batch.parse(line, pending)) {
+				pending++;
+			} else {
+				rejected++;
+			}
+			if(pending == BATCH_SIZE) {
+				rejected += batch.apply(pending);
+				pending = 0;
+			}
+		}
+		if(pending > 0) {
+			rejected += batch.apply(pending);
+		}
+
+		Summary summary = new Summary(kind, rows, rejected, System.currentTimeMillis() - start);
+		logger.info(summary.toString());
+		return summary;
+	}
+
+	/**
+	 * A batch of parsed rows waiting to be applied to the university
+	 */
+	private abstract static class Batch {
+		/**
+		 * Parses a line and stores it in the given row of the batch
+		 *
+		 * @return {@code false} if the line is malformed
+		 */
+		abstract boolean parse(String line, int row);
+
+		/**
+		 * Applies the first rows of the batch
+		 *
+		 * @return the number of rejected rows
+		 */
+		abstract int apply(int rows);
+	}
+
+	private abstract static class TextBatch extends Batch {
+		final String[] first = new String[BATCH_SIZE];
+		final String[] second = new String[BATCH_SIZE];
+	}
+
+	private abstract static class NumericBatch extends Batch {
+		final int[][] values;
+
+		NumericBatch(int fields) {
+			values = new int[fields][BATCH_SIZE];
+		}
+
+		@Override
+		boolean parse(String line, int row) {
+			int begin = 0;
+			for(int f=0; f<values.length; ++f) {
+				int end = line.indexOf(SEPARATOR, begin);
+				if(f == values.length-1) {
+					if(end >= 0) return false;
+					end = line.length();
+				} else if(end < 0) {
+					return false;
+				}
+				int from = begin;
+				int to = end;
+				while(from < to && line.charAt(from) == ' ') from++;
+				while(to > from && line.charAt(to-1) == ' ') to--;
+				try {
+					values[f][row] = Integer.parseInt(line, from, to, 10);
+				} catch(NumberFormatException e) {
+					return false;
+				}
+				begin = end + 1;
+			}
+			return true;
+		}
+	}
+
+	private final static Logger logger = Logger.getLogger("University");
+}
@@ -0,0 +1,328 @@
+package university;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Embedded HTTP service exposing a {@link University}.
+ *
+ * The service answers the following requests, with parameters in the query string
+ * and a plain text response:
+ * <ul>
+ * <li>{@code POST /enroll?first=FIRST&last=LAST}: the ID of the new student</li>
+ * <li>{@code POST /register?student=ID&course=CODE}</li>
+ * <li>{@code POST /exam?student=ID&course=CODE&grade=GRADE}</li>
+ * <li>{@code GET /avg?student=ID} or {@code GET /avg?course=CODE}:
+ * as {@link University#studentAvg(int)} and {@link University#courseAvg(int)}</li>
+ * <li>{@code GET /top?k=K}: as {@link University#topK(int)}, by default the best three students</li>
+ * </ul>
+ * Writes that have no result are answered with status 204.
+ * Invalid parameters are answered with status 400, unknown students or courses
+ * with 404 and a wrong method with 405.
+ *
+ * Each request is handled by its own thread: a virtual thread when the runtime supports
+ * them (Java 21 and later), otherwise a thread of a cached pool.
+ * Queries are executed directly, since the university can be read concurrently.
+ * Write requests are queued, and the first thread that acquires the write lock
+ * applies all the queued writes as a batch, while the other writers wait for the lock
+ * and find their writes already done: the university is modified by a single thread
+ * at a time, without contention on the locks of its students and courses.
+ * Each write of a batch is applied on its own: one that fails is reported
+ * with status 500 to its own request only, and the rest of the batch is applied.
+ *
+ * The JDK server closes the idle connections beyond 200, also when a client is about
+ * to reuse them, which makes many concurrent clients reconnect continuously.
+ * Services with more clients than that should raise the limit when the JVM starts,
+ * since it is read once by the whole JVM, e.g. up to the length of the queue
+ * of pending connections:
+ * <pre>
+ * java -Dsun.net.httpserver.maxIdleConnections=4096 ...
+ * </pre>
+ */
+public class UniversityServer {
+
+	private static final int BACKLOG = 4096;
+
+	private final University university;
+	private final HttpServer server;
+	private final ExecutorService executor;
+
+	private final ConcurrentLinkedQueue<Write> pending = new ConcurrentLinkedQueue<>();
+	private final ReentrantLock writeLock = new ReentrantLock();
+	private long batches;
+	private long writes;
+
+	/**
+	 * A write request waiting to be applied
+	 */
+	private static final class Write {
+		final Supplier<String> operation;
+		String result; // guarded by writeLock
+		RuntimeException failure;
+		boolean done;
+
+		Write(Supplier<String> operation) {
+			this.operation = operation;
+		}
+	}
+
+	/**
+	 * Error to be reported with an HTTP status
+	 */
+	private static final class RequestException extends Exception {
+		private static final long serialVersionUID = 1L;
+		final int status;
+
+		RequestException(int status, String message) {
+			super(message);
+			this.status = status;
+		}
+	}
+
+	/**
+	 * Creates the service, which does not accept requests until {@link #start() started}
+	 *
+	 * @param university the university
+	 * @param port the port to listen to, or 0 for any free port
+	 * @throws IOException if the port cannot be opened
+	 */
+	public UniversityServer(University university, int port) throws IOException {
+		this.university = university;
+		this.server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+		this.executor = newThreadPerRequestExecutor();
+		server.setExecutor(executor);
+		server.createContext("/enroll", exchange -> handle(exchange, "POST", this::enroll));
+		server.createContext("/register", exchange -> handle(exchange, "POST", this::register));
+		server.createContext("/exam", exchange -> handle(exchange, "POST", this::exam));
+		server.createContext("/avg", exchange -> handle(exchange, "GET", this::avg));
+		server.createContext("/top", exchange -> handle(exchange, "GET", this::top));
+	}
+
+	/**
+	 * Starts accepting requests
+	 */
+	public void start() {
+		server.start();
+	}
+
+	/**
+	 * Stops accepting requests, waiting at most the given time for the pending ones
+	 *
+	 * @param delay maximum time to wait in seconds
+	 */
+	public void stop(int delay) {
+		server.stop(delay);
+		executor.shutdown();
+	}
+
+	/**
+	 * @return the port the service listens to
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * @return the average number of writes applied in each batch
+	 */
+	public double averageBatch() {
+		writeLock.lock();
+		try {
+			return batches == 0 ? 0 : writes / (double)batches;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	private String enroll(Map<String,String> params) throws RequestException {
+		String first = text(params, "first");
+		String last = text(params, "last");
+		return write(() -> Integer.toString(university.enroll(first, last)));
+	}
+
+	private String register(Map<String,String> params) throws RequestException {
+		int id = student(params);
+		int code = course(params);
+		return write(() -> {
+			university.register(id, code);
+			return "";
+		});
+	}
+
+	private String exam(Map<String,String> params) throws RequestException {
+		int id = student(params);
+		int code = course(params);
+		int grade = number(params, "grade");
+		if(! GradeStatistics.isValidGrade(grade)) throw new RequestException(400, "Invalid grade " + grade);
+		return write(() -> {
+			university.exam(id, code, grade);
+			return "";
+		});
+	}
+
+	private String avg(Map<String,String> params) throws RequestException {
+		if(params.containsKey("student")) return university.studentAvg(student(params));
+		return university.courseAvg(course(params));
+	}
+
+	private String top(Map<String,String> params) throws RequestException {
+		int k = params.containsKey("k") ? number(params, "k") : University.TOP_STUDENTS;
+		if(k < 0) throw new RequestException(400, "Invalid k " + k);
+		return university.topK(k);
+	}
+
+	/**
+	 * Queues a write and waits until it has been applied, applying
+	 * all the queued writes if no other thread is doing it
+	 *
+	 * @return the result of the write
+	 * @throws RuntimeException the failure of the write, if any
+	 */
+	private String write(Supplier<String> operation) {
+		Write w = new Write(operation);
+		pending.add(w);
+		writeLock.lock();
+		try {
+			if(! w.done) {
+				// our write is still queued: apply the whole queue, including it
+				applyPending();
+			}
+			if(! w.done) {
+				// taken by a batch that was aborted by an Error
+				throw new IllegalStateException("Write not applied");
+			}
+			if(w.failure != null) throw w.failure;
+			return w.result;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Applies the queued writes, keeping the failure of each one with its result,
+	 * to be reported to the request of the write
+	 */
+	private void applyPending() {
+		int n = 0;
+		for(Write next = pending.poll(); next != null; next = pending.poll()) {
+			try {
+				next.result = next.operation.get();
+			} catch(RuntimeException e) {
+				next.failure = e;
+			}
+			next.done = true;
+			n++;
+		}
+		batches++;
+		writes += n;
+	}
+
+	private int student(Map<String,String> params) throws RequestException {
+		int id = number(params, "student");
+		if(university.findStudent(id) == null) throw new RequestException(404, "Unknown student " + id);
+		return id;
+	}
+
+	private int course(Map<String,String> params) throws RequestException {
+		int code = number(params, "course");
+		if(university.findCourse(code) == null) throw new RequestException(404, "Unknown course " + code);
+		return code;
+	}
+
+	private static String text(Map<String,String> params, String name) throws RequestException {
+		String value = params.get(name);
+		if(value == null || value.isEmpty()) throw new RequestException(400, "Missing parameter " + name);
+		return value;
+	}
+
+	private static int number(Map<String,String> params, String name) throws RequestException {
+		String value = text(params, name);
+		try {
+			return Integer.parseInt(value);
+		} catch(NumberFormatException e) {
+			throw new RequestException(400, "Invalid parameter " + name + ": " + value);
+		}
+	}
+
+	/**
+	 * Body of an endpoint, computing the response from the parameters
+	 */
+	@FunctionalInterface
+	private interface Endpoint {
+		String respond(Map<String,String> params) throws RequestException;
+	}
+
+	private static void handle(HttpExchange exchange, String method, Endpoint endpoint) throws IOException {
+		exchange.getRequestBody().close(); // parameters are in the query, the connection can be reused
+		int status = 200;
+		String body;
+		try {
+			if(! method.equals(exchange.getRequestMethod())) {
+				throw new RequestException(405, "Method " + exchange.getRequestMethod() + " not allowed");
+			}
+			body = endpoint.respond(parseQuery(exchange.getRequestURI().getRawQuery()));
+		} catch(RequestException e) {
+			status = e.status;
+			body = e.getMessage();
+		} catch(RuntimeException e) {
+			logger.warning("ERROR: request " + exchange.getRequestURI() + " failed: " + e);
+			status = 500;
+			body = "Internal error";
+		}
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		if(bytes.length == 0) {
+			exchange.sendResponseHeaders(status == 200 ? 204 : status, -1);
+			exchange.close(); // writing even zero bytes would break the connection
+			return;
+		}
+		exchange.sendResponseHeaders(status, bytes.length);
+		try(OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	private static Map<String,String> parseQuery(String query) {
+		Map<String,String> params = new HashMap<>();
+		if(query == null) return params;
+		for(String pair : query.split("&")) {
+			int eq = pair.indexOf('=');
+			if(eq <= 0) continue;
+			params.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+					URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+		}
+		return params;
+	}
+
+	/**
+	 * Creates an executor that runs each request in a new virtual thread,
+	 * falling back to a cached thread pool on runtimes without virtual threads
+	 */
+	private static ExecutorService newThreadPerRequestExecutor() {
+		try {
+			return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch(ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool(task -> {
+				Thread t = new Thread(task, "university-http");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+	}
+
+	private final static Logger logger = Logger.getLogger("University");
+}
@@ -0,0 +1,193 @@
+package university;
+
+/**
+ * Immutable, point-in-time view of a {@link University}, obtained with {@link University#snapshot()}.
+ *
+ * A snapshot reports the students, courses, registrations and exams that were
+ * recorded when it was taken, with the same formats as the corresponding
+ * methods of {@link University}, even while the university keeps being modified.
+ *
+ * Since students, courses, the {@link RegistrationLog} and the {@link ExamLedger} are
+ * only appended to, the snapshot shares them with the university and just records
+ * how many of each existed: study plans and attendee lists are read from the log,
+ * skipping the registrations that came later. The aggregates (averages, ranking) are
+ * the {@link SnapshotAggregates} captured when the snapshot was taken,
+ * so every query costs the same as the corresponding one of the university.
+ * Queries never lock the university, so they never block or delay its writers.
+ *
+ * A snapshot can be shared by many threads.
+ */
+public final class UniversitySnapshot {
+
+	private final University university;
+	private final int firstId;
+	private final SnapshotAggregates aggregates;
+
+	UniversitySnapshot(University university, SnapshotAggregates aggregates) {
+		this.university = university;
+		this.firstId = university.firstId();
+		this.aggregates = aggregates;
+	}
+
+	/**
+	 * @return the name of the university
+	 */
+	public String getName() {
+		return university.getName();
+	}
+
+	/**
+	 * @return number of students enrolled when the snapshot was taken
+	 */
+	public int getStudents() {
+		return aggregates.numStudents;
+	}
+
+	/**
+	 * @return number of courses activated when the snapshot was taken
+	 */
+	public int getCourses() {
+		return aggregates.numCourses;
+	}
+
+	/**
+	 * @return number of registrations when the snapshot was taken
+	 */
+	public int getRegistrations() {
+		return aggregates.numRegistrations;
+	}
+
+	/**
+	 * @return number of exams when the snapshot was taken
+	 */
+	public int getExams() {
+		return aggregates.numExams;
+	}
+
+	/**
+	 * Retrieves the information for a given student, as {@link University#student(int)}
+	 *
+	 * @param id the ID of the student
+	 * @return information about the student, or an empty string if not enrolled
+	 */
+	public String student(int id) {
+		Student s = studentAt(id - firstId);
+		return s==null ? "" : s.toString();
+	}
+
+	/**
+	 * Retrieves the information for a given course, as {@link University#course(int)}
+	 *
+	 * @param code unique code of the course
+	 * @return information about the course, or an empty string if not activated
+	 */
+	public String course(int code) {
+		Course c = courseAt(code - University.INITIAL_CODE);
+		return c==null ? "" : c.toString();
+	}
+
+	/**
+	 * Retrieves the attendees of a course, as {@link University#listAttendees(int)}
+	 *
+	 * @param courseCode unique code of the course
+	 * @return list of attendees separated by "\n"
+	 */
+	public String listAttendees(int courseCode) {
+		Course c = courseAt(courseCode - University.INITIAL_CODE);
+		if(c==null) return "";
+		StringBuilder res = new StringBuilder();
+		for(int index : university.attendeesOf(c, aggregates.numRegistrations)) {
+			res.append(university.studentAt(index)).append("\n");
+		}
+		return res.toString();
+	}
+
+	/**
+	 * Retrieves the study plan for a student, as {@link University#studyPlan(int)}
+	 *
+	 * @param studentID id of the student
+	 * @return the list of courses the student is registered for
+	 */
+	public String studyPlan(int studentID) {
+		int index = studentID - firstId;
+		if(studentAt(index)==null) return "";
+		StringBuilder res = new StringBuilder();
+		for(int course : university.planOf(index, aggregates.numRegistrations)) {
+			res.append(university.courseAt(course)).append("\n");
+		}
+		return res.toString();
+	}
+
+	/**
+	 * Computes the average grade for a student, as {@link University#studentAvg(int)}
+	 *
+	 * @param studentId the ID of the student
+	 * @return the average grade formatted as a string.
+	 */
+	public String studentAvg(int studentId) {
+		int index = studentId - firstId;
+		if(studentAt(index)==null) return "";
+		int numExams = aggregates.examCount(index);
+		if(numExams == 0) return String.format("Student %d hasn't taken any exams", studentId);
+		return String.format("Student %d : %.1f", studentId, aggregates.gradeSum(index) / (double)numExams);
+	}
+
+	/**
+	 * Computes the average grade of a course, as {@link University#courseAvg(int)}
+	 *
+	 * @param courseId course code
+	 * @return the course average formatted as a string.
+	 */
+	public String courseAvg(int courseId) {
+		Course c = courseAt(courseId - University.INITIAL_CODE);
+		if(c==null) return "";
+		GradeStatistics grades = aggregates.courseGrades(c.getIndex());
+		if(grades.getCount() == 0) return String.format("No student has taken the exam in %s", c.getTitle());
+		return String.format("The average for the course %s is: %.1f", c.getTitle(), grades.getAverage());
+	}
+
+	/**
+	 * Retrieves the statistics of the grades of a course, as {@link University#gradeDistribution(int)}
+	 *
+	 * @param courseId course code
+	 * @return the grade statistics of the course, or {@code null} if the course does not exist
+	 */
+	public GradeStatistics gradeDistribution(int courseId) {
+		Course c = courseAt(courseId - University.INITIAL_CODE);
+		if(c==null) return null;
+		return aggregates.courseGrades(c.getIndex()).copy();
+	}
+
+	/**
+	 * Retrieves the best three students, as {@link University#topThreeStudents()}
+	 *
+	 * @return info on the best three students.
+	 */
+	public String topThreeStudents() {
+		return topK(University.TOP_STUDENTS);
+	}
+
+	/**
+	 * Retrieves the best {@code k} students, as {@link University#topK(int)}
+	 *
+	 * @param k maximum number of students to be reported
+	 * @return info on the best {@code k} students.
+	 */
+	public String topK(int k) {
+		StringBuilder res = new StringBuilder();
+		for(ScoreIndex.Entry e : aggregates.top(k)) {
+			University.appendRankingEntry(e, res);
+		}
+		return res.toString();
+	}
+
+	private Student studentAt(int index) {
+		if(index < 0 || index >= aggregates.numStudents) return null;
+		return university.studentAt(index);
+	}
+
+	private Course courseAt(int index) {
+		if(index < 0 || index >= aggregates.numCourses) return null;
+		return university.courseAt(index);
+	}
+}
@@ -0,0 +1,23 @@
+package it.polito.po.test;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Accounting of the memory allocated by the current thread,
+ * which unlike the used heap does not depend on when the garbage collector runs.
+ * The bytes allocated by an operation are an upper bound of the heap it retains.
+ */
+final class Allocations {
+
+	private static final com.sun.management.ThreadMXBean threads =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	private Allocations() {}
+
+	/**
+	 * @return total number of bytes allocated so far by the current thread
+	 */
+	static long allocatedBytes() {
+		return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
@@ -0,0 +1,104 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import university.University;
+import university.UniversityImporter;
+
+import static it.polito.po.test.TestR5_Exams.*;
+
+public class TestBulkImport {
+
+	static final String universityName = "Politecnico di Torino";
+	private University poli;
+	private UniversityImporter importer;
+
+	@Before
+	public void setUp() {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+
+		poli = new University(universityName);
+		importer = new UniversityImporter(poli);
+	}
+
+	@Test
+	public void testImport() throws IOException {
+		UniversityImporter.Summary students = importer.importStudents(new StringReader(
+				"Mario,Rossi\nFrancesca,Verdi\n\nFilippo,Neri\nmalformed line\n"));
+		assertEquals("Wrong number of students imported", 3, students.getImported());
+		assertEquals("Wrong number of rejected students", 1, students.getRejected());
+		assertContained("Wrong student", "Neri", poli.student(10002));
+
+		UniversityImporter.Summary courses = importer.importCourses(new StringReader(
+				"Macro Economics,Paul Krugman\nObject Oriented Programming, Advanced,James Gosling\n"));
+		assertEquals("Wrong number of courses imported", 2, courses.getImported());
+		assertContained("Wrong course", "Advanced", poli.course(11));
+
+		UniversityImporter.Summary registrations = importer.importRegistrations(new StringReader(
+				"10000,10\n10001,10\n10001,11\n10001,11\n20000,10\n10002,99\nx,10\n"));
+		assertEquals("Wrong number of registrations imported", 3, registrations.getImported());
+		assertEquals("Wrong number of rejected registrations", 4, registrations.getRejected());
+
+		UniversityImporter.Summary grades = importer.importGrades(new StringReader(
+				"10000,10,27\n10001,10,30\n10001,11,28\n10002,10,25\n10000,10,31\n"));
+		assertEquals("Wrong number of grades imported", 3, grades.getImported());
+		assertEquals("Wrong number of rejected grades", 2, grades.getRejected());
+
+		assertContained("Wrong average", "28.5", poli.courseAvg(10));
+		assertContained("Wrong average", "29.0", poli.studentAvg(10001));
+	}
+
+	@Test
+	public void testHeader() throws IOException {
+		UniversityImporter withHeader = new UniversityImporter(poli, true);
+		UniversityImporter.Summary students = withHeader.importStudents(new StringReader("first,last\nMario,Rossi\n"));
+		assertEquals("Header should be skipped", 1, students.getRows());
+		assertContained("Wrong student", "Rossi", poli.student(10000));
+	}
+
+	@Test
+	public void testLargeImport() throws IOException {
+		final int numStudents = 100_000;
+		final int numCourses = 50;
+		final int perStudent = 5;
+
+		StringBuilder data = new StringBuilder();
+		for(int i=0; i<numStudents; ++i) {
+			data.append("First").append(i).append(",Last").append(i).append('\n');
+		}
+		importer.importStudents(new StringReader(data.toString()));
+
+		data.setLength(0);
+		for(int i=0; i<numCourses; ++i) {
+			data.append("Course ").append(i).append(",Teacher ").append(i).append('\n');
+		}
+		importer.importCourses(new StringReader(data.toString()));
+
+		data.setLength(0);
+		for(int i=0; i<numStudents; ++i) {
+			for(int j=0; j<perStudent; ++j) {
+				data.append(10000+i).append(',').append(10 + (i+j)%numCourses).append('\n');
+			}
+		}
+		UniversityImporter.Summary registrations = importer.importRegistrations(new StringReader(data.toString()));
+		assertEquals("Wrong number of registrations", numStudents*perStudent, registrations.getImported());
+
+		data.setLength(0);
+		for(int i=0; i<numStudents; ++i) {
+			data.append(10000+i).append(',').append(10 + i%numCourses).append(',').append(18 + i%13).append('\n');
+		}
+		UniversityImporter.Summary grades = importer.importGrades(new StringReader(data.toString()));
+		assertEquals("Wrong number of grades", numStudents, grades.getImported());
+		assertEquals("Wrong number of attendees", numStudents*perStudent/numCourses,
+				poli.listAttendees(10).split("\n").length);
+	}
+}
@@ -0,0 +1,163 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import university.University;
+
+public class TestConcurrentUniversity {
+
+	static final String universityName = "Politecnico di Torino";
+	private static final int MAX_THREADS = 32;
+	private static final int STUDENTS_PER_THREAD = 500;
+	private static final int NUM_COURSES = 20;
+	private static final int COURSES_PER_STUDENT = 5;
+
+	@Before
+	public void setUp() {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+	}
+
+	@Test
+	public void testConcurrentEnroll() throws Exception {
+		University poli = new University(universityName);
+		List<Integer> ids = runConcurrently(MAX_THREADS, t -> {
+			List<Integer> mine = new ArrayList<>();
+			for(int i=0; i<STUDENTS_PER_THREAD; ++i) {
+				mine.add(poli.enroll("First" + t + "_" + i, "Last" + t + "_" + i));
+			}
+			return mine;
+		});
+
+		assertEquals("Duplicate ids assigned", MAX_THREADS*STUDENTS_PER_THREAD, ids.stream().distinct().count());
+		for(int id=10000; id<10000+MAX_THREADS*STUDENTS_PER_THREAD; ++id) {
+			assertFalse("Missing student " + id, poli.student(id).isEmpty());
+		}
+	}
+
+	@Test
+	public void testConcurrentRegistrationsAndExams() throws Exception {
+		for(int threads=1; threads<=MAX_THREADS; threads*=2) {
+			University poli = new University(universityName);
+			for(int c=0; c<NUM_COURSES; ++c) {
+				poli.activate("Course " + c, "Teacher " + c);
+			}
+
+			runConcurrently(threads, t -> {
+				for(int i=0; i<STUDENTS_PER_THREAD; ++i) {
+					int id = poli.enroll("First" + i, "Last" + i);
+					for(int j=0; j<COURSES_PER_STUDENT; ++j) {
+						int code = 10 + (id+j) % NUM_COURSES;
+						poli.register(id, code);
+						poli.register(id, code); // duplicate, must be ignored
+						poli.exam(id, code, 18 + j);
+					}
+				}
+				return List.of();
+			});
+
+			int numStudents = threads*STUDENTS_PER_THREAD;
+			int attendees = 0;
+			for(int c=10; c<10+NUM_COURSES; ++c) {
+				String list = poli.listAttendees(c);
+				attendees += list.isEmpty() ? 0 : list.split("\n").length;
+				assertEquals("Wrong course average", "20.0", lastToken(poli.courseAvg(c)));
+			}
+			assertEquals("Lost or duplicated registrations", numStudents*COURSES_PER_STUDENT, attendees);
+			for(int id=10000; id<10000+numStudents; ++id) {
+				assertEquals("Wrong study plan", COURSES_PER_STUDENT, poli.studyPlan(id).split("\n").length);
+			}
+			assertEquals("Wrong number of top students", 3, poli.topThreeStudents().split("\n").length);
+		}
+	}
+
+	@Test
+	public void testReportWhileActivating() throws Exception {
+		University poli = new University(universityName);
+		runConcurrently(MAX_THREADS, t -> {
+			for(int i=0; i<NUM_COURSES; ++i) {
+				if(t % 2 == 0) poli.activate("Course " + t + "_" + i, "Teacher " + i);
+				else poli.coursesReport();
+			}
+			return List.of();
+		});
+
+		assertEquals("Wrong number of courses", MAX_THREADS/2*NUM_COURSES, poli.coursesReport().split("\n").length);
+	}
+
+	@Test
+	public void testTopWhileUpdating() throws Exception {
+		final int numStudents = 20;
+		University poli = new University(universityName);
+		for(int c=0; c<NUM_COURSES; ++c) {
+			poli.activate("Course " + c, "Teacher " + c);
+		}
+		for(int i=0; i<numStudents; ++i) {
+			int id = poli.enroll("First" + i, "Last" + i);
+			for(int c=0; c<NUM_COURSES; ++c) {
+				poli.register(id, 10 + c);
+			}
+			poli.exam(id, 10, 18);
+		}
+		runConcurrently(MAX_THREADS, t -> {
+			for(int i=0; i<NUM_COURSES; ++i) {
+				if(t % 2 == 0) {
+					poli.exam(10000 + (t/2) % numStudents, 10 + i, 18 + (t + i) % 13);
+					continue;
+				}
+				String[] top = poli.topK(numStudents).split("\n");
+				long distinct = Arrays.stream(top).map(line -> line.substring(0, line.indexOf(':'))).distinct().count();
+				assertEquals("Student ranked twice", top.length, distinct);
+			}
+			return List.of();
+		});
+	}
+
+	private static String lastToken(String s) {
+		return s.substring(s.lastIndexOf(' ') + 1);
+	}
+
+	interface Task {
+		List<Integer> run(int thread) throws Exception;
+	}
+
+	/**
+	 * Runs the task in the given number of threads, starting all of them together,
+	 * and collects the results
+	 */
+	private static List<Integer> runConcurrently(int threads, Task task) throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<List<Integer>>> futures = new ArrayList<>();
+			for(int t=0; t<threads; ++t) {
+				final int thread = t;
+				futures.add(pool.submit(() -> {
+					start.await();
+					return task.run(thread);
+				}));
+			}
+			start.countDown();
+			List<Integer> results = new ArrayList<>();
+			for(Future<List<Integer>> f : futures) {
+				results.addAll(f.get());
+			}
+			return results;
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import university.University;
+
+import static it.polito.po.test.TestR5_Exams.*;
+
+public class TestLargeUniversity {
+
+	static final String universityName = "Politecnico di Torino";
+	private static final int NUM_STUDENTS = 200_000;
+	private University poli;
+
+	@Before
+	public void setUp() {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+
+		poli = new University(universityName);
+	}
+
+	@Test
+	public void testManyStudents() {
+		int last = -1;
+		for(int i=0; i<NUM_STUDENTS; ++i) {
+			last = poli.enroll("First" + i, "Last" + i);
+		}
+
+		assertEquals("Wrong id for last enrolled student", 10000 + NUM_STUDENTS - 1, last);
+		assertContained("Wrong student info", "First0 Last0", poli.student(10000));
+		assertContained("Wrong student info", "Last" + (NUM_STUDENTS-1), poli.student(last));
+		assertEquals("Unknown student should not be found", "", poli.student(last+1));
+	}
+
+	/**
+	 * The original layout (two strings and two 25-slot arrays per student)
+	 * took about 500 bytes per enrolled student, and about 595 bytes with five registrations:
+	 * the compact one must take at least 5 times less in both cases.
+	 * 
+	 * The memory is measured as the bytes allocated by the operations, which does not depend
+	 * on the garbage collector and is an upper bound of the heap they retain.
+	 */
+	@Test
+	public void testHeapFootprint() {
+		final int maxBytesPerStudent = 100;
+		final int maxBytesPerStudentWithPlan = 119;
+		final int numCourses = 100;
+		final int coursesPerStudent = 5;
+		String[] firstNames = new String[100];
+		String[] lastNames = new String[1000];
+		for(int i=0; i<firstNames.length; ++i) firstNames[i] = "First" + i;
+		for(int i=0; i<lastNames.length; ++i) lastNames[i] = "Last" + i;
+		// names read from an external source are distinct instances
+		String[] firsts = new String[NUM_STUDENTS];
+		String[] lasts = new String[NUM_STUDENTS];
+		for(int i=0; i<NUM_STUDENTS; ++i) {
+			firsts[i] = new String(firstNames[i % firstNames.length]);
+			lasts[i] = new String(lastNames[(i*7) % lastNames.length]);
+		}
+		for(int c=0; c<numCourses; ++c) {
+			poli.activate("Course " + c, "Teacher " + c);
+		}
+
+		long before = Allocations.allocatedBytes();
+		for(int i=0; i<NUM_STUDENTS; ++i) {
+			poli.enroll(firsts[i], lasts[i]);
+		}
+		long perStudent = (Allocations.allocatedBytes() - before) / NUM_STUDENTS;
+		assertTrue("Too much memory per student: " + perStudent + " bytes", perStudent <= maxBytesPerStudent);
+
+		before = Allocations.allocatedBytes();
+		for(int i=0; i<NUM_STUDENTS; ++i) {
+			for(int j=0; j<coursesPerStudent; ++j) {
+				poli.register(10000 + i, 10 + (i + j) % numCourses);
+			}
+		}
+		perStudent += (Allocations.allocatedBytes() - before) / NUM_STUDENTS;
+		assertTrue("Too much memory per student with a study plan: " + perStudent + " bytes",
+				perStudent <= maxBytesPerStudentWithPlan);
+
+		assertContained("Wrong student info", "First1 Last7", poli.student(10001));
+		assertEquals("Wrong study plan", coursesPerStudent, poli.studyPlan(10001).split("\n").length);
+	}
+
+	@Test
+	public void testManyCoursesAndAttendees() {
+		final int numCourses = 120;
+		final int numAttendees = 500;
+		for(int i=0; i<numAttendees; ++i) {
+			poli.enroll("First" + i, "Last" + i);
+		}
+		for(int i=0; i<numCourses; ++i) {
+			poli.activate("Course " + i, "Teacher " + i);
+		}
+		for(int c=10; c<10+numCourses; ++c) {
+			poli.register(10000, c);
+		}
+		for(int s=10001; s<10000+numAttendees; ++s) { // 10000 already registered above
+			poli.register(s, 10);
+		}
+
+		assertEquals("Wrong number of courses in study plan", numCourses, poli.studyPlan(10000).split("\n").length);
+		assertEquals("Wrong number of attendees", numAttendees, poli.listAttendees(10).split("\n").length);
+	}
+
+	@Test
+	public void testStreamingOutput() throws IOException {
+		final int numAttendees = 1000;
+		poli.activate("Macro Economics", "Paul Krugman");
+		poli.activate("Object Oriented Programming", "James Gosling");
+		for(int i=0; i<numAttendees; ++i) {
+			int id = poli.enroll("First" + i, "Last" + i);
+			poli.register(id, 10);
+		}
+		poli.register(10000, 11);
+
+		StringWriter attendees = new StringWriter();
+		poli.listAttendees(10, attendees);
+		assertEquals("Streamed list differs", poli.listAttendees(10), attendees.toString());
+
+		StringWriter plan = new StringWriter();
+		poli.studyPlan(10000, plan);
+		assertEquals("Streamed study plan differs", poli.studyPlan(10000), plan.toString());
+
+		assertEquals("Wrong number of attendee ids", numAttendees, poli.attendeeIds(10).count());
+		assertEquals("Wrong first attendee", 10000, poli.attendeeIds(10).findFirst().getAsInt());
+		assertEquals("Wrong attendee ids", 1, poli.attendeeIds(11).count());
+		assertEquals("Unknown course should have no attendees", 0, poli.attendeeIds(99).count());
+	}
+
+	@Test
+	public void testRegisterUnknownIds() {
+		poli.enroll("Mario", "Rossi");
+		poli.activate("Macro Economics", "Paul Krugman");
+
+		poli.register(10000 + 5000, 10);
+		poli.register(-1, 10);
+		poli.register(10000, 10 + 5000);
+
+		assertEquals("Unknown registrations should be ignored", "", poli.studyPlan(10000));
+	}
+}
@@ -2,6 +2,7 @@ package it.polito.po.test;
 
 import static org.junit.Assert.*;
 
+import java.time.LocalDate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -9,6 +10,7 @@ import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
 
+import university.GradeStatistics;
 import university.University;
 
 public class TestR5_Exams {
@@ -132,6 +134,89 @@ public class TestR5_Exams {
 		assertContained("Wrong message","No student has taken",avg);
 	}
 
+	@Test
+	public void testExamNotAttending() {
+		int other = poli.enroll("Anna", "10002"); // name looks like the id of a student
+		poli.register(other, 10);
+
+		poli.exam(10002, 10, 18); // 10002 does not attend course 10
+		poli.exam(10000, 10, 30);
+
+		String avg = poli.courseAvg(10);
+		assertContained("Grade of a student not attending the course was recorded","30",avg);
+	}
+
+	@Test
+	public void testGradeDistribution() {
+		int courseId = 10;
+		poli.exam(10000, courseId, 18);
+		poli.exam(10001, courseId, 24);
+		poli.exam(10003, courseId, 30);
+		
+		GradeStatistics stats = poli.gradeDistribution(courseId);
+		
+		assertNotNull("Missing grade distribution", stats);
+		assertEquals("Wrong number of exams", 3, stats.getCount());
+		assertEquals("Wrong average", 24.0, stats.getAverage(), 0.001);
+		assertEquals("Wrong median", 24.0, stats.getMedian(), 0.001);
+		assertEquals("Wrong standard deviation", Math.sqrt(24.0), stats.getStandardDeviation(), 0.001);
+		assertEquals("Wrong min", 18, stats.getMin());
+		assertEquals("Wrong max", 30, stats.getMax());
+		assertEquals("Wrong histogram", 1, stats.getFrequency(24));
+		assertEquals("Wrong histogram", 0, stats.getFrequency(25));
+		
+		poli.exam(10001, courseId+1, 28);
+		assertEquals("Distribution should be a snapshot", 3, stats.getCount());
+		assertEquals("Exams of other courses should not be counted", 3, poli.gradeDistribution(courseId).getCount());
+	}
+
+	@Test
+	public void testStudentGrades() {
+		poli.exam(10001, 10, 18);
+		poli.exam(10001, 11, 30);
+
+		GradeStatistics stats = poli.studentGrades(10001);
+
+		assertNotNull("Missing student grades", stats);
+		assertEquals("Wrong number of exams", 2, stats.getCount());
+		assertEquals("Wrong average", 24.0, stats.getAverage(), 0.001);
+		assertEquals("Wrong max", 30, stats.getMax());
+
+		poli.exam(10001, 12, 27);
+		poli.exam(10000, 10, 20);
+		assertEquals("Statistics should be a snapshot", 2, stats.getCount());
+		stats = poli.studentGrades(10001);
+		assertEquals("Later exams should be counted", 3, stats.getCount());
+		assertEquals("Wrong median", 27.0, stats.getMedian(), 0.001);
+		assertEquals("Wrong histogram", 1, stats.getFrequency(18));
+		assertEquals("Exams of other students should not be counted", 1, poli.studentGrades(10000).getCount());
+		assertNull("Unknown student should have no grades", poli.studentGrades(20000));
+	}
+
+	@Test
+	public void testDatedExams() {
+		int courseId = 10;
+		LocalDate winter = LocalDate.of(2021, 2, 1);
+		LocalDate summer = LocalDate.of(2021, 7, 1);
+		poli.exam(10000, courseId, 15, winter);
+		poli.exam(10001, courseId, 24, winter);
+		poli.exam(10003, courseId, 30, summer);
+		poli.exam(10001, 11, 28, summer);
+		
+		GradeStatistics inWinter = poli.gradeDistribution(courseId, winter, winter.plusMonths(1));
+		assertEquals("Wrong number of exams in range", 2, inWinter.getCount());
+		assertEquals("Wrong average in range", 19.5, inWinter.getAverage(), 0.001);
+		assertEquals("Wrong number of exams in whole period", 3,
+				poli.gradeDistribution(courseId, winter, summer).getCount());
+		assertEquals("Wrong student grades in range", 28.0,
+				poli.studentGrades(10001, summer, summer).getAverage(), 0.001);
+		
+		String report = poli.coursesReport();
+		assertContained("Wrong course report", "10,Macro Economics,3,23.0,66.7", report);
+		assertContained("Wrong course report", "11,Object Oriented Programming,1,28.0,100.0", report);
+		assertContained("Wrong course report", "12,Virology,0,,", report);
+	}
+
 	@Test @Ignore("Input sanitization was not in the requirements, so not checking it.")
 	public void testExamWrongParams() {
 		final int courseId = 10;
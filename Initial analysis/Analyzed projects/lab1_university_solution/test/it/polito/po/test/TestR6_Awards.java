@@ -111,4 +111,24 @@ public class TestR6_Awards {
 		assertContained("Wrong top student score","37",rank[0]);
 	}
 
+	@Test
+	public void testTopK() {
+		poli.exam(10000, 10, 25);
+		poli.exam(10001, 10, 26);
+		poli.exam(10001, 11, 28);
+		poli.exam(10003, 10, 26);
+		poli.exam(10003, 11, 26);
+
+		String[] rank = poli.topK(2).split("\n");
+		assertEquals("Expected two students",2,rank.length);
+		assertContained("Wrong top student","Bianchi",rank[0]);
+		
+		rank = poli.topK(10).split("\n");
+		assertEquals("Expected only the students with exams",3,rank.length);
+		
+		poli.register(10003, 12); // bonus of the top student decreases
+		rank = poli.topK(1).split("\n");
+		assertContained("Ranking not updated after registration","Rossi",rank[0]);
+	}
+
 }
@@ -2,6 +2,8 @@ package it.polito.po.test;
 
 import static org.junit.Assert.*;
 
+import java.io.IOException;
+import java.io.StringWriter;
 import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
@@ -11,6 +13,9 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import university.EventFormatter;
+import university.EventSink;
+import university.RingBufferEventLog;
 import university.University;
 
 import static it.polito.po.test.TestR5_Exams.*;
@@ -52,6 +57,45 @@ public class TestR7_Logging {
 		assertContained("Wrong log message","10000",s);
 	}
 
+	@Test
+	public void testExamLogging() {
+		poli.enroll("Mario","Rossi");
+		poli.activate("Object Oriented Programming", "James Gosling");
+		poli.register(10000,10);
+		poli.exam(10000,10,27);
+		assertEquals("No log record for exam",4,logSpy.countRecords());
+		assertEquals("Wrong log message","Student 10000 took an exam in course 10 with grade 27",
+				logSpy.lastRecord().getMessage());
+	}
+
+	@Test
+	public void testLoggingOff() {
+		poli.setEventSink(EventSink.NONE);
+		poli.enroll("Mario","Rossi");
+		poli.activate("Object Oriented Programming", "James Gosling");
+		assertEquals("Events should not be logged",0,logSpy.countRecords());
+	}
+
+	@Test
+	public void testRingBufferLog() throws IOException {
+		StringWriter out = new StringWriter();
+		try(RingBufferEventLog log = new RingBufferEventLog(out, EventFormatter.CSV, 4)) {
+			poli.setEventSink(log);
+			for(int i=0; i<20; ++i) {
+				poli.enroll("Student", "N" + i);
+			}
+			poli.activate("Object Oriented Programming", "James Gosling");
+			poli.register(10000,10);
+			poli.exam(10000,10,27);
+			log.flush();
+			assertEquals("Events should not reach the logger",0,logSpy.countRecords());
+		}
+		String[] lines = out.toString().split("\n");
+		assertEquals("Wrong number of events",23,lines.length);
+		assertEquals("Wrong event","ENROLL,10019,,,Student,N19",lines[19]);
+		assertEquals("Wrong event","EXAM,10000,10,27,,",lines[22]);
+	}
+
 	private static class LogSpy {
 		private LogRecord[] records = new LogRecord[20];
 		private int nextRecord=0;
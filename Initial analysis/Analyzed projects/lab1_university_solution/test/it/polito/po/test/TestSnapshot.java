@@ -0,0 +1,210 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import university.SnapshotFile;
+import university.University;
+
+public class TestSnapshot {
+
+	static final String universityName = "Politecnico di Torino";
+	private University poli;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Before
+	public void setUp() {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+
+		poli = new University(universityName);
+		poli.setRector("Guido", "Saracco");
+		poli.enroll("Mario", "Rossi");
+		poli.enroll("Francesca", "Verdì");
+		poli.enroll("Filippo", "Neri");
+		poli.activate("Macro Economics", "Paul Krugman");
+		poli.activate("Object Oriented Programming", "James Gosling");
+		poli.register(10002, 11);
+		poli.register(10000, 10);
+		poli.register(10001, 11);
+		poli.register(10001, 10);
+		poli.register(10002, 10);
+		poli.exam(10000, 10, 27);
+		poli.exam(10001, 10, 30);
+		poli.exam(10001, 11, 28);
+		poli.exam(10002, 11, 18);
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("university.snapshot");
+		SnapshotFile.write(poli, file);
+		University restored = SnapshotFile.read(file);
+
+		assertEquals(poli.getName(), restored.getName());
+		assertEquals(poli.getRector(), restored.getRector());
+		for(int id=10000; id<=10003; ++id) {
+			assertEquals("Wrong student", poli.student(id), restored.student(id));
+			assertEquals("Wrong study plan", poli.studyPlan(id), restored.studyPlan(id));
+			assertEquals("Wrong student average", poli.studentAvg(id), restored.studentAvg(id));
+		}
+		for(int code=10; code<=11; ++code) {
+			assertEquals("Wrong course", poli.course(code), restored.course(code));
+			assertEquals("Wrong attendees", poli.listAttendees(code), restored.listAttendees(code));
+			assertEquals("Wrong course average", poli.courseAvg(code), restored.courseAvg(code));
+			assertEquals("Wrong distribution", poli.gradeDistribution(code).toString(),
+					restored.gradeDistribution(code).toString());
+		}
+		assertEquals("Wrong ranking", poli.topThreeStudents(), restored.topThreeStudents());
+		assertEquals("Wrong exams", poli.coursesReport(), restored.coursesReport());
+
+		assertEquals("New students should follow the restored ones", 10003, restored.enroll("Anna", "Bianchi"));
+		assertEquals("New courses should follow the restored ones", 12, restored.activate("Physics", "Enrico Fermi"));
+	}
+
+	@Test
+	public void testAppend() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("university.snapshot");
+		SnapshotFile.write(poli, file);
+		long written = Files.size(file);
+
+		poli.setRector("Stefano", "Corgnati");
+		poli.enroll("Anna", "Bianchi");
+		poli.enroll("Mario", "Verdì");
+		poli.activate("Physics", "Enrico Fermi");
+		poli.register(10003, 12);
+		poli.register(10000, 12);
+		poli.exam(10003, 12, 25);
+		poli.exam(10000, 12, 30);
+		SnapshotFile.append(poli, file);
+		long appended = Files.size(file) - written;
+		assertTrue("Append should write only the new records: " + appended + " bytes", appended < written);
+		SnapshotFile.append(poli, file); // nothing new: only a commit
+		assertTrue("Empty append too large", Files.size(file) - written - appended < 64);
+
+		University restored = SnapshotFile.read(file);
+		assertEquals(poli.getRector(), restored.getRector());
+		for(int id=10000; id<=10004; ++id) {
+			assertEquals("Wrong student", poli.student(id), restored.student(id));
+			assertEquals("Wrong study plan", poli.studyPlan(id), restored.studyPlan(id));
+			assertEquals("Wrong student average", poli.studentAvg(id), restored.studentAvg(id));
+		}
+		for(int code=10; code<=12; ++code) {
+			assertEquals("Wrong course", poli.course(code), restored.course(code));
+			assertEquals("Wrong attendees", poli.listAttendees(code), restored.listAttendees(code));
+		}
+		assertEquals("Wrong ranking", poli.topThreeStudents(), restored.topThreeStudents());
+		assertEquals("Wrong exams", poli.coursesReport(), restored.coursesReport());
+
+		try {
+			SnapshotFile.append(new University("Università di Bologna"), file);
+			fail("Append to the snapshot of another university not detected");
+		} catch(IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testInterruptedAppend() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("university.snapshot");
+		SnapshotFile.write(poli, file);
+		long written = Files.size(file);
+		poli.enroll("Anna", "Bianchi");
+		poli.register(10003, 10);
+		SnapshotFile.append(poli, file);
+		byte[] content = Files.readAllBytes(file);
+		Files.write(file, java.util.Arrays.copyOf(content, (int)written + (content.length - (int)written) / 2));
+
+		University restored = SnapshotFile.read(file);
+		assertEquals("Partial segment should be ignored", "", restored.student(10003));
+		assertEquals("Wrong attendees", restored.listAttendees(11), poli.listAttendees(11));
+
+		SnapshotFile.append(poli, file);
+		restored = SnapshotFile.read(file);
+		assertEquals("Partial segment should be replaced", poli.student(10003), restored.student(10003));
+		assertEquals("Wrong attendees", poli.listAttendees(10), restored.listAttendees(10));
+	}
+
+	@Test
+	public void testCorruption() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("university.snapshot");
+		SnapshotFile.write(poli, file);
+		byte[] content = Files.readAllBytes(file);
+
+		for(int pos : new int[] {0, 10, content.length/2, content.length-3}) {
+			byte[] corrupted = content.clone();
+			corrupted[pos] ^= 0x40;
+			Path bad = folder.getRoot().toPath().resolve("corrupted" + pos + ".snapshot");
+			Files.write(bad, corrupted);
+			try {
+				SnapshotFile.read(bad);
+				fail("Corruption at " + pos + " not detected");
+			} catch(StreamCorruptedException e) {
+				// expected
+			}
+		}
+
+		Path truncated = folder.getRoot().toPath().resolve("truncated.snapshot");
+		Files.write(truncated, java.util.Arrays.copyOf(content, content.length - 10));
+		try {
+			SnapshotFile.read(truncated);
+			fail("Truncation not detected");
+		} catch(StreamCorruptedException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * The restore of 500k students takes about 1 s once the JIT is warm and about 1.8 s
+	 * for the first one in a test JVM on a single core, and allocates about 260 bytes per student,
+	 * nearly all of it retained by the restored university.
+	 * The bounds leave a margin of about 50% over those figures.
+	 */
+	@Test
+	public void testLargeSnapshot() throws IOException {
+		final int numStudents = 500_000;
+		final int numCourses = 100;
+		final int maxBytesPerStudent = 400;
+		final long maxMillis = 3_000;
+		University large = new University(universityName);
+		for(int c=0; c<numCourses; ++c) {
+			large.activate("Course " + c, "Teacher " + c);
+		}
+		for(int i=0; i<numStudents; ++i) {
+			int id = large.enroll("First" + i, "Last" + i);
+			int code = 10 + i % numCourses;
+			large.register(id, code);
+			large.exam(id, code, 18 + i % 13);
+		}
+
+		Path file = folder.getRoot().toPath().resolve("large.snapshot");
+		SnapshotFile.write(large, file);
+
+		long allocated = Allocations.allocatedBytes();
+		long start = System.nanoTime();
+		University restored = SnapshotFile.read(file);
+		long millis = (System.nanoTime() - start) / 1_000_000;
+		long perStudent = (Allocations.allocatedBytes() - allocated) / numStudents;
+
+		assertTrue("Too much memory allocated per student: " + perStudent + " bytes", perStudent <= maxBytesPerStudent);
+		assertTrue("Restore too slow: " + millis + " ms", millis <= maxMillis);
+		assertEquals(large.student(10000 + numStudents - 1), restored.student(10000 + numStudents - 1));
+		assertEquals(large.studyPlan(10000 + numStudents - 1), restored.studyPlan(10000 + numStudents - 1));
+		assertEquals(large.listAttendees(10), restored.listAttendees(10));
+		assertEquals(large.courseAvg(42), restored.courseAvg(42));
+		assertEquals(large.topThreeStudents(), restored.topThreeStudents());
+	}
+}
@@ -0,0 +1,129 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.time.LocalDate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import university.University;
+import university.UniversityFederation;
+
+import static it.polito.po.test.TestR5_Exams.*;
+
+public class TestUniversityFederation {
+
+	static final String universityName = "Politecnico di Torino";
+	static final int numStudents = 40;
+	private UniversityFederation federation;
+	private University poli;
+	private int[] federationIds;
+	private int[] poliIds;
+
+	@Before
+	public void setUp() {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+
+		federation = new UniversityFederation(universityName, 4, 100);
+		poli = new University(universityName);
+		federationIds = new int[numStudents];
+		poliIds = new int[numStudents];
+		for(int c=0; c<3; ++c) {
+			assertEquals(poli.activate("Course " + c, "Teacher " + c), federation.activate("Course " + c, "Teacher " + c));
+		}
+		for(int i=0; i<numStudents; ++i) {
+			federationIds[i] = federation.enroll("First" + i, "Last" + i);
+			poliIds[i] = poli.enroll("First" + i, "Last" + i);
+			for(int c=0; c<=i%3; ++c) {
+				federation.register(federationIds[i], 10 + c);
+				poli.register(poliIds[i], 10 + c);
+			}
+			int grade = 18 + i % 13;
+			federation.exam(federationIds[i], 10 + i%3, grade);
+			poli.exam(poliIds[i], 10 + i%3, grade);
+		}
+	}
+
+	@Test
+	public void testShardedIds() {
+		assertEquals(10000, federationIds[0]);
+		assertEquals("Students should be spread over the shards", 10100, federationIds[1]);
+		assertEquals(10001, federationIds[4]);
+		for(int i=0; i<numStudents; ++i) {
+			assertContained("Wrong student", "First" + i + " Last" + i, federation.student(federationIds[i]));
+			assertEquals("Wrong study plan", poli.studyPlan(poliIds[i]), federation.studyPlan(federationIds[i]));
+		}
+		assertEquals("", federation.student(10099));
+		assertEquals("", federation.student(9999));
+		assertEquals(poli.course(11), federation.course(11));
+	}
+
+	@Test
+	public void testMergedCourses() {
+		for(int code=10; code<=12; ++code) {
+			assertEquals("Wrong course average", poli.courseAvg(code), federation.courseAvg(code));
+			assertEquals("Wrong distribution", poli.gradeDistribution(code).toString(),
+					federation.gradeDistribution(code).toString());
+			assertEquals("Wrong attendees", poli.attendeeIds(code).count(), federation.attendeeIds(code).count());
+			assertEquals("Wrong attendees", poli.listAttendees(code).length(), federation.listAttendees(code).length());
+		}
+		assertEquals("Wrong report", poli.coursesReport(), federation.coursesReport());
+		assertEquals("", federation.courseAvg(13));
+		assertNull(federation.gradeDistribution(13));
+	}
+
+	@Test
+	public void testMergedRanking() {
+		assertEquals("Wrong ranking", poli.topThreeStudents(), federation.topThreeStudents());
+		String[] expected = poli.topK(20).split("\n");
+		String[] actual = federation.topK(20).split("\n");
+		assertEquals(expected.length, actual.length);
+		for(int i=0; i<expected.length; ++i) {
+			assertEquals("Wrong score at position " + i,
+					expected[i].substring(expected[i].indexOf(':')), actual[i].substring(actual[i].indexOf(':')));
+		}
+	}
+
+	@Test
+	public void testFull() {
+		UniversityFederation small = new UniversityFederation(universityName, 2, 1);
+		assertEquals(10000, small.enroll("Mario", "Rossi"));
+		assertEquals(10001, small.enroll("Francesca", "Verdi"));
+		try {
+			small.enroll("Filippo", "Neri");
+			fail("Full federation should not accept new students");
+		} catch(IllegalStateException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testReportWhileActivating() throws InterruptedException {
+		final int numCourses = 200;
+		Thread activator = new Thread(() -> {
+			for(int c=0; c<numCourses; ++c) {
+				int code = federation.activate("New course " + c, "Teacher " + c);
+				federation.register(federationIds[0], code); // exams in the first shard only
+				federation.exam(federationIds[0], code, 25);
+			}
+		});
+		activator.start();
+		while(activator.isAlive()) {
+			String[] lines = federation.coursesReport().split("\n");
+			assertTrue("Too many courses reported", lines.length <= 3 + numCourses);
+			int activating = 10 + lines.length; // possibly activated on the first shards only
+			federation.gradeDistribution(activating);
+			federation.gradeDistribution(activating, LocalDate.MIN, LocalDate.MAX);
+		}
+		activator.join();
+
+		String[] lines = federation.coursesReport().split("\n");
+		assertEquals("Wrong number of courses", 3 + numCourses, lines.length);
+		assertEquals("Wrong report line", (12 + numCourses) + ",New course " + (numCourses - 1) + ",1,25.0,100.0",
+				lines[lines.length - 1]);
+	}
+}
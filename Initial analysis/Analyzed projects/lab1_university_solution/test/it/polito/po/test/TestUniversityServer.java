@@ -0,0 +1,116 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import university.EventSink;
+import university.University;
+import university.UniversityServer;
+
+import static it.polito.po.test.TestR5_Exams.*;
+
+public class TestUniversityServer {
+
+	static final String universityName = "Politecnico di Torino";
+	private University poli;
+	private UniversityServer server;
+	private HttpClient client;
+
+	@Before
+	public void setUp() throws IOException {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+
+		poli = new University(universityName);
+		poli.activate("Macro Economics", "Paul Krugman");
+		poli.activate("Object Oriented Programming", "James Gosling");
+		server = new UniversityServer(poli, 0);
+		server.start();
+		client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+	}
+
+	private HttpRequest request(String method, String path) {
+		return HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + path))
+				.method(method, HttpRequest.BodyPublishers.noBody())
+				.build();
+	}
+
+	private HttpResponse<String> send(String method, String path) throws IOException, InterruptedException {
+		return client.send(request(method, path), HttpResponse.BodyHandlers.ofString());
+	}
+
+	@Test
+	public void testEndpoints() throws IOException, InterruptedException {
+		HttpResponse<String> r = send("POST", "/enroll?first=Mario&last=Rossi");
+		assertEquals(200, r.statusCode());
+		assertEquals("10000", r.body());
+		assertEquals("10001", send("POST", "/enroll?first=Francesca&last=Verd%C3%AC").body());
+		assertEquals("Francesca", poli.student(10001).split(" ")[1]);
+
+		assertEquals(204, send("POST", "/register?student=10000&course=10").statusCode());
+		assertEquals(204, send("POST", "/register?student=10001&course=10").statusCode());
+		assertEquals(204, send("POST", "/exam?student=10000&course=10&grade=27").statusCode());
+		assertEquals(204, send("POST", "/exam?student=10001&course=10&grade=30").statusCode());
+
+		assertEquals(poli.studentAvg(10001), send("GET", "/avg?student=10001").body());
+		assertContained("Wrong course average", "28.5", send("GET", "/avg?course=10").body());
+		assertEquals(poli.topThreeStudents(), send("GET", "/top").body());
+		assertEquals(poli.topK(1), send("GET", "/top?k=1").body());
+
+		assertEquals(404, send("POST", "/register?student=10005&course=10").statusCode());
+		assertEquals(404, send("GET", "/avg?course=42").statusCode());
+		assertEquals(400, send("POST", "/exam?student=10000&course=10&grade=31").statusCode());
+		assertEquals(400, send("POST", "/enroll?first=Mario").statusCode());
+		assertEquals(400, send("GET", "/top?k=three").statusCode());
+		assertEquals(405, send("GET", "/enroll?first=Mario&last=Rossi").statusCode());
+		assertEquals("Rejected requests should not modify the university", "", poli.student(10002));
+	}
+
+	@Test
+	public void testFailedWriteIsolated() throws Exception {
+		poli.setEventSink((kind, student, course, grade, first, last) -> {
+			if("Broken".equals(first)) throw new IllegalStateException("Sink failure");
+		});
+		final int numClients = 64;
+		List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+		for(int i=0; i<numClients; ++i) {
+			String first = i % 8 == 0 ? "Broken" : "Mario" + i;
+			responses.add(client.sendAsync(request("POST", "/enroll?first=" + first + "&last=Rossi"),
+					HttpResponse.BodyHandlers.ofString()));
+		}
+
+		Set<String> ids = new HashSet<>();
+		for(int i=0; i<numClients; ++i) {
+			HttpResponse<String> r = responses.get(i).join();
+			if(i % 8 == 0) {
+				assertEquals("Failed write should be reported to its request", 500, r.statusCode());
+			} else {
+				assertEquals("Write batched with a failed one should succeed", 200, r.statusCode());
+				assertTrue("Duplicate ID " + r.body(), ids.add(r.body()));
+			}
+		}
+		poli.setEventSink(EventSink.NONE);
+		assertEquals("Server should keep accepting writes", 200, send("POST", "/enroll?first=Anna&last=Neri").statusCode());
+	}
+}
@@ -0,0 +1,149 @@
+package it.polito.po.test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import university.University;
+import university.UniversitySnapshot;
+
+import static it.polito.po.test.TestR5_Exams.*;
+
+public class TestUniversitySnapshot {
+
+	static final String universityName = "Politecnico di Torino";
+	private University poli;
+
+	@Before
+	public void setUp() {
+		Logger ul = Logger.getLogger("University");
+		ul.setLevel(Level.OFF);
+
+		poli = new University(universityName);
+		poli.enroll("Mario", "Rossi");
+		poli.enroll("Francesca", "Verdi");
+		poli.enroll("Filippo", "Neri");
+		poli.activate("Macro Economics", "Paul Krugman");
+		poli.activate("Object Oriented Programming", "James Gosling");
+		poli.register(10000, 10);
+		poli.register(10001, 10);
+		poli.register(10001, 11);
+		poli.register(10002, 11);
+		poli.exam(10000, 10, 27);
+		poli.exam(10001, 10, 30);
+		poli.exam(10001, 11, 28);
+	}
+
+	@Test
+	public void testSameAsUniversity() {
+		UniversitySnapshot snapshot = poli.snapshot();
+
+		for(int id=10000; id<=10003; ++id) {
+			assertEquals("Wrong student", poli.student(id), snapshot.student(id));
+			assertEquals("Wrong study plan", poli.studyPlan(id), snapshot.studyPlan(id));
+			assertEquals("Wrong student average", poli.studentAvg(id), snapshot.studentAvg(id));
+		}
+		for(int code=10; code<=12; ++code) {
+			assertEquals("Wrong course", poli.course(code), snapshot.course(code));
+			assertEquals("Wrong attendees", poli.listAttendees(code), snapshot.listAttendees(code));
+			assertEquals("Wrong course average", poli.courseAvg(code), snapshot.courseAvg(code));
+		}
+		assertEquals("Wrong distribution", poli.gradeDistribution(10).toString(),
+				snapshot.gradeDistribution(10).toString());
+		assertEquals("Wrong ranking", poli.topThreeStudents(), snapshot.topThreeStudents());
+		assertEquals("Wrong ranking", poli.topK(5), snapshot.topK(5));
+	}
+
+	@Test
+	public void testPointInTime() {
+		UniversitySnapshot snapshot = poli.snapshot();
+		String ranking = poli.topThreeStudents();
+
+		poli.enroll("Laura", "Bianchi");
+		poli.register(10003, 10);
+		poli.register(10002, 10);
+		poli.exam(10003, 10, 30);
+		poli.exam(10002, 11, 18);
+
+		assertEquals("Later students should not be visible", "", snapshot.student(10003));
+		assertEquals("Later registrations should not be visible", 2, snapshot.listAttendees(10).split("\n").length);
+		assertEquals("Later exams should not be visible", "Student 10002 hasn't taken any exams", snapshot.studentAvg(10002));
+		assertContained("Later exams should not be visible", "28.5", snapshot.courseAvg(10));
+		assertEquals("Later exams should not change the ranking", ranking, snapshot.topThreeStudents());
+		assertEquals(3, snapshot.getExams());
+		assertEquals(4, poli.snapshot().listAttendees(10).split("\n").length);
+	}
+
+	@Test
+	public void testConsistentWhileWriting() throws InterruptedException {
+		final int numStudents = 20_000;
+		AtomicBoolean done = new AtomicBoolean();
+		Thread writer = new Thread(() -> {
+			for(int i=0; i<numStudents; ++i) {
+				int id = poli.enroll("First" + i, "Last" + i);
+				int code = 10 + i % 2;
+				poli.register(id, code);
+				poli.exam(id, code, 18 + i % 13);
+			}
+			done.set(true);
+		});
+		writer.start();
+
+		int checks = 0;
+		while(!done.get() || checks == 0) {
+			UniversitySnapshot snapshot = poli.snapshot();
+			int attendees = 0;
+			int exams = 0;
+			for(int code=10; code<=11; ++code) {
+				String list = snapshot.listAttendees(code);
+				attendees += list.isEmpty() ? 0 : list.split("\n").length;
+				exams += snapshot.gradeDistribution(code).getCount();
+			}
+			assertEquals("Torn registrations", snapshot.getRegistrations(), attendees);
+			assertEquals("Torn exams", snapshot.getExams(), exams);
+			assertTrue("Exams without registration", exams <= attendees);
+			checks++;
+		}
+		writer.join();
+		assertEquals(numStudents + 3, poli.snapshot().getStudents());
+	}
+
+	@Test
+	public void testSuccessiveSnapshots() {
+		final int numStudents = 3_000;
+		final int numRounds = 4;
+		for(int i=0; i<numStudents; ++i) {
+			poli.enroll("First" + i, "Last" + i);
+		}
+		List<UniversitySnapshot> snapshots = new ArrayList<>();
+		List<String> rankings = new ArrayList<>();
+		for(int round=0; round<numRounds; ++round) {
+			for(int i=round; i<numStudents; i+=numRounds-round) { // some students in every round
+				int id = 10003 + i;
+				int code = 10 + (i + round) % 2;
+				poli.register(id, code);
+				poli.exam(id, code, 18 + (i * 7 + round) % 13);
+			}
+			UniversitySnapshot snapshot = poli.snapshot();
+			assertEquals("Wrong ranking", poli.topK(numStudents), snapshot.topK(numStudents));
+			snapshots.add(snapshot);
+			rankings.add(snapshot.topK(numStudents));
+		}
+		for(int round=0; round<numRounds; ++round) {
+			assertEquals("Later snapshots changed an earlier one", rankings.get(round), snapshots.get(round).topK(numStudents));
+		}
+		UniversitySnapshot last = snapshots.get(numRounds - 1);
+		for(int id=10000; id<10003+numStudents; id+=97) {
+			assertEquals("Wrong study plan", poli.studyPlan(id), last.studyPlan(id));
+			assertEquals("Wrong student average", poli.studentAvg(id), last.studentAvg(id));
+		}
+		assertEquals("Wrong course average", poli.courseAvg(11), last.courseAvg(11));
+	}
+}
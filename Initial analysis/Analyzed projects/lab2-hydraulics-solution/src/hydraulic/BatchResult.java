@@ -0,0 +1,112 @@
+package hydraulic;
+
+import java.util.Arrays;
+
+/**
+ * Result of the batch simulation of many scenarios,
+ * see {@link HSystem#simulateBatch(Scenarios, boolean)}.
+ *
+ * Elements are identified by their index in the {@link FlowPlan}.
+ * The flow of an element is its input flow, or the output flow for the sources.
+ *
+ * The violations of the maximum flows are kept as a compact list of
+ * (element, scenario) pairs, in order of element, together with the number
+ * of violations of each scenario.
+ */
+public final class BatchResult {
+
+	private final int numElements;
+	private final int numScenarios;
+	private final double[] flows; // [element * numScenarios + scenario]
+	private final int[] violationCounts;
+	private int[] violationElements = new int[16];
+	private int[] violationScenarios = new int[16];
+	private int numViolations;
+
+	BatchResult(int numElements, int numScenarios, double[] flows) {
+		this.numElements = numElements;
+		this.numScenarios = numScenarios;
+		this.flows = flows;
+		this.violationCounts = new int[numScenarios];
+	}
+
+	void addViolation(int element, int scenario) {
+		if(numViolations == violationElements.length) {
+			violationElements = Arrays.copyOf(violationElements, numViolations * 2);
+			violationScenarios = Arrays.copyOf(violationScenarios, numViolations * 2);
+		}
+		violationElements[numViolations] = element;
+		violationScenarios[numViolations] = scenario;
+		numViolations++;
+		violationCounts[scenario]++;
+	}
+
+	/**
+	 * @return number of scenarios
+	 */
+	public int getScenarios() {
+		return numScenarios;
+	}
+
+	/**
+	 * @return number of elements
+	 */
+	public int getElements() {
+		return numElements;
+	}
+
+	/**
+	 * Retrieves the flow of an element in a scenario
+	 *
+	 * @param element index of the element
+	 * @param scenario index of the scenario
+	 * @return the flow
+	 */
+	public double getFlow(int element, int scenario) {
+		if(scenario < 0 || scenario >= numScenarios) throw new IndexOutOfBoundsException("Scenario " + scenario);
+		return flows[element * numScenarios + scenario];
+	}
+
+	/**
+	 * Retrieves the flows of an element in all the scenarios
+	 *
+	 * @param element index of the element
+	 * @return the flows, indexed by scenario
+	 */
+	public double[] getFlows(int element) {
+		int from = element * numScenarios;
+		return Arrays.copyOfRange(flows, from, from + numScenarios);
+	}
+
+	/**
+	 * @return total number of violations of the maximum flows in all the scenarios
+	 */
+	public int getViolationCount() {
+		return numViolations;
+	}
+
+	/**
+	 * Retrieves the number of elements whose input flow exceeds their maximum flow in a scenario
+	 *
+	 * @param scenario index of the scenario
+	 * @return number of violations
+	 */
+	public int getViolationCount(int scenario) {
+		return violationCounts[scenario];
+	}
+
+	/**
+	 * Retrieves the elements whose input flow exceeds their maximum flow in a scenario
+	 *
+	 * @param scenario index of the scenario
+	 * @return the indices of the elements, in order
+	 */
+	public int[] getViolations(int scenario) {
+		int[] res = new int[violationCounts[scenario]];
+		int k = 0;
+		for(int i=0; i<numViolations && k<res.length; ++i) {
+			if(violationScenarios[i] == scenario) res[k++] = violationElements[i];
+		}
+		return res;
+	}
+}
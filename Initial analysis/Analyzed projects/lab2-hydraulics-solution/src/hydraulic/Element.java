@@ -19,6 +19,12 @@ public abstract class Element {
 	private final Element[] outputs;
 	private Element input;
 	private double maxFlow;
+	private int index = -1;
+	private HSystem system;
+	private boolean dirty;
+	private double lastInFlow = SimulationObserver.NO_FLOW;
+	private int depth = -1;
+	private int visited;
 
 	Element(String name){
 		this.name=name;
@@ -49,8 +55,7 @@ public abstract class Element {
 	 * @param elem the element that will be placed downstream
 	 */
 	public void connect(Element elem) {
-		outputs[0] = elem;
-		elem.input = this;
+		connect(elem, 0);
 	}
 	
 	/**
@@ -61,8 +66,11 @@ public abstract class Element {
 	 * @param index the output index that will be used for the connection
 	 */
 	public void connect(Element elem, int index){
+		Element previous = outputs[index];
 		outputs[index] = elem;
 		elem.input = this;
+		if(previous != null && previous != elem && system != null) system.unreached(previous);
+		rerouted();
 	}
 	
 	/**
@@ -90,20 +98,127 @@ public abstract class Element {
 	 */
 	public void setMaxFlow(double maxFlow) {
 		this.maxFlow = maxFlow;
+		changed();
 	}
 
-	abstract void simulate(SimulationObserver observer, double inFlow, boolean enableMaxFlowCheck);
-
-	abstract void layout(String padding, StringBuffer buffer);
+	/**
+	 * Notifies the flows of this element to the observer and adds
+	 * the downstream elements to the pending ones, in reverse order of output
+	 * 
+	 * @param observer the simulation observer, notified through {@code pending.event()}
+	 * @param inFlow the input flow of the element
+	 * @param enableMaxFlowCheck whether the maximum flow must be checked
+	 * @param pending the elements still to be simulated
+	 */
+	abstract void simulate(FlowObserver observer, double inFlow, boolean enableMaxFlowCheck, PendingFlows pending);
 
 	protected String blanks(int n){
-		return String.format("%"+n+"s","");
+		return LayoutWriter.blanks(n);
 	}
 
 	Element getInput(){
 		return input;
 	}
 
+	/**
+	 * Retrieves a downstream element without copying the outputs
+	 * 
+	 * @param index the output index
+	 * @return the element connected to the output, or {@code null}
+	 */
+	Element output(int index){
+		return outputs[index];
+	}
+
+	/**
+	 * @return the index of the element in its system, or {@code -1}
+	 */
+	int getIndex(){
+		return index;
+	}
+
+	void setIndex(int index){
+		this.index = index;
+	}
+
+	HSystem getSystem(){
+		return system;
+	}
+
+	void setSystem(HSystem system){
+		this.system = system;
+	}
+
+	/**
+	 * Notifies the system that the flows downstream of this element must be recomputed
+	 */
+	void changed(){
+		if(system != null) system.markDirty(this);
+	}
+
+	/**
+	 * Notifies the system that also the gains downstream of this element must be recomputed,
+	 * since its connections or the ratios between its output and input flows have changed
+	 */
+	void rerouted(){
+		if(system != null) system.rerouted(this);
+	}
+
+	boolean isDirty(){
+		return dirty;
+	}
+
+	void setDirty(boolean dirty){
+		this.dirty = dirty;
+	}
+
+	/**
+	 * @return the input flow of the element in the last simulation, or {@link SimulationObserver#NO_FLOW}
+	 */
+	double getLastInFlow(){
+		return lastInFlow;
+	}
+
+	void setLastInFlow(double inFlow){
+		this.lastInFlow = inFlow;
+	}
+
+	/**
+	 * @return the distance from the source in the last simulation, or {@code -1} if not reached
+	 */
+	int getDepth(){
+		return depth;
+	}
+
+	void setDepth(int depth){
+		this.depth = depth;
+	}
+
+	/**
+	 * @return the last simulation pass that visited the element
+	 */
+	int getVisited(){
+		return visited;
+	}
+
+	void setVisited(int visited){
+		this.visited = visited;
+	}
+
+	int outputCount(){
+		return outputs.length;
+	}
+
+	/**
+	 * Ratio between the flow of an output and the input flow
+	 * 
+	 * @param index the output index
+	 * @return the coefficient of the output
+	 */
+	double outputCoefficient(int index){
+		return 1.0;
+	}
+
 	public void replaceWith(Element current, Element output){
 		for(int i=0; i<outputs.length; ++i){
 			if(outputs[i] == current){
@@ -111,6 +226,7 @@ public abstract class Element {
 				if(output!=null) {
 					output.input = this;
 				}
+				rerouted();
 			}
 		}
 	}
@@ -0,0 +1,88 @@
+package hydraulic;
+
+import java.util.Arrays;
+
+/**
+ * Observer that records the notifications of one task of a parallel simulation,
+ * to be replayed later in the sequential order.
+ *
+ * The notifications of the tasks forked by the recording task are not copied:
+ * their buffers are appended as placeholders, and are visited in place during the replay.
+ * A buffer is used by a single thread at a time.
+ */
+final class EventBuffer implements SimulationObserver {
+
+	private Level[] levels = new Level[16];
+	private String[] types = new String[16];
+	private String[] names = new String[16];
+	private double[] inFlows = new double[16];
+	private double[][] flows = new double[16][];
+	private EventBuffer[] children = new EventBuffer[16]; // placeholders, where level is null
+	private int size;
+
+	@Override
+	public void notify(Level level, String type, String name, double inFlow, double... flows) {
+		int i = slot();
+		levels[i] = level;
+		types[i] = type;
+		names[i] = name;
+		inFlows[i] = inFlow;
+		this.flows[i] = flows;
+	}
+
+	/**
+	 * Appends the notifications of another buffer, which must not be modified afterwards
+	 *
+	 * @param child the buffer
+	 */
+	void append(EventBuffer child) {
+		int i = slot(); // may replace the arrays, so it must be called before reading the field
+		children[i] = child;
+	}
+
+	/**
+	 * Sends the recorded notifications to an observer, in order
+	 *
+	 * @param target the observer
+	 */
+	void replay(SimulationObserver target) {
+		EventBuffer[] buffers = new EventBuffer[16];
+		int[] positions = new int[16];
+		int depth = 0;
+		buffers[0] = this;
+		while(depth >= 0) {
+			EventBuffer b = buffers[depth];
+			int i = positions[depth];
+			if(i == b.size) {
+				depth--;
+				continue;
+			}
+			positions[depth]++;
+			if(b.levels[i] == null) {
+				if(++depth == buffers.length) {
+					buffers = Arrays.copyOf(buffers, depth * 2);
+					positions = Arrays.copyOf(positions, depth * 2);
+				}
+				buffers[depth] = b.children[i];
+				positions[depth] = 0;
+			} else if(b.levels[i] == Level.Error) {
+				target.notifyFlowError(b.types[i], b.names[i], b.inFlows[i], b.flows[i][0]);
+			} else {
+				target.notifyFlow(b.types[i], b.names[i], b.inFlows[i], b.flows[i]);
+			}
+		}
+	}
+
+	private int slot() {
+		if(size == levels.length) {
+			int capacity = size * 2;
+			levels = Arrays.copyOf(levels, capacity);
+			types = Arrays.copyOf(types, capacity);
+			names = Arrays.copyOf(names, capacity);
+			inFlows = Arrays.copyOf(inFlows, capacity);
+			flows = Arrays.copyOf(flows, capacity);
+			children = Arrays.copyOf(children, capacity);
+		}
+		return size++;
+	}
+}
@@ -0,0 +1,120 @@
+package hydraulic;
+
+import java.util.Arrays;
+
+/**
+ * Notification sent to a {@link FlowObserver} during the simulation.
+ *
+ * The same object is reused for all the notifications of a simulation,
+ * hence it must not be retained by the observer after the notification:
+ * the values must be read, or copied, within {@link FlowObserver#onFlow(FlowEvent)}.
+ */
+public final class FlowEvent {
+
+	private SimulationObserver.Level level;
+	private Element element;
+	private String type;
+	private double inFlow;
+	private double[] outFlows = new double[2];
+	private int outFlowCount;
+
+	FlowEvent() {
+	}
+
+	/**
+	 * @return kind of notification
+	 */
+	public SimulationObserver.Level getLevel() {
+		return level;
+	}
+
+	/**
+	 * @return index of the element in {@link HSystem#getElements()}
+	 */
+	public int getElement() {
+		return element.getIndex();
+	}
+
+	/**
+	 * @return name of the element
+	 */
+	public String getName() {
+		return element.getName();
+	}
+
+	/**
+	 * @return class name of the element
+	 */
+	public String getType() {
+		return type;
+	}
+
+	/**
+	 * @return input flow of the element, or {@link SimulationObserver#NO_FLOW}
+	 */
+	public double getInFlow() {
+		return inFlow;
+	}
+
+	/**
+	 * @return number of output flows, {@code 0} for an error notification
+	 */
+	public int getOutFlowCount() {
+		return level == SimulationObserver.Level.Error ? 0 : outFlowCount;
+	}
+
+	/**
+	 * @param index the output index
+	 * @return output flow of the element, or {@link SimulationObserver#NO_FLOW}
+	 */
+	public double getOutFlow(int index) {
+		if(index >= getOutFlowCount()) throw new IndexOutOfBoundsException("Output " + index);
+		return outFlows[index];
+	}
+
+	/**
+	 * @return maximum flow of the element, for an error notification
+	 */
+	public double getMaxFlow() {
+		return level == SimulationObserver.Level.Error ? outFlows[0] : SimulationObserver.NO_FLOW;
+	}
+
+	/**
+	 * Prepares a status notification, to be completed with the output flows
+	 */
+	FlowEvent status(Element element, String type, double inFlow) {
+		this.level = SimulationObserver.Level.Status;
+		this.element = element;
+		this.type = type;
+		this.inFlow = inFlow;
+		outFlowCount = 0;
+		return this;
+	}
+
+	/**
+	 * Adds an output flow to a status notification
+	 */
+	FlowEvent outFlow(double flow) {
+		if(outFlowCount == outFlows.length) {
+			outFlows = Arrays.copyOf(outFlows, outFlowCount * 2);
+		}
+		outFlows[outFlowCount++] = flow;
+		return this;
+	}
+
+	/**
+	 * Prepares an error notification
+	 */
+	FlowEvent error(Element element, String type, double inFlow, double maxFlow) {
+		status(element, type, inFlow).outFlow(maxFlow);
+		this.level = SimulationObserver.Level.Error;
+		return this;
+	}
+
+	/**
+	 * @return a copy of the output flows, or of the maximum flow for an error
+	 */
+	double[] flows() {
+		return Arrays.copyOf(outFlows, outFlowCount);
+	}
+}
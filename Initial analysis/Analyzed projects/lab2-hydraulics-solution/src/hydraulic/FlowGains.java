@@ -0,0 +1,274 @@
+package hydraulic;
+
+import java.util.Arrays;
+
+/**
+ * Gains from the sources of an hydraulic system to its elements, obtained
+ * with {@link HSystem#gains()}, used to compute the flows of the system
+ * for any source flows without a simulation.
+ *
+ * Every element is linear in its input flow: a split halves it, a multisplit
+ * multiplies it by the proportions and a tap by 1 or 0, depending on its state.
+ * The input flow of an element is then the flow of the source upstream of it
+ * multiplied by a gain, the product of the coefficients along the path from the source.
+ * Since each element is reached by a single source, the gain matrix from
+ * the sources to the elements has at most one non-zero entry per element:
+ * it is stored as the source and the gain of each element.
+ *
+ * The gains follow the current tap states, proportions and connections of the system:
+ * when a tap, a multisplit or a connection changes, only the gains of the elements
+ * downstream of it are computed again, the next time the gains are used.
+ * Adding or deleting elements causes all the gains to be computed again.
+ */
+public final class FlowGains {
+
+	private final HSystem system;
+
+	// for each element, by index in the system
+	private int[] source = new int[0];
+	private double[] gain = new double[0];
+	private int[] depth = new int[0];
+	private int[] visited = new int[0];
+	private int[] queued = new int[0]; // pass that computes again the changed element, see changed()
+	private int pass;
+
+	private Source[] sources = new Source[0];
+	private Sink[] sinks = new Sink[0];
+	private int[] sinkIndex = new int[0];
+
+	private boolean valid;
+	private Element[] changed = new Element[16];
+	private int numChanged;
+	private final PendingFlows pending = new PendingFlows();
+
+	FlowGains(HSystem system) {
+		this.system = system;
+	}
+
+	/**
+	 * @return the sources, in the order of {@link HSystem#getElements()}
+	 */
+	public Source[] getSources() {
+		refresh();
+		return sources.clone();
+	}
+
+	/**
+	 * @return the sinks, in the order of {@link HSystem#getElements()}
+	 */
+	public Sink[] getSinks() {
+		refresh();
+		return sinks.clone();
+	}
+
+	/**
+	 * @return the current flows of the sources, in the order of {@link #getSources()}
+	 */
+	public double[] sourceFlows() {
+		refresh();
+		double[] flows = new double[sources.length];
+		for(int s=0; s<sources.length; ++s) {
+			flows[s] = sources[s].getFlow();
+		}
+		return flows;
+	}
+
+	/**
+	 * Retrieves the source upstream of an element
+	 *
+	 * @param elem the element
+	 * @return the index of the source in {@link #getSources()}, or {@code -1} if no source reaches the element
+	 */
+	public int sourceOf(Element elem) {
+		refresh();
+		int i = elem.getIndex();
+		return elem.getSystem() == system && i < source.length ? source[i] : -1;
+	}
+
+	/**
+	 * Retrieves the ratio between the input flow of an element and the flow of its source
+	 *
+	 * @param elem the element
+	 * @return the gain, {@code 1.0} for a source and {@code 0.0} if no source reaches the element
+	 */
+	public double gainOf(Element elem) {
+		return sourceOf(elem) < 0 ? 0.0 : gain[elem.getIndex()];
+	}
+
+	/**
+	 * Computes the flow of an element: the input flow, or the output flow of a source
+	 *
+	 * @param elem the element
+	 * @param sourceFlows the flows of the sources, in the order of {@link #getSources()}
+	 * @return the flow, or {@link SimulationObserver#NO_FLOW} if no source reaches the element
+	 */
+	public double flowOf(Element elem, double[] sourceFlows) {
+		int s = sourceOf(elem);
+		return s < 0 ? SimulationObserver.NO_FLOW : gain[elem.getIndex()] * sourceFlows[s];
+	}
+
+	/**
+	 * Computes the input flows of all the sinks
+	 *
+	 * @param sourceFlows the flows of the sources, in the order of {@link #getSources()}
+	 * @param sinkFlows the array filled with the flows of the sinks, in the order of {@link #getSinks()},
+	 * 			{@code 0.0} for a sink not reached by any source
+	 */
+	public void sinkFlows(double[] sourceFlows, double[] sinkFlows) {
+		refresh();
+		for(int k=0; k<sinkIndex.length; ++k) {
+			int i = sinkIndex[k];
+			int s = source[i];
+			sinkFlows[k] = s < 0 ? 0.0 : gain[i] * sourceFlows[s];
+		}
+	}
+
+	/**
+	 * Computes the input flows of all the sinks
+	 *
+	 * @param sourceFlows the flows of the sources, in the order of {@link #getSources()}
+	 * @return the flows of the sinks, in the order of {@link #getSinks()}
+	 */
+	public double[] sinkFlows(double[] sourceFlows) {
+		refresh();
+		double[] flows = new double[sinkIndex.length];
+		sinkFlows(sourceFlows, flows);
+		return flows;
+	}
+
+	/**
+	 * Records that the gains downstream of an element must be computed again
+	 */
+	void changed(Element e) {
+		if(! valid) return;
+		int i = e.getIndex();
+		if(i >= 0 && i < queued.length) {
+			if(queued[i] == pass + 1) return; // already recorded since the last refresh
+			queued[i] = pass + 1;
+		}
+		if(numChanged == changed.length) changed = Arrays.copyOf(changed, numChanged * 2);
+		changed[numChanged++] = e;
+	}
+
+	/**
+	 * Records that all the gains must be computed again, e.g. because the indices have changed
+	 */
+	void invalidate() {
+		valid = false;
+		Arrays.fill(changed, 0, numChanged, null);
+		numChanged = 0;
+	}
+
+	/**
+	 * Marks the elements downstream of a disconnected element as not reached by any source
+	 */
+	void unreached(Element e) {
+		if(! valid) return;
+		pending.push(e, 0.0);
+		while(! pending.isEmpty()) {
+			Element u = pending.pop();
+			int i = u == null ? -1 : u.getIndex();
+			if(i < 0 || i >= source.length || u.getSystem() != system || source[i] < 0) continue;
+			source[i] = -1;
+			if(u instanceof Sink) continue;
+			for(int k=0; k<u.outputCount(); ++k) {
+				pending.push(u.output(k), 0.0);
+			}
+		}
+	}
+
+	private void refresh() {
+		if(! valid) {
+			rebuild();
+		} else if(numChanged > 0) {
+			++pass;
+			// upstream elements first, so that each subtree is computed once
+			Arrays.sort(changed, 0, numChanged, (a, b) -> Integer.compare(depthOf(a), depthOf(b)));
+			for(int k=0; k<numChanged; ++k) {
+				Element e = changed[k];
+				changed[k] = null;
+				int i = e.getIndex();
+				if(depthOf(e) >= 0 && visited[i] != pass) {
+					int s = source[i];
+					double g = gain[i];
+					int d = depth[i];
+					unreached(e); // e.g. outputs no longer fed by a multisplit
+					visit(e, s, g, d);
+				}
+			}
+			numChanged = 0;
+		}
+	}
+
+	/**
+	 * @return the depth of an element reached by a source, or {@code -1}
+	 */
+	private int depthOf(Element e) {
+		int i = e.getIndex();
+		if(e.getSystem() != system || i < 0 || i >= source.length || source[i] < 0) return -1;
+		return depth[i];
+	}
+
+	private void rebuild() {
+		Element[] elements = system.getElements();
+		int n = elements.length;
+		source = new int[n];
+		gain = new double[n];
+		depth = new int[n];
+		visited = new int[n];
+		queued = new int[n];
+		Arrays.fill(source, -1);
+		int numSources = 0;
+		int numSinks = 0;
+		for(Element e : elements) {
+			if(e instanceof Source) numSources++;
+			else if(e instanceof Sink) numSinks++;
+		}
+		sources = new Source[numSources];
+		sinks = new Sink[numSinks];
+		sinkIndex = new int[numSinks];
+		numSources = 0;
+		numSinks = 0;
+		for(int i=0; i<n; ++i) {
+			if(elements[i] instanceof Source) {
+				sources[numSources] = (Source)elements[i];
+				visit(elements[i], numSources++, 1.0, 0);
+			} else if(elements[i] instanceof Sink) {
+				sinks[numSinks] = (Sink)elements[i];
+				sinkIndex[numSinks++] = i;
+			}
+		}
+		Arrays.fill(changed, 0, numChanged, null);
+		numChanged = 0;
+		valid = true;
+	}
+
+	/**
+	 * Computes the gains of the subtree starting at an element
+	 */
+	private void visit(Element root, int s, double rootGain, int rootDepth) {
+		pending.push(root, rootGain);
+		while(! pending.isEmpty()) {
+			Element e = pending.pop();
+			int i = e.getIndex();
+			Element input = e.getInput();
+			source[i] = s;
+			gain[i] = pending.flow();
+			depth[i] = e == root ? rootDepth : depth[input.getIndex()] + 1;
+			visited[i] = pass;
+			if(e instanceof Sink) continue;
+			double open = e instanceof Tap && ! ((Tap)e).isOpen() ? 0.0 : 1.0;
+			int n = e.outputCount();
+			if(e instanceof Multisplit) {
+				double[] proportions = ((Multisplit)e).getProportions();
+				n = proportions == null ? 0 : Math.min(n, proportions.length);
+			}
+			for(int k=n-1; k>=0; --k) {
+				Element out = e.output(k);
+				if(out != null && out.getSystem() == system) {
+					pending.push(out, gain[i] * open * e.outputCoefficient(k));
+				}
+			}
+		}
+	}
+}
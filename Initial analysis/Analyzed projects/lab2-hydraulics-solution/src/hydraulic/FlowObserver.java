@@ -0,0 +1,40 @@
+package hydraulic;
+
+/**
+ * Alternative interface for simulation observers, that receive
+ * the notifications without any allocation.
+ *
+ * Instead of strings and arrays, each notification is a reusable {@link FlowEvent},
+ * that identifies the element by its index in the system and
+ * exposes the flows as primitive values.
+ * Any {@link SimulationObserver} can receive the notifications
+ * through the adapter returned by {@link #adapt(SimulationObserver)}.
+ */
+@FunctionalInterface
+public interface FlowObserver {
+
+	/**
+	 * Notification of the flows of an element, or of an error.
+	 *
+	 * @param event the notification, valid only during the call
+	 */
+	void onFlow(FlowEvent event);
+
+	/**
+	 * Adapts a simulation observer: each notification is forwarded to
+	 * {@link SimulationObserver#notifyFlow} or {@link SimulationObserver#notifyFlowError},
+	 * with a new array of output flows.
+	 *
+	 * @param observer the simulation observer
+	 * @return the flow observer
+	 */
+	static FlowObserver adapt(SimulationObserver observer) {
+		return event -> {
+			if(event.getLevel() == SimulationObserver.Level.Error) {
+				observer.notifyFlowError(event.getType(), event.getName(), event.getInFlow(), event.getMaxFlow());
+			} else {
+				observer.notifyFlow(event.getType(), event.getName(), event.getInFlow(), event.flows());
+			}
+		};
+	}
+}
@@ -0,0 +1,236 @@
+package hydraulic;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable flat representation of an hydraulic system, obtained with
+ * {@link HSystem#compile()}, used to simulate the same system many times
+ * with different source flows and tap states.
+ *
+ * The elements reachable from the sources are numbered in the order they are
+ * notified by {@link HSystem#simulate(SimulationObserver)}, so that each element
+ * comes after the element upstream of it. For each element the plan stores
+ * the index of the upstream element, the coefficient of the connection
+ * (1 for sources and taps, 0.5 for splits, the proportion of the output for multisplits)
+ * and, if the upstream element is a tap, the index of that tap.
+ * The maximum flow of each element is also stored, for the checks of the batch simulation.
+ * A run is then a single loop over these arrays.
+ *
+ * Sources and taps are numbered in the same order as the elements, and
+ * the plan reflects the connections and proportions defined when it was compiled.
+ */
+public final class FlowPlan {
+
+	static final int NONE = -1;
+
+	private final Element[] elements;
+	private final int[] parent;
+	private final double[] coefficient;
+	private final int[] gate;
+	private final double[] maxFlow;
+	private final int numSources;
+	private final int numTaps;
+	private final Map<String,Integer> index = new HashMap<>();
+
+	FlowPlan(Element[] elements, int[] parent, double[] coefficient, int[] gate, double[] maxFlow,
+			int numSources, int numTaps) {
+		this.elements = elements;
+		this.parent = parent;
+		this.coefficient = coefficient;
+		this.gate = gate;
+		this.maxFlow = maxFlow;
+		this.numSources = numSources;
+		this.numTaps = numTaps;
+		for(int i=elements.length-1; i>=0; --i) {
+			index.put(elements[i].getName(), i);
+		}
+	}
+
+	/**
+	 * @return number of elements in the plan
+	 */
+	public int size() {
+		return elements.length;
+	}
+
+	/**
+	 * @return number of sources in the plan
+	 */
+	public int getSources() {
+		return numSources;
+	}
+
+	/**
+	 * @return number of taps in the plan
+	 */
+	public int getTaps() {
+		return numTaps;
+	}
+
+	/**
+	 * Retrieves the element with the given index in the plan
+	 *
+	 * @param i index of the element
+	 * @return the element
+	 */
+	public Element getElement(int i) {
+		return elements[i];
+	}
+
+	/**
+	 * Retrieves the index in the plan of an element
+	 *
+	 * @param name name of the element
+	 * @return the index, or -1 if there is no such element in the plan
+	 */
+	public int indexOf(String name) {
+		Integer i = index.get(name);
+		return i == null ? NONE : i;
+	}
+
+	/**
+	 * Retrieves the flows currently defined for the sources of the plan
+	 *
+	 * @return the flows, indexed by source
+	 */
+	public double[] sourceFlows() {
+		double[] flows = new double[numSources];
+		int k = 0;
+		for(int i=0; i<elements.length; ++i) {
+			if(parent[i] == NONE) flows[k++] = ((Source)elements[i]).getFlow();
+		}
+		return flows;
+	}
+
+	/**
+	 * Retrieves the states currently defined for the taps of the plan
+	 *
+	 * @return the states, indexed by tap
+	 */
+	public boolean[] tapStates() {
+		boolean[] states = new boolean[numTaps];
+		int k = 0;
+		for(Element e : elements) {
+			if(e instanceof Tap) states[k++] = ((Tap)e).isOpen();
+		}
+		return states;
+	}
+
+	/**
+	 * Computes the flows of all the elements, without allocating memory.
+	 *
+	 * For each element the result is its input flow, except for the sources
+	 * whose result is their output flow.
+	 *
+	 * @param sourceFlows flows of the sources, indexed by source
+	 * @param tapStates states of the taps ({@code true} if open), indexed by tap
+	 * @param flows destination of the flows, indexed by element, of at least {@link #size()} items
+	 */
+	public void run(double[] sourceFlows, boolean[] tapStates, double[] flows) {
+		int source = 0;
+		for(int i=0; i<elements.length; ++i) {
+			int p = parent[i];
+			if(p == NONE) {
+				flows[i] = sourceFlows[source++];
+			} else {
+				int g = gate[i];
+				flows[i] = g != NONE && ! tapStates[g] ? 0.0 : flows[p] * coefficient[i];
+			}
+		}
+	}
+
+	/**
+	 * Simulates many scenarios with a single pass over the elements.
+	 *
+	 * The flows of all the scenarios are computed element by element: the flows
+	 * of an element in all the scenarios are a contiguous range of the result,
+	 * computed by simple loops from the range of the upstream element.
+	 *
+	 * @param scenarios the scenarios, created for this plan
+	 * @param enableMaxFlowCheck whether to report the elements whose input flow exceeds their maximum flow
+	 * @return the flows of the elements in each scenario and the violations of the maximum flows
+	 */
+	BatchResult runBatch(Scenarios scenarios, boolean enableMaxFlowCheck) {
+		if(scenarios.getPlan() != this) throw new IllegalArgumentException("Scenarios of a different plan");
+		int n = scenarios.size();
+		double[] flows = new double[elements.length * n];
+		double[] sourceFlows = scenarios.sourceFlows;
+		double[] tapFactors = scenarios.tapFactors;
+		BatchResult result = new BatchResult(elements.length, n, flows);
+		int source = 0;
+		for(int i=0; i<elements.length; ++i) {
+			int o = i * n;
+			int p = parent[i];
+			if(p == NONE) {
+				System.arraycopy(sourceFlows, n * source++, flows, o, n);
+				continue; // sources have no input flow to check
+			}
+			int po = p * n;
+			double[] c = scenarios.coefficients[i];
+			if(c == null) {
+				double k = coefficient[i];
+				for(int s=0; s<n; ++s) {
+					flows[o+s] = flows[po+s] * k;
+				}
+			} else {
+				for(int s=0; s<n; ++s) {
+					flows[o+s] = flows[po+s] * c[s];
+				}
+			}
+			int g = gate[i];
+			if(g != NONE) {
+				int go = g * n;
+				for(int s=0; s<n; ++s) {
+					flows[o+s] *= tapFactors[go+s];
+				}
+			}
+			if(enableMaxFlowCheck) {
+				double max = maxFlow[i];
+				for(int s=0; s<n; ++s) {
+					if(flows[o+s] > max) result.addViolation(i, s);
+				}
+			}
+		}
+		return result;
+	}
+
+	double coefficient(int i) {
+		return coefficient[i];
+	}
+
+	/**
+	 * Finds the elements connected to the outputs of an element
+	 *
+	 * @param i index of the element
+	 * @return the indices of the downstream elements by output, {@link #NONE} if not connected
+	 */
+	int[] outputsOf(int i) {
+		Element e = elements[i];
+		int[] res = new int[e.outputCount()];
+		for(int k=0; k<res.length; ++k) {
+			res[k] = NONE;
+			Element out = e.output(k);
+			for(int j=i+1; out != null && j<elements.length; ++j) {
+				if(parent[j] == i && elements[j] == out) {
+					res[k] = j;
+					break;
+				}
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Computes the flows of all the elements, as {@link #run(double[], boolean[], double[])}
+	 *
+	 * @param sourceFlows flows of the sources, indexed by source
+	 * @param tapStates states of the taps ({@code true} if open), indexed by tap
+	 * @return the flows, indexed by element
+	 */
+	public double[] run(double[] sourceFlows, boolean[] tapStates) {
+		double[] flows = new double[elements.length];
+		run(sourceFlows, tapStates, flows);
+		return flows;
+	}
+}
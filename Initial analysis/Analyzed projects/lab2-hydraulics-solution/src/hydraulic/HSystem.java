@@ -1,6 +1,13 @@
 package hydraulic;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 //import java.util.Collection;
 //import java.util.ArrayList;
 
@@ -12,6 +19,21 @@ public class HSystem {
 //	private Collection<Elements> elements = new ArrayList<>();
 	private Element[] elements = new Element[10];
 	private int next;
+	// slots emptied by deleted elements, filled by compact()
+	private int deleted;
+	// with more elements with the same name, the first one added
+	private final Map<String, Element> byName = new HashMap<>();
+	// elements with the same name as one added before, not in byName
+	private int duplicates;
+	// elements changed after the last simulation, see resimulate()
+	private Element[] dirty = new Element[16];
+	private int numDirty;
+	private boolean simulated;
+	private int pass;
+	private FlowGains gains;
+	// buffer reused by the simulations, which hold the lock of the system;
+	// null while in use so that a simulation started by an observer uses its own
+	private PendingFlows spare = new PendingFlows();
 
 // R1
 	/**
@@ -20,10 +42,27 @@ public class HSystem {
 	 */
 	public void addElement(Element elem){
 		//elements.add(elem);
+		if(next==elements.length){
+			compact();
+		}
 		if(next==elements.length){
 			elements = Arrays.copyOf(elements,elements.length*2);
 		}
+		elem.setIndex(next);
+		elem.setSystem(this);
+		if(gains != null) gains.invalidate();
 		elements[next++] = elem;
+		if(byName.putIfAbsent(elem.getName(), elem) != null) duplicates++;
+	}
+
+	/**
+	 * retrieves an element of the system by name
+	 * @param name the name of the element
+	 * @return the element, or {@code null} if the system contains no element with that name;
+	 * 			if more elements have the same name, the first one added
+	 */
+	public Element getElement(String name){
+		return byName.get(name);
 	}
 	
 	/**
@@ -32,6 +71,7 @@ public class HSystem {
 	 * 							the number of added elements
 	 */
 	public Element[] getElements(){
+		compact();
 		return Arrays.copyOf(elements,next);
 //		return elements.toArray(new Element[elements.size()]);
 	}
@@ -49,75 +89,416 @@ public class HSystem {
 	 * Prints the layout of the system starting at each Source
 	 */
 	public String layout(){
-		StringBuffer res = new StringBuffer();
-		for(Element e : elements){
-			if( e instanceof Source){
-				e.layout("", res);
-			}
+		StringBuilder res = new StringBuilder();
+		try {
+			layout(res);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); // cannot happen with a StringBuilder
 		}
 		return res.toString();
 	}
 
+	/**
+	 * Writes the layout of the system starting at each Source, as returned by {@link #layout()}.
+	 * 
+	 * The layout is written while the elements are visited, without building
+	 * the whole text in memory, so that it can be sent to a file or a stream.
+	 * 
+	 * @param out the output, e.g. a {@link java.io.Writer}
+	 * @throws IOException if the output cannot be written
+	 */
+	public void layout(Appendable out) throws IOException {
+		compact();
+		LayoutWriter writer = new LayoutWriter(out);
+		for(int i=0; i<next; ++i){
+			if( elements[i] instanceof Source ){
+				writer.write((Source)elements[i]);
+			}
+		}
+	}
+
 // R7
 	/**
 	 * Deletes a previously added element with the given name from the system
+	 * 
+	 * @return {@code false} if the element is a split with more than one connected output,
+	 * 			or if there is no element with that name
 	 */
 	public boolean deleteElement(String name) {
-		for(Element current : elements){
-			if(current.getName().equals(name)){
-				Element output= null;
-				if( current instanceof Split ){
-					int count = 0;
-					for(Element e : current.getOutputs()){
-						if(e!=null){
-							count++;
-							output = e;
-						}
-					}
-					if(count>1){
-						return false;
-					}
-				}else{
-					output = current.getOutput();
+		Element current = byName.get(name);
+		if(current == null){
+			return false;
+		}
+		Element output= null;
+		if( current instanceof Split ){
+			int count = 0;
+			for(int i=0; i<current.outputCount(); ++i){
+				Element e = current.output(i);
+				if(e!=null){
+					count++;
+					output = e;
 				}
+			}
+			if(count>1){
+				return false;
+			}
+		}else{
+			output = current.getOutput();
+		}
 
-				Element input = current.getInput();
-				if(input!=null) {
-					input.replaceWith(current, output);
-				} else {
-					if( output != null ) output.setInput(null);
-				}
-				remove(current);
-				break;
+		Element input = current.getInput();
+		if(input!=null) {
+			input.replaceWith(current, output);
+		} else {
+			if( output != null ){
+				output.setInput(null);
+				unreached(output);
 			}
 		}
+		remove(current);
 		return true;
 	}
 
+	/**
+	 * Leaves the slot of the element empty, the following elements are
+	 * moved by the next {@link #compact()} so that deleting takes constant time.
+	 * If an element added later has the same name, it is found by name from now on.
+	 */
 	private void remove(Element e){
-		boolean found=false;
-		for(int i=0; i<next-1; ++i){
-			if( elements[i] == e ){
-				found = true;
+		if(byName.remove(e.getName(), e)){
+			for(int i=e.getIndex()+1; duplicates>0 && i<next; ++i){
+				if(elements[i] != null && elements[i].getName().equals(e.getName())){
+					byName.put(e.getName(), elements[i]);
+					duplicates--;
+					break;
+				}
 			}
-			if(found){
-				elements[i] = elements[i+1];
+		}else{
+			duplicates--;
+		}
+		elements[e.getIndex()] = null;
+		e.setIndex(-1);
+		e.setSystem(null);
+		deleted++;
+		if(gains != null) gains.invalidate();
+	}
+
+	/**
+	 * Moves the elements into the slots left empty by the deleted ones,
+	 * keeping the order in which they were added
+	 */
+	private void compact(){
+		if(deleted == 0) return;
+		int n = 0;
+		for(int i=0; i<next; ++i){
+			if(elements[i] != null){
+				elements[i].setIndex(n);
+				elements[n++] = elements[i];
 			}
 		}
-		elements[next-1] = null;
-		next--;
+		Arrays.fill(elements, n, next, null);
+		next = n;
+		deleted = 0;
+		if(gains != null) gains.invalidate();
 	}
 
 // R8
 	/**
 	 * starts the simulation of the system; if {@code enableMaxFlowCheck} is {@code true},
 	 * checks also the elements maximum flows against the input flow
+	 * 
+	 * The elements are visited depth first starting from each source, with an explicit
+	 * stack of pending elements instead of recursion, so the size of the system is not
+	 * limited by the thread stack.
+	 * 
+	 * The simulation records the flows of the elements for {@link #resimulate(SimulationObserver, boolean)},
+	 * so the simulations of a system hold its lock: threads simulating the same system
+	 * concurrently run one after the other. The system must not be modified meanwhile.
 	 */
 	public void simulate(SimulationObserver observer, boolean enableMaxFlowCheck) {
-		for(Element e : elements){
-			if( e instanceof Source ){
-				e.simulate(observer,SimulationObserver.NO_FLOW,enableMaxFlowCheck);
+		simulate(FlowObserver.adapt(observer), enableMaxFlowCheck);
+	}
+
+	/**
+	 * starts the simulation of the system notifying a {@link FlowObserver}, as
+	 * {@link #simulate(SimulationObserver, boolean)} does with a {@link SimulationObserver}.
+	 * 
+	 * The notifications are sent through a single reusable {@link FlowEvent},
+	 * so that, once warmed up, the simulation does not allocate.
+	 * As the other simulations, it holds the lock of the system.
+	 * 
+	 * @param observer the flow observer
+	 * @param enableMaxFlowCheck whether the maximum flows must be checked
+	 */
+	public synchronized void simulate(FlowObserver observer, boolean enableMaxFlowCheck) {
+		compact();
+		PendingFlows pending = spare;
+		spare = null;
+		if(pending == null) pending = new PendingFlows(); // started by an observer
+		++pass;
+		for(int i=0; i<next; ++i){
+			elements[i].setDepth(-1);
+		}
+		for(int i=0; i<next; ++i){
+			if( elements[i] instanceof Source ){
+				pending.push(elements[i], SimulationObserver.NO_FLOW);
+				run(observer, enableMaxFlowCheck, pending);
+			}
+		}
+		clearDirty();
+		simulated = true;
+		spare = pending;
+	}
+
+	/**
+	 * Updates the simulation after some elements have been changed, e.g. a tap opened or closed,
+	 * a proportion of a multisplit, a source flow or a connection.
+	 * 
+	 * Only the elements downstream of the changed ones are simulated again and notified
+	 * to the observer, starting from the input flows computed by the previous simulation.
+	 * If the system has never been simulated, the whole system is simulated.
+	 * 
+	 * As {@link #simulate(SimulationObserver, boolean)}, it holds the lock of the system,
+	 * so threads updating the simulation of the same system run one after the other.
+	 * 
+	 * @param observer the simulation observer
+	 * @param enableMaxFlowCheck whether the maximum flows must be checked
+	 */
+	public void resimulate(SimulationObserver observer, boolean enableMaxFlowCheck) {
+		resimulate(FlowObserver.adapt(observer), enableMaxFlowCheck);
+	}
+
+	/**
+	 * Updates the simulation after some elements have been changed,
+	 * see {@link #resimulate(SimulationObserver, boolean)}
+	 * 
+	 * @param observer the flow observer
+	 * @param enableMaxFlowCheck whether the maximum flows must be checked
+	 */
+	public synchronized void resimulate(FlowObserver observer, boolean enableMaxFlowCheck) {
+		if( !simulated ){
+			simulate(observer, enableMaxFlowCheck);
+			return;
+		}
+		compact(); // the notifications report the indices of the elements
+		PendingFlows pending = spare;
+		spare = null;
+		if(pending == null) pending = new PendingFlows();
+		++pass;
+		// upstream elements first, so that the changed elements downstream are simulated only once
+		Arrays.sort(dirty, 0, numDirty, Comparator.comparingInt(Element::getDepth));
+		for(int i=0; i<numDirty; ++i){
+			Element e = dirty[i];
+			boolean reached = e instanceof Source || e.getDepth() >= 0;
+			if(e.getSystem() == this && reached && e.getVisited() != pass){
+				pending.push(e, e.getLastInFlow());
+				run(observer, enableMaxFlowCheck, pending);
 			}
 		}
+		clearDirty();
+		spare = pending;
+	}
+
+	/**
+	 * Simulates the pending elements, recording their input flows and depths
+	 */
+	private void run(FlowObserver observer, boolean enableMaxFlowCheck, PendingFlows pending){
+		while(! pending.isEmpty()){
+			Element e = pending.pop();
+			Element input = e.getInput();
+			e.setDepth(e instanceof Source || input == null ? 0 : input.getDepth() + 1);
+			e.setVisited(pass);
+			e.setLastInFlow(pending.flow());
+			e.simulate(observer, pending.flow(), enableMaxFlowCheck, pending);
+		}
+	}
+
+	/**
+	 * Marks the elements downstream of a disconnected element as no longer reached by a source
+	 */
+	void unreached(Element e){
+		if(gains != null) gains.unreached(e);
+		if( !simulated ) return;
+		PendingFlows pending = new PendingFlows();
+		pending.push(e, 0.0);
+		while(! pending.isEmpty()){
+			Element u = pending.pop();
+			if(u == null || u.getDepth() < 0) continue;
+			u.setDepth(-1);
+			if(u instanceof Sink) continue;
+			for(int i=0; i<u.outputCount(); ++i){
+				pending.push(u.output(i), 0.0);
+			}
+		}
+	}
+
+	void markDirty(Element e){
+		if( !simulated || e.isDirty() ) return; // before the first simulation everything is simulated anyway
+		e.setDirty(true);
+		if(numDirty == dirty.length){
+			dirty = Arrays.copyOf(dirty, numDirty * 2);
+		}
+		dirty[numDirty++] = e;
+	}
+
+	void rerouted(Element e){
+		if(gains != null) gains.changed(e);
+		markDirty(e);
+	}
+
+	private void clearDirty(){
+		for(int i=0; i<numDirty; ++i){
+			dirty[i].setDirty(false);
+			dirty[i] = null;
+		}
+		numDirty = 0;
+	}
+
+	/**
+	 * Starts the simulation of the system using the common fork/join pool,
+	 * see {@link #simulateParallel(ParallelObserver, boolean, ForkJoinPool)}
+	 * 
+	 * @param observer the thread-safe observer
+	 * @param enableMaxFlowCheck whether the maximum flows must be checked
+	 */
+	public void simulateParallel(ParallelObserver observer, boolean enableMaxFlowCheck) {
+		simulateParallel(observer, enableMaxFlowCheck, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Starts the simulation of the system, simulating in parallel the trees
+	 * of the different sources and the subtrees of the splits.
+	 * 
+	 * The observer receives the same notifications as with {@link #simulate(SimulationObserver, boolean)},
+	 * either as they are produced by the concurrent tasks or, if the observer is
+	 * {@link ParallelObserver#isOrdered() ordered}, in the sequential order
+	 * at the end of the simulation.
+	 * 
+	 * @param observer the thread-safe observer
+	 * @param enableMaxFlowCheck whether the maximum flows must be checked
+	 * @param pool the pool executing the simulation
+	 */
+	public void simulateParallel(ParallelObserver observer, boolean enableMaxFlowCheck, ForkJoinPool pool) {
+		compact();
+		SimulationTask[] tasks = new SimulationTask[next];
+		int n = 0;
+		for(int i=0; i<next; ++i){
+			if( elements[i] instanceof Source ){
+				tasks[n++] = new SimulationTask(elements[i], SimulationObserver.NO_FLOW, enableMaxFlowCheck, observer);
+			}
+		}
+		SimulationTask[] sources = Arrays.copyOf(tasks, n);
+		pool.invoke(new RecursiveAction() {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected void compute() {
+				invokeAll(sources);
+			}
+		});
+		for(SimulationTask t : sources){
+			observer.complete(t.branch());
+		}
+	}
+
+	/**
+	 * Retrieves the gains from the sources to the elements of the system,
+	 * used to compute the flows of the sinks for any source flows without a simulation,
+	 * see {@link FlowGains}.
+	 * 
+	 * The gains follow the changes of the system: only the gains affected by a change
+	 * are computed again, when they are next used.
+	 * 
+	 * @return the gains of the system
+	 */
+	public FlowGains gains() {
+		if(gains == null) gains = new FlowGains(this);
+		return gains;
+	}
+
+	/**
+	 * Compiles the system into a flat plan that can be run many times
+	 * with different source flows and tap states, see {@link FlowPlan}.
+	 * 
+	 * @return the plan of the elements reachable from the sources
+	 */
+	public FlowPlan compile() {
+		compact();
+		int capacity = Math.max(next, 1);
+		Element[] order = new Element[capacity];
+		int[] parent = new int[capacity];
+		double[] coefficient = new double[capacity];
+		int[] gate = new int[capacity];
+		double[] maxFlow = new double[capacity];
+		int size = 0;
+		int numSources = 0;
+		int numTaps = 0;
+
+		// pending elements, with their upstream element, coefficient and gate
+		Element[] stack = new Element[16];
+		int[] stackParent = new int[16];
+		double[] stackCoefficient = new double[16];
+		int[] stackGate = new int[16];
+		int top = 0;
+		for(int s=0; s<next; ++s){
+			if( !(elements[s] instanceof Source) ) continue;
+			stack[top] = elements[s];
+			stackParent[top] = FlowPlan.NONE;
+			stackCoefficient[top] = 1.0;
+			stackGate[top] = FlowPlan.NONE;
+			top++;
+			while(top > 0){
+				top--;
+				Element e = stack[top];
+				if(size == order.length){
+					order = Arrays.copyOf(order, size * 2);
+					parent = Arrays.copyOf(parent, size * 2);
+					coefficient = Arrays.copyOf(coefficient, size * 2);
+					gate = Arrays.copyOf(gate, size * 2);
+					maxFlow = Arrays.copyOf(maxFlow, size * 2);
+				}
+				order[size] = e;
+				parent[size] = stackParent[top];
+				coefficient[size] = stackCoefficient[top];
+				gate[size] = stackGate[top];
+				maxFlow[size] = e.getMaxFlow();
+				if(e instanceof Source) numSources++;
+				int tap = e instanceof Tap ? numTaps++ : FlowPlan.NONE;
+				if( !(e instanceof Sink) ){
+					for(int i=e.outputCount()-1; i>=0; --i){
+						if(e.output(i) == null) continue;
+						if(top == stack.length){
+							stack = Arrays.copyOf(stack, top * 2);
+							stackParent = Arrays.copyOf(stackParent, top * 2);
+							stackCoefficient = Arrays.copyOf(stackCoefficient, top * 2);
+							stackGate = Arrays.copyOf(stackGate, top * 2);
+						}
+						stack[top] = e.output(i);
+						stackParent[top] = size;
+						stackCoefficient[top] = e.outputCoefficient(i);
+						stackGate[top] = tap;
+						top++;
+					}
+				}
+				size++;
+			}
+		}
+		return new FlowPlan(Arrays.copyOf(order, size), Arrays.copyOf(parent, size),
+				Arrays.copyOf(coefficient, size), Arrays.copyOf(gate, size), Arrays.copyOf(maxFlow, size),
+				numSources, numTaps);
+	}
+
+	/**
+	 * Simulates many what-if scenarios of the system in a single pass over its elements.
+	 * 
+	 * Instead of notifying an observer, the flows of all the elements in all the scenarios
+	 * are returned together with, if {@code enableMaxFlowCheck} is {@code true},
+	 * the elements whose input flow exceeds their maximum flow in each scenario.
+	 * 
+	 * @param scenarios the scenarios, created for a plan compiled by {@link #compile()}
+	 * @param enableMaxFlowCheck whether to check the maximum flows
+	 * @return the result of the simulation
+	 */
+	public BatchResult simulateBatch(Scenarios scenarios, boolean enableMaxFlowCheck) {
+		return scenarios.getPlan().runBatch(scenarios, enableMaxFlowCheck);
 	}
 }
@@ -0,0 +1,166 @@
+package hydraulic;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Writes the layout of the trees of the sources of a system.
+ *
+ * The trees are visited with an explicit stack instead of recursion,
+ * and the text is written straight to the output: the padding of each line
+ * is never built as a string, it is made of a number of blanks, taken from a
+ * shared cache, followed by the branch marks of the enclosing splits,
+ * which are kept in a buffer shared by all the elements being visited.
+ */
+final class LayoutWriter {
+
+	private static final int MAX_CACHED = 256;
+	private static final String[] BLANKS = new String[MAX_CACHED + 1];
+
+	private final Appendable out;
+
+	// elements being visited, each with its padding and, for splits, the next output
+	private Element[] elements = new Element[16];
+	private int[] blanks = new int[16];
+	private int[] marksStart = new int[16];
+	private int[] marksEnd = new int[16];
+	private int[] next = new int[16];
+	private int top;
+
+	// branch marks of the enclosing splits
+	private char[] marks = new char[64];
+
+	LayoutWriter(Appendable out) {
+		this.out = out;
+	}
+
+	/**
+	 * Retrieves a string of blanks from the shared cache
+	 *
+	 * @param n the number of blanks
+	 * @return the string
+	 */
+	static String blanks(int n) {
+		if(n > MAX_CACHED) return " ".repeat(n);
+		String b = BLANKS[n];
+		if(b == null) {
+			b = " ".repeat(n);
+			BLANKS[n] = b; // benign race, strings are immutable
+		}
+		return b;
+	}
+
+	/**
+	 * Writes the layout of the tree starting at a source
+	 *
+	 * @param source the source
+	 * @throws IOException if the output cannot be written
+	 */
+	void write(Source source) throws IOException {
+		top = 0;
+		push(source, 0, 0, 0);
+		while(top > 0) {
+			int f = top - 1;
+			Element e = elements[f];
+			if(e instanceof Split) {
+				writeSplit(f, (Split)e);
+				continue;
+			}
+			top--;
+			int padding = blanks[f] + marksEnd[f] - marksStart[f];
+			if(e instanceof Source) {
+				label(e, "]Source -> ");
+				child(e.getOutput(), 12 + e.getName().length(), marksEnd[f], marksEnd[f]);
+			} else if(e instanceof Tap) {
+				label(e, "]Tap -> ");
+				child(e.getOutput(), padding + 9 + e.getName().length(), marksEnd[f], marksEnd[f]);
+			} else {
+				label(e, "]Sink");
+			}
+		}
+	}
+
+	/**
+	 * Writes the split, or its next output, and pushes the element connected to the output
+	 */
+	private void writeSplit(int f, Split split) throws IOException {
+		int n = split.outputCount();
+		int i = next[f];
+		if(i == -1) {
+			label(split, "]Split ");
+			// from now on the frame holds the padding of the outputs
+			int width = 8 + split.getName().length();
+			if(marksStart[f] == marksEnd[f]) blanks[f] += width;
+			else marksEnd[f] = mark(marksEnd[f], ' ', width);
+			i = 0;
+		} else {
+			out.append('\n');
+			padding(f);
+			out.append("|\n");
+			padding(f);
+		}
+		out.append("+-> ");
+		next[f] = i + 1;
+		if(i == n - 1) top--; // the frame is not needed after the last output
+		Element output = split.output(i);
+		if(output == null) {
+			out.append('*');
+		} else if(i == n - 1 && marksStart[f] == marksEnd[f]) {
+			push(output, blanks[f] + 4, marksEnd[f], marksEnd[f]);
+		} else {
+			int end = mark(marksEnd[f], i == n - 1 ? ' ' : '|', 1);
+			end = mark(end, ' ', 3);
+			push(output, blanks[f], marksStart[f], end);
+		}
+	}
+
+	private void child(Element output, int blanks, int marksStart, int marksEnd) throws IOException {
+		if(output == null) out.append('*');
+		else push(output, blanks, marksStart, marksEnd);
+	}
+
+	private void label(Element e, String type) throws IOException {
+		out.append('[').append(e.getName()).append(type);
+	}
+
+	private void padding(int f) throws IOException {
+		int n = blanks[f];
+		for(; n > MAX_CACHED; n -= MAX_CACHED) {
+			out.append(blanks(MAX_CACHED));
+		}
+		out.append(blanks(n));
+		for(int i=marksStart[f]; i<marksEnd[f]; ++i) {
+			out.append(marks[i]);
+		}
+	}
+
+	/**
+	 * Writes a mark after the given position of the buffer, overwriting
+	 * the marks of elements whose visit is complete
+	 *
+	 * @return the position after the mark
+	 */
+	private int mark(int position, char c, int count) {
+		if(position + count > marks.length) {
+			marks = Arrays.copyOf(marks, Math.max(marks.length * 2, position + count));
+		}
+		Arrays.fill(marks, position, position + count, c);
+		return position + count;
+	}
+
+	private void push(Element e, int blanks, int marksStart, int marksEnd) {
+		if(top == elements.length) {
+			elements = Arrays.copyOf(elements, top * 2);
+			this.blanks = Arrays.copyOf(this.blanks, top * 2);
+			this.marksStart = Arrays.copyOf(this.marksStart, top * 2);
+			this.marksEnd = Arrays.copyOf(this.marksEnd, top * 2);
+			next = Arrays.copyOf(next, top * 2);
+		}
+		elements[top] = e;
+		this.blanks[top] = blanks;
+		this.marksStart[top] = marksStart;
+		this.marksEnd[top] = marksEnd;
+		next[top] = -1;
+		top++;
+	}
+}
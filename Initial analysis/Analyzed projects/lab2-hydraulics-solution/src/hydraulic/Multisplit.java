@@ -31,22 +31,32 @@ public class Multisplit extends Split {
 	 */
 	public void setProportions(double... proportions) {
 		this.proportions = proportions;
+		rerouted();
+	}
+
+	double[] getProportions() {
+		return proportions;
 	}
 
 	@Override
-	void simulate(SimulationObserver observer, double inFlow, boolean enableMaxFlowCheck) {
+	void simulate(FlowObserver observer, double inFlow, boolean enableMaxFlowCheck, PendingFlows pending) {
 		if(enableMaxFlowCheck && inFlow > getMaxFlow()){
-			observer.notifyFlowError("MultiSplit", getName(), inFlow, getMaxFlow());
+			observer.onFlow(pending.event().error(this, "MultiSplit", inFlow, getMaxFlow()));
 		}
 
-		double[] outFlows = new double[proportions.length];
+		FlowEvent event = pending.event().status(this, "MultiSplit", inFlow);
 		for(int i=0; i<proportions.length; ++i){
-			outFlows[i] = inFlow * proportions[i];
+			event.outFlow(inFlow * proportions[i]);
 		}
-		observer.notifyFlow("MultiSplit", getName(), inFlow, outFlows);
-		for(int i=0; i<proportions.length; ++i){
-			getOutputs()[i].simulate(observer,outFlows[i], enableMaxFlowCheck);
+		observer.onFlow(event);
+		for(int i=proportions.length-1; i>=0; --i){
+			pending.push(output(i), inFlow * proportions[i]);
 		}
 	}
 
+	@Override
+	double outputCoefficient(int index) {
+		return proportions[index];
+	}
+
 }
@@ -0,0 +1,80 @@
+package hydraulic;
+
+/**
+ * Thread-safe adapter of a {@link SimulationObserver}, used by the
+ * parallel simulation {@link HSystem#simulateParallel(ParallelObserver, boolean)}.
+ *
+ * If the adapter is not ordered, the notifications are forwarded to the
+ * target observer as soon as they arrive, one at a time, in the order in which
+ * the concurrent tasks produce them.
+ *
+ * If the adapter is ordered, each task of the simulation records its notifications
+ * and the target observer receives them all at the end of the simulation,
+ * in the same order as the sequential simulation {@link HSystem#simulate(SimulationObserver, boolean)}.
+ *
+ * The adapter can also be used to make any observer thread-safe.
+ */
+public final class ParallelObserver implements SimulationObserver {
+
+	private final SimulationObserver target;
+	private final boolean ordered;
+
+	/**
+	 * Constructor
+	 *
+	 * @param target the observer that receives the notifications
+	 * @param ordered whether the notifications must be re-sequenced in the sequential order
+	 */
+	public ParallelObserver(SimulationObserver target, boolean ordered) {
+		this.target = target;
+		this.ordered = ordered;
+	}
+
+	/**
+	 * @return whether the notifications are re-sequenced in the sequential order
+	 */
+	public boolean isOrdered() {
+		return ordered;
+	}
+
+	@Override
+	public synchronized void notify(Level level, String type, String name, double inFlow, double... flows) {
+		target.notify(level, type, name, inFlow, flows);
+	}
+
+	@Override
+	public synchronized void notifyFlow(String type, String name, double inFlow, double... outFlow) {
+		target.notifyFlow(type, name, inFlow, outFlow);
+	}
+
+	@Override
+	public synchronized void notifyFlowError(String type, String name, double inFlow, double maxFlow) {
+		target.notifyFlowError(type, name, inFlow, maxFlow);
+	}
+
+	/**
+	 * @return the observer to be notified by a new task
+	 */
+	SimulationObserver branch() {
+		return ordered ? new EventBuffer() : this;
+	}
+
+	/**
+	 * Adds the notifications of a completed task after the ones of the task that forked it
+	 *
+	 * @param parent the observer of the forking task, obtained from {@link #branch()}
+	 * @param child the observer of the completed task, obtained from {@link #branch()}
+	 */
+	void join(SimulationObserver parent, SimulationObserver child) {
+		if(ordered) ((EventBuffer)parent).append((EventBuffer)child);
+	}
+
+	/**
+	 * Delivers the notifications of a completed top level task
+	 *
+	 * @param root the observer of the task, obtained from {@link #branch()}
+	 */
+	void complete(SimulationObserver root) {
+		if(ordered) ((EventBuffer)root).replay(target);
+	}
+}
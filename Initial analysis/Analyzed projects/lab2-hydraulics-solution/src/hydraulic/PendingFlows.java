@@ -0,0 +1,71 @@
+package hydraulic;
+
+import java.util.Arrays;
+
+/**
+ * Stack of the elements still to be simulated, each with its input flow.
+ *
+ * During the simulation each element, instead of simulating its downstream
+ * elements recursively, pushes them in reverse order: popping the elements
+ * from the stack visits the system in the same order as the recursive visit,
+ * but the depth of the system is not limited by the size of the thread stack.
+ *
+ * The element and the flow are kept in two parallel arrays that grow when needed
+ * and are reused by the following simulations, so that simulating does not allocate.
+ * For the same reason the stack also holds the notification reused by the elements.
+ */
+final class PendingFlows {
+
+	private Element[] elements = new Element[16];
+	private double[] flows = new double[16];
+	private int size;
+	private double flow;
+	private final FlowEvent event = new FlowEvent();
+
+	/**
+	 * Adds an element to be simulated
+	 *
+	 * @param elem the element
+	 * @param inFlow the input flow of the element
+	 */
+	void push(Element elem, double inFlow) {
+		if(size == elements.length) {
+			elements = Arrays.copyOf(elements, size * 2);
+			flows = Arrays.copyOf(flows, size * 2);
+		}
+		elements[size] = elem;
+		flows[size] = inFlow;
+		size++;
+	}
+
+	/**
+	 * Removes the element that was added last
+	 *
+	 * @return the element, whose input flow is then returned by {@link #flow()}
+	 */
+	Element pop() {
+		size--;
+		Element elem = elements[size];
+		elements[size] = null;
+		flow = flows[size];
+		return elem;
+	}
+
+	/**
+	 * @return the input flow of the element returned by the last {@link #pop()}
+	 */
+	double flow() {
+		return flow;
+	}
+
+	/**
+	 * @return the notification to be filled and sent by the simulated elements
+	 */
+	FlowEvent event() {
+		return event;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+}
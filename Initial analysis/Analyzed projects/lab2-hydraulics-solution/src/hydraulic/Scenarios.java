@@ -0,0 +1,117 @@
+package hydraulic;
+
+import java.util.Arrays;
+
+/**
+ * Matrix of what-if scenarios for the batch simulation of a {@link FlowPlan},
+ * see {@link HSystem#simulateBatch(Scenarios, boolean)}.
+ *
+ * Each scenario defines the flow of every source, the state of every tap and
+ * the proportions of every multisplit; initially all the scenarios have the
+ * settings of the elements when the plan was compiled.
+ * Sources and taps are identified by their number in the plan,
+ * multisplits by their index in the plan.
+ *
+ * The values are stored by element, with the values of all the scenarios of an element
+ * in a contiguous range, so that the simulation processes each element with simple
+ * loops over the scenarios.
+ */
+public final class Scenarios {
+
+	private final FlowPlan plan;
+	private final int count;
+	final double[] sourceFlows;		// [source * count + scenario]
+	final double[] tapFactors;		// [tap * count + scenario], 1 if open 0 if closed
+	final double[][] coefficients;	// [element][scenario], null if as in the plan
+	private final int[][] outputs;	// [multisplit] indices of the downstream elements, computed when needed
+
+	/**
+	 * Creates a set of scenarios, all with the settings of the compiled system
+	 *
+	 * @param plan the compiled system
+	 * @param count number of scenarios
+	 */
+	public Scenarios(FlowPlan plan, int count) {
+		this.plan = plan;
+		this.count = count;
+		sourceFlows = new double[plan.getSources() * count];
+		double[] flows = plan.sourceFlows();
+		for(int k=0; k<flows.length; ++k) {
+			Arrays.fill(sourceFlows, k * count, (k+1) * count, flows[k]);
+		}
+		tapFactors = new double[plan.getTaps() * count];
+		boolean[] states = plan.tapStates();
+		for(int k=0; k<states.length; ++k) {
+			Arrays.fill(tapFactors, k * count, (k+1) * count, states[k] ? 1.0 : 0.0);
+		}
+		coefficients = new double[plan.size()][];
+		outputs = new int[plan.size()][];
+	}
+
+	/**
+	 * @return the compiled system
+	 */
+	public FlowPlan getPlan() {
+		return plan;
+	}
+
+	/**
+	 * @return number of scenarios
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Defines the flow of a source in a scenario
+	 *
+	 * @param scenario index of the scenario
+	 * @param source number of the source
+	 * @param flow flow of the source
+	 */
+	public void setSourceFlow(int scenario, int source, double flow) {
+		sourceFlows[offset(source, plan.getSources(), scenario)] = flow;
+	}
+
+	/**
+	 * Defines the state of a tap in a scenario
+	 *
+	 * @param scenario index of the scenario
+	 * @param tap number of the tap
+	 * @param open whether the tap is open
+	 */
+	public void setTapOpen(int scenario, int tap, boolean open) {
+		tapFactors[offset(tap, plan.getTaps(), scenario)] = open ? 1.0 : 0.0;
+	}
+
+	/**
+	 * Defines the proportions of a multisplit in a scenario
+	 *
+	 * @param scenario index of the scenario
+	 * @param multisplit index of the multisplit in the plan
+	 * @param proportions the proportions of flow for each output
+	 */
+	public void setProportions(int scenario, int multisplit, double... proportions) {
+		if( !(plan.getElement(multisplit) instanceof Multisplit) ) {
+			throw new IllegalArgumentException("Element " + multisplit + " is not a multisplit");
+		}
+		if(scenario < 0 || scenario >= count) throw new IndexOutOfBoundsException("Scenario " + scenario);
+		if(outputs[multisplit] == null) outputs[multisplit] = plan.outputsOf(multisplit);
+		int[] children = outputs[multisplit];
+		for(int i=0; i<children.length; ++i) {
+			int child = children[i];
+			if(child == FlowPlan.NONE) continue;
+			if(coefficients[child] == null) {
+				coefficients[child] = new double[count];
+				Arrays.fill(coefficients[child], plan.coefficient(child));
+			}
+			coefficients[child][scenario] = proportions[i];
+		}
+	}
+
+	private int offset(int item, int numItems, int scenario) {
+		if(item < 0 || item >= numItems) throw new IndexOutOfBoundsException("Item " + item);
+		if(scenario < 0 || scenario >= count) throw new IndexOutOfBoundsException("Scenario " + scenario);
+		return item * count + scenario;
+	}
+}
@@ -0,0 +1,71 @@
+package hydraulic;
+
+import java.util.Arrays;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork/join task that simulates the subtree starting at an element.
+ *
+ * The subtree is visited with a stack of pending elements, as in the sequential
+ * simulation; when the visit reaches a split and the pool has few queued tasks,
+ * the outputs of the split are simulated by new tasks in parallel.
+ * The notifications of each task go to its own branch of the {@link ParallelObserver},
+ * and the branches of the forked tasks are joined in order of output.
+ */
+final class SimulationTask extends RecursiveAction {
+
+	private static final long serialVersionUID = 1L;
+
+	// a split is forked only while fewer tasks than this are waiting to be stolen
+	private static final int MAX_SURPLUS = 2;
+
+	private final Element root;
+	private final double inFlow;
+	private final boolean enableMaxFlowCheck;
+	private final ParallelObserver observer;
+	private SimulationObserver branch;
+
+	SimulationTask(Element root, double inFlow, boolean enableMaxFlowCheck, ParallelObserver observer) {
+		this.root = root;
+		this.inFlow = inFlow;
+		this.enableMaxFlowCheck = enableMaxFlowCheck;
+		this.observer = observer;
+	}
+
+	/**
+	 * @return the observer that received the notifications of this task
+	 */
+	SimulationObserver branch() {
+		return branch;
+	}
+
+	@Override
+	protected void compute() {
+		branch = observer.branch();
+		FlowObserver flows = FlowObserver.adapt(branch);
+		PendingFlows pending = new PendingFlows();
+		PendingFlows outputs = null;
+		pending.push(root, inFlow);
+		while(! pending.isEmpty()) {
+			Element e = pending.pop();
+			double flow = pending.flow();
+			if( !(e instanceof Split) || getSurplusQueuedTaskCount() >= MAX_SURPLUS ) {
+				e.simulate(flows, flow, enableMaxFlowCheck, pending);
+				continue;
+			}
+			if(outputs == null) outputs = new PendingFlows();
+			e.simulate(flows, flow, enableMaxFlowCheck, outputs);
+			SimulationTask[] tasks = new SimulationTask[e.outputCount()];
+			int n = 0;
+			while(! outputs.isEmpty()) { // popped in order of output
+				Element out = outputs.pop();
+				tasks[n++] = new SimulationTask(out, outputs.flow(), enableMaxFlowCheck, observer);
+			}
+			if(n < tasks.length) tasks = Arrays.copyOf(tasks, n);
+			invokeAll(tasks);
+			for(int i=0; i<n; ++i) {
+				observer.join(branch, tasks[i].branch);
+			}
+		}
+	}
+}
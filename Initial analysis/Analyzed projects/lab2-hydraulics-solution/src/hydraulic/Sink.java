@@ -21,17 +21,12 @@ public class Sink extends Element {
 	}
 
 	@Override
-	void simulate(SimulationObserver observer, double inFlow, boolean enableMaxFlowCheck) {
+	void simulate(FlowObserver observer, double inFlow, boolean enableMaxFlowCheck, PendingFlows pending) {
 		if(enableMaxFlowCheck && inFlow > getMaxFlow()){
-			observer.notifyFlowError("Sink", getName(), inFlow, getMaxFlow());
+			observer.onFlow(pending.event().error(this, "Sink", inFlow, getMaxFlow()));
 		}
 
-		observer.notifyFlow("Sink", getName(), inFlow, SimulationObserver.NO_FLOW);
-	}
-
-	@Override
-	void layout(String padding, StringBuffer buffer) {
-		buffer.append("[").append(getName()).append("]Sink");
+		observer.onFlow(pending.event().status(this, "Sink", inFlow).outFlow(SimulationObserver.NO_FLOW));
 	}
 
 }
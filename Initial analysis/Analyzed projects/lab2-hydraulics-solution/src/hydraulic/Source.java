@@ -25,19 +25,17 @@ public class Source extends Element {
 	 */
 	public void setFlow(double flow){
 		this.flow = flow;
+		changed();
 	}
 
-	@Override
-	void simulate(SimulationObserver observer, double inFlow, boolean enableMaxFlowCheck) {
-		observer.notifyFlow("Source", getName(), SimulationObserver.NO_FLOW, flow);
-		getOutput().simulate(observer,flow, enableMaxFlowCheck);
+	double getFlow(){
+		return flow;
 	}
 
 	@Override
-	void layout(String padding, StringBuffer buffer) {
-		buffer.append("[").append(getName()).append("]Source -> ");
-		if(getOutput()==null) buffer.append("*");
-		else getOutput().layout(blanks(12+getName().length()),buffer);
+	void simulate(FlowObserver observer, double inFlow, boolean enableMaxFlowCheck, PendingFlows pending) {
+		observer.onFlow(pending.event().status(this, "Source", SimulationObserver.NO_FLOW).outFlow(flow));
+		pending.push(getOutput(), flow);
 	}
 
 }
@@ -22,31 +22,19 @@ public class Split extends Element {
 	}
 
 	@Override
-	void simulate(SimulationObserver observer, double inFlow, boolean enableMaxFlowCheck) {
+	void simulate(FlowObserver observer, double inFlow, boolean enableMaxFlowCheck, PendingFlows pending) {
 		if(enableMaxFlowCheck && inFlow > getMaxFlow()){
-			observer.notifyFlowError("Split", getName(), inFlow, getMaxFlow());
+			observer.onFlow(pending.event().error(this, "Split", inFlow, getMaxFlow()));
 		}
-		observer.notifyFlow("Split", getName(), inFlow, inFlow/2,inFlow/2);
-		for(Element e : getOutputs()){
-			e.simulate(observer,inFlow/2, enableMaxFlowCheck);
+		observer.onFlow(pending.event().status(this, "Split", inFlow).outFlow(inFlow/2).outFlow(inFlow/2));
+		for(int i=outputCount()-1; i>=0; --i){
+			pending.push(output(i), inFlow/2);
 		}
 	}
 
 	@Override
-	void layout(String padding, StringBuffer buffer) {
-		buffer.append("[").append(getName()).append("]Split ");
-		String prePad = padding + blanks(8+getName().length());
-
-		Element[] outputs = getOutputs();
-		for(int i=0; i<outputs.length; ++i) {
-			String pad = prePad + (i==outputs.length-1?"    ":"|   ");
-			if(i>0) buffer.append(prePad);
-			buffer.append("+-> ");
-			if (outputs[i] == null) buffer.append("*");
-			else outputs[i].layout(pad, buffer);
-			//buffer.append("\n");
-			if(i<outputs.length-1) buffer.append("\n").append(prePad).append("|\n");
-		}
+	double outputCoefficient(int index) {
+		return 0.5;
 	}
 
 }
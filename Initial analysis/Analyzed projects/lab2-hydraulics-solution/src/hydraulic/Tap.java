@@ -25,24 +25,23 @@ public class Tap extends Element {
 	 * @param open opening status of the tap
 	 */
 	public void setOpen(boolean open){
+		if(this.open == open) return;
 		this.open = open;
+		rerouted();
+	}
+
+	boolean isOpen(){
+		return open;
 	}
 
 	@Override
-	void simulate(SimulationObserver observer, double inFlow, boolean enableMaxFlowCheck) {
+	void simulate(FlowObserver observer, double inFlow, boolean enableMaxFlowCheck, PendingFlows pending) {
 		if(enableMaxFlowCheck && inFlow > getMaxFlow()){
-			observer.notifyFlowError("Tap", getName(), inFlow, getMaxFlow());
+			observer.onFlow(pending.event().error(this, "Tap", inFlow, getMaxFlow()));
 		}
 		double outFlow = open?inFlow:0.0;
-		observer.notifyFlow("Tap", getName(), inFlow, outFlow);
-		getOutput().simulate(observer,outFlow, enableMaxFlowCheck);
-	}
-
-	@Override
-	void layout(String padding, StringBuffer buffer) {
-		buffer.append("[").append(getName()).append("]Tap -> ");
-		if(getOutput()==null) buffer.append("*");
-		else getOutput().layout(blanks(padding.length()+9+getName().length()),buffer);
+		observer.onFlow(pending.event().status(this, "Tap", inFlow).outFlow(outFlow));
+		pending.push(getOutput(), outFlow);
 	}
 
 }
@@ -0,0 +1,579 @@
+package hydraulic;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Compact files storing the topology of an {@link HSystem},
+ * so that a system can be saved and loaded instead of being built in code.
+ *
+ * For each element, in the order of {@link HSystem#getElements()}, the files record
+ * its kind, name and maximum flow, the flow of a source, the state of a tap,
+ * the proportions of a multisplit, and the elements connected to its outputs.
+ * Connections to elements that are not part of the system are not recorded.
+ *
+ * The binary format starts with a header (magic number, format version, number of elements)
+ * followed by blocks of up to {@value #BLOCK_RECORDS} elements.
+ * Numbers of elements and outputs are stored as variable-length integers, flows as doubles
+ * and names as UTF-8 bytes; the header and every block are protected by a CRC32 checksum.
+ * The binary file is loaded through a memory-mapped file.
+ *
+ * The text format has one line per element, with space separated fields:
+ * <pre>
+ * kind maxFlow parameter outputs name
+ * </pre>
+ * where the parameter is the flow of a source, {@code open} or {@code closed} for a tap,
+ * the comma separated proportions of a multisplit, and {@code -} otherwise;
+ * the outputs are the comma separated positions of the connected elements among the element lines, from 0,
+ * with {@code *} for an unconnected output and {@code -} for a sink.
+ * The name takes the rest of the line. Empty lines and lines starting with {@code #} are ignored.
+ */
+public final class TopologyFile {
+
+	static final int MAGIC = 0x48535953; // "HSYS"
+	static final short VERSION = 1;
+	static final int BLOCK_RECORDS = 4096;
+
+	private static final byte END = 0;
+	private static final byte ELEMENTS = 1;
+
+	private static final byte SOURCE = 1;
+	private static final byte TAP = 2;
+	private static final byte SPLIT = 3;
+	private static final byte MULTISPLIT = 4;
+	private static final byte SINK = 5;
+
+	// kind (byte), first record (int), number of records (int), payload length (int)
+	private static final int BLOCK_HEADER = 1 + 4 + 4 + 4;
+
+	private static final String TEXT_HEADER = "# hydraulic system";
+
+	private TopologyFile() {}
+
+	/**
+	 * Writes the topology of a system in the binary format
+	 *
+	 * @param system the system
+	 * @param file the destination file, replaced if existing
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(HSystem system, Path file) throws IOException {
+		Element[] elements = system.getElements();
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		try(FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			Encoder out = new Encoder(channel);
+
+			out.beginHeader();
+			out.putVarint(elements.length);
+			out.endHeader();
+
+			for(int first=0; first<elements.length; first+=BLOCK_RECORDS) {
+				int count = Math.min(BLOCK_RECORDS, elements.length - first);
+				out.beginBlock(ELEMENTS, first);
+				for(int i=first; i<first+count; ++i) {
+					out.putElement(system, elements[i]);
+				}
+				out.endBlock(count);
+			}
+			out.beginBlock(END, 0);
+			out.endBlock(0);
+			channel.force(false);
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Loads a system from a file in the binary format
+	 *
+	 * @param file the file
+	 * @return the system
+	 * @throws StreamCorruptedException if the file is not a valid topology, or it is corrupted
+	 * @throws IOException if the file cannot be read
+	 */
+	public static HSystem read(Path file) throws IOException {
+		MappedByteBuffer map;
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if(channel.size() > Integer.MAX_VALUE) {
+				throw new StreamCorruptedException("Topology too large: " + channel.size() + " bytes");
+			}
+			map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		try {
+			return new Decoder(map).read();
+		} catch(BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+			StreamCorruptedException error = new StreamCorruptedException("Truncated or malformed topology " + file);
+			error.initCause(e);
+			throw error;
+		}
+	}
+
+	/**
+	 * Writes the topology of a system in the text format
+	 *
+	 * @param system the system
+	 * @param file the destination file, replaced if existing
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void writeText(HSystem system, Path file) throws IOException {
+		Element[] elements = system.getElements();
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		try(BufferedWriter out = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+			out.write(TEXT_HEADER);
+			out.newLine();
+			for(Element e : elements) {
+				out.write(kindName(kind(e)));
+				out.write(' ');
+				out.write(Double.toString(e.getMaxFlow()));
+				out.write(' ');
+				if(e instanceof Source) {
+					out.write(Double.toString(((Source)e).getFlow()));
+				} else if(e instanceof Tap) {
+					out.write(((Tap)e).isOpen() ? "open" : "closed");
+				} else if(e instanceof Multisplit && ((Multisplit)e).getProportions() != null) {
+					double[] proportions = ((Multisplit)e).getProportions();
+					for(int i=0; i<proportions.length; ++i) {
+						if(i > 0) out.write(',');
+						out.write(Double.toString(proportions[i]));
+					}
+				} else {
+					out.write('-');
+				}
+				out.write(' ');
+				if(e instanceof Sink) {
+					out.write('-');
+				} else {
+					for(int i=0; i<e.outputCount(); ++i) {
+						if(i > 0) out.write(',');
+						int target = target(system, e.output(i));
+						if(target < 0) out.write('*');
+						else out.write(Integer.toString(target));
+					}
+				}
+				out.write(' ');
+				out.write(e.getName());
+				out.newLine();
+			}
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Loads a system from a file in the text format
+	 *
+	 * @param file the file
+	 * @return the system
+	 * @throws StreamCorruptedException if a line is malformed
+	 * @throws IOException if the file cannot be read
+	 */
+	public static HSystem readText(Path file) throws IOException {
+		Loader loader = new Loader();
+		try(BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			int number = 0;
+			for(String line = in.readLine(); line != null; line = in.readLine()) {
+				number++;
+				if(line.isEmpty() || line.startsWith("#")) continue;
+				try {
+					String[] fields = line.split(" ", 5);
+					if(fields.length < 5) throw new IllegalArgumentException("Missing fields");
+					byte kind = kindOf(fields[0]);
+					Element e = loader.create(kind, fields[4], Double.parseDouble(fields[1]),
+							fields[3].equals("-") ? 0 : fields[3].split(",").length);
+					String parameter = fields[2];
+					if(kind == SOURCE) {
+						((Source)e).setFlow(Double.parseDouble(parameter));
+					} else if(kind == TAP) {
+						if(! parameter.equals("open") && ! parameter.equals("closed")) {
+							throw new IllegalArgumentException("Invalid tap state " + parameter);
+						}
+						((Tap)e).setOpen(parameter.equals("open"));
+					} else if(kind == MULTISPLIT && ! parameter.equals("-")) {
+						String[] values = parameter.split(",");
+						double[] proportions = new double[values.length];
+						for(int i=0; i<values.length; ++i) {
+							proportions[i] = Double.parseDouble(values[i]);
+						}
+						((Multisplit)e).setProportions(proportions);
+					}
+					if(kind != SINK) {
+						String[] outputs = fields[3].split(",");
+						for(int i=0; i<outputs.length; ++i) {
+							loader.output(i, outputs[i].equals("*") ? -1 : Integer.parseInt(outputs[i]));
+						}
+					}
+				} catch(IllegalArgumentException e) {
+					StreamCorruptedException error = new StreamCorruptedException("Malformed line " + number + ": " + line);
+					error.initCause(e);
+					throw error;
+				}
+			}
+		}
+		try {
+			return loader.connect();
+		} catch(IllegalArgumentException e) {
+			StreamCorruptedException error = new StreamCorruptedException("Malformed topology " + file);
+			error.initCause(e);
+			throw error;
+		}
+	}
+
+	private static byte kind(Element e) {
+		if(e instanceof Source) return SOURCE;
+		if(e instanceof Tap) return TAP;
+		if(e instanceof Multisplit) return MULTISPLIT;
+		if(e instanceof Split) return SPLIT;
+		if(e instanceof Sink) return SINK;
+		throw new IllegalArgumentException("Unknown element " + e.getName());
+	}
+
+	private static String kindName(byte kind) {
+		switch(kind) {
+		case SOURCE: return "Source";
+		case TAP: return "Tap";
+		case SPLIT: return "Split";
+		case MULTISPLIT: return "Multisplit";
+		default: return "Sink";
+		}
+	}
+
+	private static byte kindOf(String name) {
+		switch(name) {
+		case "Source": return SOURCE;
+		case "Tap": return TAP;
+		case "Split": return SPLIT;
+		case "Multisplit": return MULTISPLIT;
+		case "Sink": return SINK;
+		default: throw new IllegalArgumentException("Unknown kind " + name);
+		}
+	}
+
+	/**
+	 * @return the index of an element connected to an output, or {@code -1}
+	 */
+	private static int target(HSystem system, Element output) {
+		return output != null && output.getSystem() == system ? output.getIndex() : -1;
+	}
+
+	/**
+	 * Creates the elements of a system, then connects them once all of them exist
+	 */
+	private static final class Loader {
+		private final HSystem system = new HSystem();
+		private Element[] elements = new Element[1024];
+		private int size;
+		// outputs of all the elements, first[i] is the position of the first one of element i
+		private int[] first = new int[1024];
+		private int[] targets = new int[1024];
+		private int numTargets;
+
+		Element create(byte kind, String name, double maxFlow, int numOutputs) {
+			Element e;
+			switch(kind) {
+			case SOURCE: e = new Source(name); break;
+			case TAP: e = new Tap(name); break;
+			case SPLIT: e = new Split(name); break;
+			case MULTISPLIT: e = new Multisplit(name, numOutputs); break;
+			case SINK: e = new Sink(name); break;
+			default: throw new IllegalArgumentException("Unknown element kind " + kind);
+			}
+			e.setMaxFlow(maxFlow);
+			system.addElement(e);
+			if(size == elements.length) {
+				elements = Arrays.copyOf(elements, size * 2);
+				first = Arrays.copyOf(first, size * 2);
+			}
+			elements[size] = e;
+			first[size] = numTargets;
+			size++;
+			return e;
+		}
+
+		/**
+		 * Records the connection of an output of the last created element
+		 *
+		 * @param index the output index
+		 * @param target the index of the connected element, or {@code -1}
+		 */
+		void output(int index, int target) {
+			if(index >= elements[size - 1].outputCount()) {
+				throw new IllegalArgumentException("Too many outputs for " + elements[size - 1].getName());
+			}
+			if(numTargets == targets.length) targets = Arrays.copyOf(targets, numTargets * 2);
+			targets[numTargets++] = target;
+		}
+
+		HSystem connect() {
+			for(int i=0; i<size; ++i) {
+				int end = i + 1 < size ? first[i + 1] : numTargets;
+				for(int k=first[i]; k<end; ++k) {
+					int target = targets[k];
+					if(target < -1 || target >= size) throw new IllegalArgumentException("Invalid connection " + target);
+					if(target >= 0) elements[i].connect(elements[target], k - first[i]);
+				}
+			}
+			return system;
+		}
+	}
+
+	/**
+	 * Encodes the header and the blocks into a reusable buffer,
+	 * then writes each of them followed by its checksum.
+	 */
+	private static final class Encoder {
+		private final FileChannel channel;
+		private final CRC32 crc = new CRC32();
+		private ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+
+		Encoder(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		void beginHeader() {
+			buffer.clear();
+			buffer.putInt(MAGIC);
+			buffer.putShort(VERSION);
+			buffer.putShort((short)0); // reserved
+		}
+
+		void endHeader() throws IOException {
+			flushWithChecksum();
+		}
+
+		void beginBlock(byte kind, int first) {
+			buffer.clear();
+			buffer.put(kind);
+			buffer.putInt(first);
+			buffer.putInt(0); // count, filled in by endBlock
+			buffer.putInt(0); // length, filled in by endBlock
+		}
+
+		void endBlock(int count) throws IOException {
+			buffer.putInt(5, count);
+			buffer.putInt(9, buffer.position() - BLOCK_HEADER);
+			flushWithChecksum();
+		}
+
+		/**
+		 * kind, name, maximum flow, parameters of the kind, outputs (index + 1, or 0 if unconnected)
+		 */
+		void putElement(HSystem system, Element e) {
+			byte kind = kind(e);
+			putByte(kind);
+			putString(e.getName());
+			putDouble(e.getMaxFlow());
+			switch(kind) {
+			case SOURCE:
+				putDouble(((Source)e).getFlow());
+				break;
+			case TAP:
+				putByte((byte)(((Tap)e).isOpen() ? 1 : 0));
+				break;
+			case MULTISPLIT:
+				double[] proportions = ((Multisplit)e).getProportions();
+				putVarint(e.outputCount());
+				putVarint(proportions == null ? 0 : proportions.length + 1);
+				if(proportions != null) {
+					for(double p : proportions) putDouble(p);
+				}
+				break;
+			default:
+			}
+			if(kind != SINK) {
+				for(int i=0; i<e.outputCount(); ++i) {
+					putVarint(target(system, e.output(i)) + 1);
+				}
+			}
+		}
+
+		private void flushWithChecksum() throws IOException {
+			ensure(4);
+			buffer.flip();
+			crc.reset();
+			crc.update(buffer.duplicate());
+			buffer.limit(buffer.limit() + 4);
+			buffer.putInt(buffer.limit() - 4, (int)crc.getValue());
+			while(buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		}
+
+		void putVarint(int value) {
+			ensure(5);
+			while((value & ~0x7F) != 0) {
+				buffer.put((byte)((value & 0x7F) | 0x80));
+				value >>>= 7;
+			}
+			buffer.put((byte)value);
+		}
+
+		void putString(String s) {
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			putVarint(bytes.length);
+			ensure(bytes.length);
+			buffer.put(bytes);
+		}
+
+		void putByte(byte value) {
+			ensure(1);
+			buffer.put(value);
+		}
+
+		void putDouble(double value) {
+			ensure(8);
+			buffer.putDouble(value);
+		}
+
+		private void ensure(int bytes) {
+			if(buffer.remaining() < bytes) {
+				ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+				buffer.flip();
+				larger.put(buffer);
+				buffer = larger;
+			}
+		}
+	}
+
+	/**
+	 * Verifies and decodes the content of a mapped topology
+	 */
+	private static final class Decoder {
+		private final ByteBuffer in;
+		private final CRC32 crc = new CRC32();
+		private final Loader loader = new Loader();
+		private byte[] chars = new byte[64];
+		private int numElements;
+		private int created;
+
+		Decoder(ByteBuffer in) {
+			this.in = in;
+		}
+
+		HSystem read() throws IOException {
+			int start = in.position();
+			if(in.getInt() != MAGIC) throw new StreamCorruptedException("Not a hydraulic system topology");
+			short version = in.getShort();
+			if(version < 1 || version > VERSION) throw new StreamCorruptedException("Unsupported topology version " + version);
+			in.getShort(); // reserved
+			numElements = getVarint();
+			verify(start, "header");
+
+			while(true) {
+				start = in.position();
+				byte kind = in.get();
+				int first = in.getInt();
+				int count = in.getInt();
+				int length = in.getInt();
+				if(first < 0 || count < 0 || length < 0 || length > in.remaining() - 4) {
+					throw new StreamCorruptedException("Malformed block at offset " + start);
+				}
+				int payload = in.position();
+				in.position(payload + length);
+				verify(start, "block at offset " + start);
+				in.position(payload);
+
+				if(kind == END) break;
+				if(kind != ELEMENTS) throw new StreamCorruptedException("Unknown block kind " + kind);
+				expect(first == created && first + count <= numElements);
+				for(int i=0; i<count; ++i) {
+					getElement();
+				}
+				if(in.position() != payload + length) {
+					throw new StreamCorruptedException("Inconsistent block at offset " + start);
+				}
+				in.position(payload + length + 4);
+			}
+
+			expect(created == numElements);
+			return loader.connect();
+		}
+
+		private void getElement() throws StreamCorruptedException {
+			byte kind = in.get();
+			String name = getString();
+			double maxFlow = in.getDouble();
+			Element e;
+			switch(kind) {
+			case SOURCE:
+				e = loader.create(kind, name, maxFlow, 1);
+				((Source)e).setFlow(in.getDouble());
+				break;
+			case TAP:
+				e = loader.create(kind, name, maxFlow, 1);
+				((Tap)e).setOpen(in.get() != 0);
+				break;
+			case MULTISPLIT:
+				e = loader.create(kind, name, maxFlow, getVarint());
+				int numProportions = getVarint();
+				if(numProportions > 0) {
+					double[] proportions = new double[numProportions - 1];
+					for(int i=0; i<proportions.length; ++i) {
+						proportions[i] = in.getDouble();
+					}
+					((Multisplit)e).setProportions(proportions);
+				}
+				break;
+			case SPLIT:
+			case SINK:
+				e = loader.create(kind, name, maxFlow, 2);
+				break;
+			default:
+				throw new StreamCorruptedException("Unknown element kind " + kind);
+			}
+			created++;
+			if(kind != SINK) {
+				for(int i=0; i<e.outputCount(); ++i) {
+					loader.output(i, getVarint() - 1);
+				}
+			}
+		}
+
+		/**
+		 * Checks the checksum that follows the bytes from {@code start} to the current position
+		 */
+		private void verify(int start, String what) throws StreamCorruptedException {
+			int end = in.position();
+			ByteBuffer range = in.duplicate();
+			range.position(start).limit(end);
+			crc.reset();
+			crc.update(range);
+			if(in.getInt() != (int)crc.getValue()) {
+				throw new StreamCorruptedException("Checksum mismatch in " + what);
+			}
+		}
+
+		private static void expect(boolean condition) throws StreamCorruptedException {
+			if(! condition) throw new StreamCorruptedException("Inconsistent topology content");
+		}
+
+		private int getVarint() throws StreamCorruptedException {
+			int value = 0;
+			for(int shift=0; shift<32; shift+=7) {
+				byte b = in.get();
+				value |= (b & 0x7F) << shift;
+				if(b >= 0) return value;
+			}
+			throw new StreamCorruptedException("Malformed number");
+		}
+
+		private String getString() throws StreamCorruptedException {
+			int length = getVarint();
+			if(length < 0 || length > in.remaining()) throw new StreamCorruptedException("Malformed string");
+			if(chars.length < length) chars = new byte[Math.max(length, chars.length * 2)];
+			in.get(chars, 0, length);
+			return new String(chars, 0, length, StandardCharsets.UTF_8);
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package it.polito.oop.test;
+
+import hydraulic.*;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Systems and measurements shared by the tests of large systems
+ */
+final class Fixtures {
+
+	private static final com.sun.management.ThreadMXBean threads =
+			(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	private Fixtures() {}
+
+	/**
+	 * Builds a tree of splits, multisplits and taps, with sinks as leaves.
+	 * The taps at depths 1, 7, 13, ... are open, the others closed.
+	 */
+	static Element tree(HSystem s, String name, int depth) {
+		if(depth == 0) {
+			Sink sink = new Sink(name);
+			s.addElement(sink);
+			return sink;
+		}
+		Element elem;
+		switch(depth % 3) {
+		case 0:
+			Multisplit ms = new Multisplit(name, 3);
+			ms.setProportions(0.5, 0.3, 0.2);
+			elem = ms;
+			break;
+		case 1:
+			Tap tap = new Tap(name);
+			tap.setOpen(depth % 2 == 1);
+			elem = tap;
+			break;
+		default:
+			elem = new Split(name);
+		}
+		s.addElement(elem);
+		Element[] outputs = elem.getOutputs();
+		for(int i=0; i<outputs.length; ++i) {
+			elem.connect(tree(s, name + "." + i, depth - 1), i);
+		}
+		return elem;
+	}
+
+	/**
+	 * Accounting of the memory allocated by the current thread,
+	 * which unlike the used heap does not depend on when the garbage collector runs
+	 *
+	 * @return total number of bytes allocated so far by the current thread
+	 */
+	static long allocatedBytes() {
+		return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
@@ -0,0 +1,114 @@
+package it.polito.oop.test;
+
+import hydraulic.*;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+
+public class TestElementIndex {
+
+	@Test
+	public void testGetElement() {
+		HSystem s = new HSystem();
+		Source src = new Source("Src");
+		Tap tap = new Tap("Tap");
+		Sink sink = new Sink("Sink");
+		s.addElement(src);
+		s.addElement(tap);
+		s.addElement(sink);
+		src.connect(tap);
+		tap.connect(sink);
+
+		assertSame(tap, s.getElement("Tap"));
+		assertNull(s.getElement("Missing"));
+
+		assertTrue(s.deleteElement("Tap"));
+		assertNull("Deleted element should not be found", s.getElement("Tap"));
+		assertFalse("Missing element cannot be deleted", s.deleteElement("Tap"));
+		assertSame(sink, s.getElement("Sink"));
+	}
+
+	@Test
+	public void testDuplicateNames() {
+		HSystem s = new HSystem();
+		Source src = new Source("Src");
+		Tap first = new Tap("A");
+		Tap second = new Tap("A");
+		Sink sink = new Sink("Sink");
+		s.addElement(src);
+		s.addElement(first);
+		s.addElement(second);
+		s.addElement(sink);
+		src.connect(first);
+		first.connect(second);
+		second.connect(sink);
+
+		assertSame("The first element added should be found", first, s.getElement("A"));
+		assertTrue(s.deleteElement("A"));
+		assertSame("The other element with the same name should be found", second, s.getElement("A"));
+		assertTrue(s.deleteElement("A"));
+		assertNull(s.getElement("A"));
+		assertSame(sink, src.getOutput());
+	}
+
+	@Test
+	public void testOrderAfterDelete() {
+		HSystem s = new HSystem();
+		Source src = new Source("Src");
+		s.addElement(src);
+		Element last = src;
+		for(int i=0; i<30; ++i) {
+			Tap tap = new Tap("Tap" + i);
+			tap.setOpen(true);
+			s.addElement(tap);
+			last.connect(tap);
+			last = tap;
+		}
+		Sink sink = new Sink("Sink");
+		s.addElement(sink);
+		last.connect(sink);
+
+		for(int i=0; i<30; i+=3) {
+			assertTrue(s.deleteElement("Tap" + i));
+		}
+		s.addElement(new Sink("Extra"));
+
+		Element[] elements = s.getElements();
+		assertEquals("Wrong number of elements after delete", 23, elements.length);
+		assertSame(src, elements[0]);
+		assertEquals("Tap1", elements[1].getName());
+		assertEquals("Tap29", elements[20].getName());
+		assertSame(sink, elements[21]);
+		assertEquals("Extra", elements[22].getName());
+
+		StoreObserver obs = new StoreObserver();
+		s.simulate(obs);
+		assertTrue("Missing simulation of 'Tap28'", obs.contains("Tap28"));
+		assertFalse("Deleted element should not be simulated", obs.contains("Tap27"));
+		s.simulate(event -> assertSame(elements[event.getElement()].getName(), event.getName()), false);
+	}
+
+	@Test
+	public void testManyEdits() {
+		final int numElements = 200_000;
+		HSystem s = new HSystem();
+		Source src = new Source("Src");
+		s.addElement(src);
+		Element last = src;
+		for(int i=0; i<numElements; ++i) {
+			Tap tap = new Tap("Tap" + i);
+			s.addElement(tap);
+			last.connect(tap);
+			last = tap;
+		}
+
+		for(int i=0; i<numElements; i+=2) {
+			assertTrue(s.deleteElement("Tap" + i));
+			assertNotNull(s.getElement("Tap" + (i+1)));
+		}
+
+		assertEquals(numElements / 2 + 1, s.getElements().length);
+		assertSame(s.getElement("Tap1"), src.getOutput());
+	}
+}
@@ -0,0 +1,176 @@
+package it.polito.oop.test;
+
+import hydraulic.*;
+import static org.junit.Assert.*;
+import static it.polito.oop.test.Fixtures.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class TestFlowGains {
+
+	private HSystem s;
+	private Source src;
+	private Tap tap;
+	private Tap tap2;
+	private Multisplit ms;
+	private Sink[] sink;
+
+	@Before
+	public void setUp() {
+		s = new HSystem();
+		src = new Source("Src");
+		tap = new Tap("Tap");
+		Split t = new Split("T");
+		ms = new Multisplit("MS", 3);
+		Source src2 = new Source("Src2");
+		tap2 = new Tap("Tap2");
+		s.addElement(src);
+		s.addElement(tap);
+		s.addElement(t);
+		s.addElement(ms);
+		s.addElement(src2);
+		s.addElement(tap2);
+		String[] sinks = {"Sink A", "Sink B", "Sink C", "Sink D", "Sink E"};
+		sink = new Sink[sinks.length];
+		for(int i=0; i<sinks.length; ++i) {
+			sink[i] = new Sink(sinks[i]);
+			s.addElement(sink[i]);
+		}
+
+		src.connect(tap);
+		tap.connect(t);
+		t.connect(ms, 0);
+		t.connect(sink[0], 1);
+		ms.connect(sink[1], 0);
+		ms.connect(sink[2], 1);
+		ms.connect(sink[3], 2);
+		src2.connect(tap2);
+		tap2.connect(sink[4]);
+
+		src.setFlow(100.0);
+		src2.setFlow(40.0);
+		tap.setOpen(true);
+		tap2.setOpen(false);
+		ms.setProportions(0.5, 0.3, 0.2);
+	}
+
+	private void assertSameAsSimulation(FlowGains gains) {
+		StoreObserver obs = new StoreObserver();
+		s.simulate(obs);
+		double[] flows = gains.sinkFlows(gains.sourceFlows());
+		Sink[] sinks = gains.getSinks();
+		assertEquals(sink.length, sinks.length);
+		for(int k=0; k<sinks.length; ++k) {
+			assertEquals("Wrong flow of " + sinks[k].getName(), obs.inFlowOf(sinks[k].getName()), flows[k], 0.001);
+		}
+		for(Element e : s.getElements()) {
+			double expected = e instanceof Source ? obs.outFlowOf(e.getName()) : obs.inFlowOf(e.getName());
+			assertEquals("Wrong flow of " + e.getName(), expected, gains.flowOf(e, gains.sourceFlows()), 0.001);
+		}
+	}
+
+	@Test
+	public void testGains() {
+		FlowGains gains = s.gains();
+		assertEquals(2, gains.getSources().length);
+		assertEquals(0, gains.sourceOf(sink[3]));
+		assertEquals(1, gains.sourceOf(sink[4]));
+		assertEquals(0.15, gains.gainOf(sink[2]), 0.001);
+		assertEquals("Closed tap should have no gain", 0.0, gains.gainOf(sink[4]), 0.001);
+		assertEquals(1.0, gains.gainOf(src), 0.001);
+
+		double[] flows = gains.sinkFlows(new double[] {200.0, 10.0});
+		assertArrayEquals(new double[] {100.0, 50.0, 30.0, 20.0, 0.0}, flows, 0.001);
+		assertSameAsSimulation(gains);
+	}
+
+	@Test
+	public void testChanges() {
+		FlowGains gains = s.gains();
+		gains.sinkFlows(gains.sourceFlows());
+
+		tap2.setOpen(true);
+		assertEquals(1.0, gains.gainOf(sink[4]), 0.001);
+		ms.setProportions(0.1, 0.1, 0.8);
+		tap.setOpen(false);
+		tap.setOpen(true);
+		assertSameAsSimulation(gains);
+
+		Sink spare = new Sink("Spare");
+		s.addElement(spare);
+		ms.connect(spare, 1); // Sink C is no longer reached
+		assertEquals(-1, gains.sourceOf(sink[2]));
+		assertEquals(5.0, gains.flowOf(spare, gains.sourceFlows()), 0.001);
+		assertTrue(Double.isNaN(gains.flowOf(sink[2], gains.sourceFlows())));
+
+		tap.setOpen(false);
+		assertEquals(0.0, gains.flowOf(spare, gains.sourceFlows()), 0.001);
+		assertTrue(s.deleteElement("Tap"));
+		assertEquals(5.0, gains.flowOf(spare, gains.sourceFlows()), 0.001);
+		src.setFlow(50.0);
+		assertEquals(25.0, gains.flowOf(sink[0], gains.sourceFlows()), 0.001);
+	}
+
+	@Test
+	public void testRepeatedChanges() {
+		FlowGains gains = s.gains();
+		gains.sinkFlows(gains.sourceFlows());
+		for(int i=0; i<1_000; ++i) { // warm up
+			tap.setOpen(i % 2 == 0);
+		}
+
+		long before = allocatedBytes();
+		for(int i=0; i<1_000_000; ++i) {
+			tap.setOpen(i % 2 == 0);
+			tap2.setOpen(i % 2 == 1);
+		}
+		long allocated = allocatedBytes() - before;
+		assertTrue("Changes of the same elements should be recorded once, allocated " + allocated + " bytes",
+				allocated < 10_000);
+		assertSameAsSimulation(gains);
+	}
+
+	@Test
+	public void testLargeSystem() {
+		final int numLevels = 17; // 2^17 sinks
+		HSystem large = new HSystem();
+		Source source = new Source("Src");
+		source.setFlow(1024.0);
+		Tap valve = new Tap("Valve");
+		valve.setOpen(true);
+		large.addElement(source);
+		large.addElement(valve);
+		source.connect(valve);
+		Split root = new Split("T");
+		large.addElement(root);
+		valve.connect(root);
+		Element[] level = {root};
+		for(int d=1; d<=numLevels; ++d) {
+			Element[] below = new Element[level.length * 2];
+			for(int i=0; i<below.length; ++i) {
+				below[i] = d == numLevels ? new Sink("S" + i) : new Split("T" + d + "." + i);
+				large.addElement(below[i]);
+				level[i / 2].connect(below[i], i % 2);
+			}
+			level = below;
+		}
+
+		FlowGains gains = large.gains();
+		double[] sourceFlows = gains.sourceFlows();
+		double[] flows = new double[gains.getSinks().length];
+		for(int i=0; i<100; ++i) {
+			sourceFlows[0] = i;
+			gains.sinkFlows(sourceFlows, flows);
+		}
+		assertEquals(99.0 / flows.length, flows[flows.length - 1], 1e-9);
+
+		valve.setOpen(false);
+		gains.sinkFlows(sourceFlows, flows);
+		assertEquals(0.0, flows[0], 0.0);
+		valve.setOpen(true);
+		gains.sinkFlows(sourceFlows, flows);
+		assertEquals(99.0 / flows.length, flows[0], 1e-9);
+	}
+}
@@ -0,0 +1,117 @@
+package it.polito.oop.test;
+
+import hydraulic.*;
+import static org.junit.Assert.*;
+import static it.polito.oop.test.Fixtures.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class TestFlowObserver {
+
+	private HSystem s;
+	private Multisplit ms;
+
+	@Before
+	public void setUp() {
+		s = new HSystem();
+		Source src = new Source("Src");
+		Tap tap = new Tap("Tap");
+		Split t = new Split("T");
+		ms = new Multisplit("MS", 3);
+		Sink sinkA = new Sink("Sink A");
+		Sink sinkB = new Sink("Sink B");
+		Sink sinkC = new Sink("Sink C");
+		Sink sinkD = new Sink("Sink D");
+		s.addElement(src);
+		s.addElement(tap);
+		s.addElement(t);
+		s.addElement(ms);
+		s.addElement(sinkA);
+		s.addElement(sinkB);
+		s.addElement(sinkC);
+		s.addElement(sinkD);
+
+		src.connect(tap);
+		tap.connect(t);
+		t.connect(ms, 0);
+		t.connect(sinkA, 1);
+		ms.connect(sinkB, 0);
+		ms.connect(sinkC, 1);
+		ms.connect(sinkD, 2);
+
+		src.setFlow(100.0);
+		tap.setOpen(true);
+		ms.setProportions(0.5, 0.3, 0.2);
+		for(Element e : s.getElements()) {
+			e.setMaxFlow(60.0);
+		}
+	}
+
+	@Test
+	public void testEvents() {
+		Element[] elements = s.getElements();
+		List<String> events = new ArrayList<>();
+		s.simulate(event -> {
+			assertSame("Wrong element index", elements[event.getElement()].getName(), event.getName());
+			StringBuilder flows = new StringBuilder();
+			for(int i=0; i<event.getOutFlowCount(); ++i) {
+				flows.append(' ').append(event.getOutFlow(i));
+			}
+			events.add(event.getLevel() + " " + event.getName() + " " + event.getInFlow() + flows
+					+ (event.getLevel() == SimulationObserver.Level.Error ? " max " + event.getMaxFlow() : ""));
+		}, true);
+
+		assertEquals("Wrong number of notifications", 10, events.size());
+		assertEquals("Status Src NaN 100.0", events.get(0));
+		assertEquals("Error Tap 100.0 max 60.0", events.get(1));
+		assertEquals("Status MS 50.0 25.0 15.0 10.0", events.get(5));
+		assertEquals("Status Sink D 10.0 NaN", events.get(8));
+	}
+
+	@Test
+	public void testAdapter() {
+		StoreObserver expected = new StoreObserver();
+		s.simulate(expected, true);
+
+		StoreObserver obs = new StoreObserver();
+		s.simulate(FlowObserver.adapt(obs), true);
+		assertEquals(expected.getErrorCount(), obs.getErrorCount());
+		for(Element e : s.getElements()) {
+			String name = e.getName();
+			assertEquals("Wrong input flow of " + name, expected.inFlowOf(name), obs.inFlowOf(name), 0.001);
+			assertArrayEquals("Wrong output flows of " + name, expected.outFlowsOf(name), obs.outFlowsOf(name), 0.001);
+		}
+	}
+
+	@Test
+	public void testDeleteUpdatesIndex() {
+		s.deleteElement("Tap");
+		Element[] elements = s.getElements();
+		s.simulate(event -> assertSame(elements[event.getElement()].getName(), event.getName()), false);
+	}
+
+	@Test
+	public void testNoAllocation() {
+		double[] total = new double[1];
+		FlowObserver observer = event -> {
+			for(int i=0; i<event.getOutFlowCount(); ++i) {
+				total[0] += event.getOutFlow(i);
+			}
+		};
+		for(int i=0; i<100_000; ++i) { // warm up
+			s.simulate(observer, true);
+		}
+
+		long before = allocatedBytes();
+		for(int i=0; i<100_000; ++i) {
+			s.simulate(observer, true);
+		}
+		long allocated = allocatedBytes() - before;
+		assertTrue("Simulations should not allocate memory, allocated " + allocated + " bytes", allocated < 10_000);
+	}
+}
@@ -0,0 +1,163 @@
+package it.polito.oop.test;
+
+import hydraulic.*;
+import static org.junit.Assert.*;
+import static it.polito.oop.test.Fixtures.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class TestFlowPlan {
+
+	private HSystem s;
+	private Source src;
+	private Tap tap;
+	private Multisplit ms;
+
+	@Before
+	public void setUp() {
+		s = new HSystem();
+		src = new Source("Src");
+		tap = new Tap("Tap");
+		Split t = new Split("T");
+		ms = new Multisplit("MS", 3);
+		Source src2 = new Source("Src2");
+		Tap tap2 = new Tap("Tap2");
+		s.addElement(src);
+		s.addElement(tap);
+		s.addElement(t);
+		s.addElement(ms);
+		s.addElement(src2);
+		s.addElement(tap2);
+		String[] sinks = {"Sink A", "Sink B", "Sink C", "Sink D", "Sink E"};
+		Sink[] sink = new Sink[sinks.length];
+		for(int i=0; i<sinks.length; ++i) {
+			sink[i] = new Sink(sinks[i]);
+			s.addElement(sink[i]);
+		}
+
+		src.connect(tap);
+		tap.connect(t);
+		t.connect(ms, 0);
+		t.connect(sink[0], 1);
+		ms.connect(sink[1], 0);
+		ms.connect(sink[2], 1);
+		ms.connect(sink[3], 2);
+		src2.connect(tap2);
+		tap2.connect(sink[4]);
+
+		src.setFlow(100.0);
+		src2.setFlow(40.0);
+		tap.setOpen(true);
+		tap2.setOpen(false);
+		ms.setProportions(0.5, 0.3, 0.2);
+	}
+
+	@Test
+	public void testSameAsSimulation() {
+		FlowPlan plan = s.compile();
+		assertEquals("Wrong number of elements", 11, plan.size());
+		assertEquals(2, plan.getSources());
+		assertEquals(2, plan.getTaps());
+
+		double[] flows = plan.run(plan.sourceFlows(), plan.tapStates());
+		StoreObserver obs = new StoreObserver();
+		s.simulate(obs);
+		for(int i=0; i<plan.size(); ++i) {
+			String name = plan.getElement(i).getName();
+			double expected = plan.getElement(i) instanceof Source ? obs.outFlowOf(name) : obs.inFlowOf(name);
+			assertEquals("Wrong flow of " + name, expected, flows[i], 0.001);
+		}
+	}
+
+	@Test
+	public void testScenarios() {
+		FlowPlan plan = s.compile();
+		double[] flows = new double[plan.size()];
+
+		plan.run(new double[] {200.0, 10.0}, new boolean[] {true, true}, flows);
+		assertEquals(100.0, flows[plan.indexOf("Sink A")], 0.001);
+		assertEquals(30.0, flows[plan.indexOf("Sink C")], 0.001);
+		assertEquals(10.0, flows[plan.indexOf("Sink E")], 0.001);
+
+		plan.run(new double[] {200.0, 10.0}, new boolean[] {false, true}, flows);
+		assertEquals("Closed tap should stop the flow", 0.0, flows[plan.indexOf("MS")], 0.001);
+		assertEquals("Closed tap should still receive the flow", 200.0, flows[plan.indexOf("Tap")], 0.001);
+
+		ms.setProportions(0.1, 0.1, 0.8);
+		plan.run(new double[] {200.0, 10.0}, new boolean[] {true, true}, flows);
+		assertEquals("The plan should not change after compilation", 30.0, flows[plan.indexOf("Sink C")], 0.001);
+		assertEquals(-1, plan.indexOf("Missing"));
+	}
+
+	@Test
+	public void testBatch() {
+		FlowPlan plan = s.compile();
+		final int n = 100;
+		Scenarios scenarios = new Scenarios(plan, n);
+		int msIndex = plan.indexOf("MS");
+		for(int k=0; k<n; ++k) {
+			scenarios.setSourceFlow(k, 0, 10.0 * k);
+			scenarios.setTapOpen(k, 0, k % 3 != 0);
+			scenarios.setTapOpen(k, 1, k % 2 == 0);
+			if(k % 5 == 0) scenarios.setProportions(k, msIndex, 0.2, 0.2, 0.6);
+		}
+		BatchResult result = s.simulateBatch(scenarios, false);
+		assertEquals(n, result.getScenarios());
+		assertEquals(0, result.getViolationCount());
+
+		double[] flows = new double[plan.size()];
+		for(int k=0; k<n; ++k) {
+			if(k % 5 == 0) ms.setProportions(0.2, 0.2, 0.6);
+			else ms.setProportions(0.5, 0.3, 0.2);
+			s.compile().run(new double[] {10.0 * k, 40.0}, new boolean[] {k % 3 != 0, k % 2 == 0}, flows);
+			for(int i=0; i<plan.size(); ++i) {
+				assertEquals("Wrong flow of " + plan.getElement(i).getName() + " in scenario " + k,
+						flows[i], result.getFlow(i, k), 0.001);
+			}
+		}
+		assertEquals(30.0, result.getFlows(plan.indexOf("Sink D"))[10], 0.001);
+	}
+
+	@Test
+	public void testBatchMaxFlow() {
+		for(Element e : s.getElements()) {
+			e.setMaxFlow(45.0);
+		}
+		FlowPlan plan = s.compile();
+		Scenarios scenarios = new Scenarios(plan, 3);
+		scenarios.setTapOpen(1, 0, false);
+		scenarios.setSourceFlow(2, 0, 40.0);
+		BatchResult result = s.simulateBatch(scenarios, true);
+
+		StoreObserver obs = new StoreObserver();
+		s.simulate(obs, true);
+		assertEquals("Wrong number of violations", obs.getErrorCount(), result.getViolationCount(0));
+		for(int i : result.getViolations(0)) {
+			assertTrue("Unexpected violation for " + plan.getElement(i).getName(),
+					obs.containsError(plan.getElement(i).getName()));
+		}
+		assertArrayEquals("Closed tap should limit the violations to the tap",
+				new int[] {plan.indexOf("Tap")}, result.getViolations(1));
+		assertEquals(0, result.getViolationCount(2));
+	}
+
+	@Test
+	public void testNoAllocation() {
+		FlowPlan plan = s.compile();
+		double[] flows = new double[plan.size()];
+		double[] sourceFlows = plan.sourceFlows();
+		boolean[] tapStates = plan.tapStates();
+		for(int i=0; i<100_000; ++i) { // warm up
+			plan.run(sourceFlows, tapStates, flows);
+		}
+
+		long before = allocatedBytes();
+		for(int i=0; i<100_000; ++i) {
+			plan.run(sourceFlows, tapStates, flows);
+		}
+		long allocated = allocatedBytes() - before;
+		assertTrue("Runs should not allocate memory, allocated " + allocated + " bytes", allocated < 10_000);
+	}
+}
@@ -0,0 +1,223 @@
+package it.polito.oop.test;
+
+import hydraulic.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class TestIncrementalSimulation {
+
+	private HSystem s;
+	private Source src;
+	private Tap tap;
+	private Tap tap2;
+	private Multisplit ms;
+
+	@Before
+	public void setUp() {
+		s = new HSystem();
+		src = new Source("Src");
+		tap = new Tap("Tap");
+		Split t = new Split("T");
+		ms = new Multisplit("MS", 3);
+		tap2 = new Tap("Tap2");
+		s.addElement(src);
+		s.addElement(tap);
+		s.addElement(t);
+		s.addElement(ms);
+		s.addElement(tap2);
+		String[] sinks = {"Sink A", "Sink B", "Sink C", "Sink D"};
+		Sink[] sink = new Sink[sinks.length];
+		for(int i=0; i<sinks.length; ++i) {
+			sink[i] = new Sink(sinks[i]);
+			s.addElement(sink[i]);
+		}
+
+		src.connect(tap);
+		tap.connect(t);
+		t.connect(ms, 0);
+		t.connect(tap2, 1);
+		tap2.connect(sink[0]);
+		ms.connect(sink[1], 0);
+		ms.connect(sink[2], 1);
+		ms.connect(sink[3], 2);
+
+		src.setFlow(100.0);
+		tap.setOpen(true);
+		tap2.setOpen(true);
+		ms.setProportions(0.5, 0.3, 0.2);
+		for(Element e : s.getElements()) {
+			e.setMaxFlow(100.0);
+		}
+	}
+
+	private static FlowObserver names(List<String> names) {
+		return event -> names.add(event.getName());
+	}
+
+	@Test
+	public void testOnlyChangedSubtree() {
+		s.simulate(new StoreObserver(), true);
+
+		List<String> names = new ArrayList<>();
+		s.resimulate(names(names), true);
+		assertTrue("Nothing changed, nothing should be notified", names.isEmpty());
+
+		tap2.setOpen(false);
+		s.resimulate(names(names), true);
+		assertEquals("Only the closed tap and its sink should be notified", List.of("Tap2", "Sink A"), names);
+
+		ms.setProportions(0.2, 0.2, 0.6);
+		names.clear();
+		s.resimulate(names(names), true);
+		assertEquals(List.of("MS", "Sink B", "Sink C", "Sink D"), names);
+
+		src.setFlow(80.0);
+		StoreObserver obs = new StoreObserver();
+		s.resimulate(obs, true);
+		assertEquals(40.0, obs.inFlowOf("Tap2"), 0.001);
+		assertEquals(0.0, obs.inFlowOf("Sink A"), 0.001);
+		assertEquals(24.0, obs.inFlowOf("Sink D"), 0.001);
+	}
+
+	@Test
+	public void testNestedChanges() {
+		s.simulate(new StoreObserver(), true);
+		ms.setProportions(0.2, 0.2, 0.6);
+		tap.setOpen(false);
+		tap.setOpen(true);
+		src.setFlow(150.0);
+
+		StoreObserver obs = new StoreObserver();
+		FlowObserver store = FlowObserver.adapt(obs);
+		List<String> names = new ArrayList<>();
+		s.resimulate(event -> {
+			if(event.getLevel() == SimulationObserver.Level.Status) names.add(event.getName());
+			store.onFlow(event);
+		}, true);
+		assertEquals("Each element should be notified once", s.getElements().length, names.size());
+		assertTrue("Missing error notification for 'Tap'", obs.containsError("Tap"));
+		assertEquals(45.0, obs.inFlowOf("Sink D"), 0.001);
+	}
+
+	@Test
+	public void testSameAsFullSimulation() {
+		s.simulate(new StoreObserver(), false);
+		tap2.setOpen(false);
+		s.resimulate(new StoreObserver(), false);
+		ms.setProportions(0.1, 0.1, 0.8);
+		s.deleteElement("Tap2");
+		StoreObserver partial = new StoreObserver();
+		s.resimulate(partial, false);
+		assertEquals("Sink A should be notified after the delete", 50.0, partial.inFlowOf("Sink A"), 0.001);
+
+		StoreObserver full = new StoreObserver();
+		s.simulate(full, false);
+		for(String name : List.of("MS", "Sink A", "Sink D")) {
+			assertEquals("Wrong flow of " + name, full.inFlowOf(name), partial.inFlowOf(name), 0.001);
+		}
+	}
+
+	@Test
+	public void testIndexAfterDelete() {
+		s.simulate(new StoreObserver(), false);
+		s.deleteElement("Tap");
+		ms.setProportions(0.1, 0.1, 0.8);
+
+		List<Integer> indices = new ArrayList<>();
+		List<String> names = new ArrayList<>();
+		s.resimulate(event -> {
+			indices.add(event.getElement());
+			names.add(event.getName());
+		}, false);
+		assertFalse("Missing notifications", names.isEmpty());
+		Element[] elements = s.getElements();
+		for(int i=0; i<names.size(); ++i) {
+			assertEquals("Wrong index of " + names.get(i), names.get(i), elements[indices.get(i)].getName());
+		}
+	}
+
+	@Test
+	public void testConcurrentSimulations() throws InterruptedException {
+		Thread[] threads = new Thread[4];
+		boolean[] wrong = new boolean[threads.length];
+		for(int t=0; t<threads.length; ++t) {
+			int thread = t;
+			threads[t] = new Thread(() -> {
+				for(int i=0; i<10_000; ++i) {
+					StoreObserver obs = new StoreObserver();
+					if(i % 2 == 0) s.simulate(obs, false);
+					else s.resimulate(obs, false);
+					if(i % 2 == 0 && Math.abs(obs.inFlowOf("Sink D") - 10.0) > 0.001) wrong[thread] = true;
+				}
+			});
+			threads[t].start();
+		}
+		for(Thread t : threads) {
+			t.join();
+		}
+		for(int t=0; t<threads.length; ++t) {
+			assertFalse("Wrong flows in thread " + t, wrong[t]);
+		}
+	}
+
+	@Test
+	public void testDisconnected() {
+		s.simulate(new StoreObserver(), false);
+		Sink spare = new Sink("Spare");
+		s.addElement(spare);
+		tap.connect(spare); // the split and its subtree are no longer reached
+		ms.setProportions(0.1, 0.1, 0.8);
+
+		List<String> names = new ArrayList<>();
+		s.resimulate(names(names), false);
+		assertEquals(List.of("Tap", "Spare"), names);
+
+		tap2.setOpen(false);
+		names.clear();
+		s.resimulate(names(names), false);
+		assertTrue("Disconnected elements should not be notified", names.isEmpty());
+	}
+
+	@Test
+	public void testLargeSystem() {
+		final int numTaps = 200_000;
+		HSystem large = new HSystem();
+		Source source = new Source("Src");
+		source.setFlow(10.0);
+		large.addElement(source);
+		Split split = new Split("T");
+		large.addElement(split);
+		source.connect(split);
+		Tap first = null;
+		for(int b=0; b<2; ++b) {
+			Element last = split;
+			for(int i=0; i<numTaps; ++i) {
+				Tap t = new Tap("Tap" + b + "." + i);
+				t.setOpen(true);
+				large.addElement(t);
+				if(last == split) split.connect(t, b);
+				else last.connect(t);
+				last = t;
+				if(b == 1 && i == numTaps - 10) first = t;
+			}
+			Sink sink = new Sink("Sink" + b);
+			large.addElement(sink);
+			last.connect(sink);
+		}
+		large.simulate(new StoreObserver(), false);
+
+		int[] count = new int[1];
+		for(int k=0; k<10; ++k) {
+			first.setOpen(k % 2 == 1);
+			count[0] = 0;
+			large.resimulate(event -> count[0]++, false);
+			assertEquals("Only the elements after the toggled tap should be notified", 11, count[0]);
+		}
+	}
+}
@@ -0,0 +1,142 @@
+package it.polito.oop.test;
+
+import hydraulic.*;
+import static org.junit.Assert.*;
+import static it.polito.oop.test.Fixtures.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+
+public class TestLargeSystem {
+
+	/**
+	 * Expected order of the notifications: depth first, outputs in order
+	 */
+	private static void visit(Element elem, List<String> order) {
+		order.add(elem.getName());
+		if(elem instanceof Sink) return;
+		for(Element e : elem.getOutputs()) {
+			visit(e, order);
+		}
+	}
+
+	@Test
+	public void testNotificationOrder(){
+		HSystem s = new HSystem();
+		List<String> expected = new ArrayList<>();
+		for(int k=0; k<2; ++k) {
+			Source src = new Source("Src" + k);
+			src.setFlow(100.0 * (k+1));
+			s.addElement(src);
+			src.connect(tree(s, "E" + k, 6));
+			visit(src, expected);
+		}
+
+		List<String> order = new ArrayList<>();
+		s.simulate((level, type, name, inFlow, flows) -> order.add(name));
+		assertEquals("Wrong order of notifications", expected, order);
+
+		order.clear();
+		s.simulate((level, type, name, inFlow, flows) -> order.add(name));
+		assertEquals("Repeated simulation should give the same notifications", expected, order);
+	}
+
+	@Test
+	public void testLongPipeline(){
+		final int numElements = 1_000_000;
+		HSystem s = new HSystem();
+		Source src = new Source("Src");
+		src.setFlow(100.0);
+		s.addElement(src);
+		Element last = src;
+		for(int i=0; i<numElements-2; ++i) {
+			Tap tap = new Tap("Tap" + i);
+			tap.setOpen(true);
+			s.addElement(tap);
+			last.connect(tap);
+			last = tap;
+		}
+		Sink sink = new Sink("Sink");
+		s.addElement(sink);
+		last.connect(sink);
+
+		int[] count = new int[1];
+		double[] sinkFlow = new double[1];
+		s.simulate((level, type, name, inFlow, flows) -> {
+			count[0]++;
+			if(name.equals("Sink")) sinkFlow[0] = inFlow;
+		});
+
+		assertEquals("Wrong number of notifications", numElements, count[0]);
+		assertEquals("Wrong input flow of 'Sink'", 100.0, sinkFlow[0], 0.01);
+	}
+
+	@Test
+	public void testDeepLayout() throws IOException {
+		final int numElements = 100_000;
+		HSystem s = new HSystem();
+		Source src = new Source("Src");
+		s.addElement(src);
+		Element last = src;
+		for(int i=0; i<numElements; ++i) {
+			Element e = i % 1000 == 999 ? new Split("T" + i) : new Tap("Tap" + i);
+			s.addElement(e);
+			last.connect(e);
+			if(e instanceof Split) {
+				Sink sink = new Sink("Sink" + i);
+				s.addElement(sink);
+				e.connect(sink, 1);
+			}
+			last = e;
+		}
+
+		long[] chars = new long[1];
+		Writer counter = new Writer() {
+			@Override
+			public void write(char[] cbuf, int off, int len) {
+				chars[0] += len;
+			}
+			@Override
+			public void write(String str) {
+				chars[0] += str.length();
+			}
+			@Override
+			public void flush() {
+			}
+			@Override
+			public void close() {
+			}
+		};
+		s.layout(counter);
+		assertTrue("Layout too short", chars[0] > numElements * 10);
+	}
+
+	@Test
+	public void testLayoutWriter() throws IOException {
+		HSystem s = new HSystem();
+		Source src = new Source("Src");
+		Split t = new Split("T");
+		Tap tap = new Tap("R");
+		Sink sink = new Sink("S");
+		s.addElement(src);
+		s.addElement(t);
+		s.addElement(tap);
+		s.addElement(sink);
+		src.connect(t);
+		t.connect(tap, 0);
+		t.connect(sink, 1);
+
+		StringWriter out = new StringWriter();
+		s.layout(out);
+		assertEquals("[Src]Source -> [T]Split +-> [R]Tap -> *\n"
+				+ "                        |\n"
+				+ "                        +-> [S]Sink", out.toString());
+		assertEquals(out.toString(), s.layout());
+	}
+}
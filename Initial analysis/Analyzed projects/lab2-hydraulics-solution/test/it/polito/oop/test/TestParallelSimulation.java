@@ -0,0 +1,108 @@
+package it.polito.oop.test;
+
+import hydraulic.*;
+import static org.junit.Assert.*;
+import static it.polito.oop.test.Fixtures.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class TestParallelSimulation {
+
+	private HSystem s;
+	private ForkJoinPool pool;
+
+	@Before
+	public void setUp() {
+		s = new HSystem();
+		for(int k=0; k<20; ++k) {
+			Source src = new Source("Src" + k);
+			src.setFlow(10.0 * (k+1));
+			s.addElement(src);
+			src.connect(tree(s, "E" + k, 7));
+		}
+		for(Element e : s.getElements()) {
+			if(e instanceof Tap) ((Tap)e).setOpen(true);
+			if(! (e instanceof Source)) e.setMaxFlow(e instanceof Sink ? 1.0 : 50.0);
+		}
+		pool = new ForkJoinPool(4);
+	}
+
+	@After
+	public void tearDown() {
+		pool.shutdown();
+	}
+
+	private static SimulationObserver recorder(List<String> events) {
+		return (level, type, name, inFlow, flows) ->
+			events.add(level + " " + type + " " + name + " " + inFlow + " " + Arrays.toString(flows));
+	}
+
+	@Test
+	public void testOrdered() {
+		List<String> expected = new ArrayList<>();
+		s.simulate(recorder(expected), true);
+
+		List<String> events = new ArrayList<>();
+		s.simulateParallel(new ParallelObserver(recorder(events), true), true, pool);
+		assertEquals("Ordered notifications should be the same as the sequential ones", expected, events);
+	}
+
+	@Test
+	public void testUnordered() {
+		List<String> expected = new ArrayList<>();
+		s.simulate(recorder(expected), true);
+
+		List<String> events = new ArrayList<>(); // not thread-safe, protected by the adapter
+		s.simulateParallel(new ParallelObserver(recorder(events), false), true, pool);
+		Collections.sort(expected);
+		Collections.sort(events);
+		assertEquals("Notifications should be the same as the sequential ones", expected, events);
+	}
+
+	@Test
+	public void testStoreObserver() {
+		StoreObserver obs = new StoreObserver();
+		s.simulateParallel(new ParallelObserver(obs, false), true);
+		assertEquals("Wrong input flow of 'E3.0'", 40.0, obs.inFlowOf("E3.0"), 0.01);
+		assertTrue("Missing error notification for 'E19'", obs.containsError("E19"));
+	}
+
+	@Test
+	public void testManyEventsBeforeFork() {
+		HSystem chain = new HSystem();
+		Source src = new Source("Src");
+		src.setFlow(20.0);
+		chain.addElement(src);
+		Element last = src;
+		for(int i=0; i<14; ++i) { // the task records 16 events before forking at the split
+			Tap tap = new Tap("Tap" + i);
+			tap.setOpen(true);
+			chain.addElement(tap);
+			last.connect(tap);
+			last = tap;
+		}
+		Split split = new Split("T");
+		chain.addElement(split);
+		last.connect(split);
+		for(int i=0; i<2; ++i) {
+			Sink sink = new Sink("Sink" + i);
+			chain.addElement(sink);
+			split.connect(sink, i);
+		}
+
+		List<String> expected = new ArrayList<>();
+		chain.simulate(recorder(expected), true);
+		List<String> events = new ArrayList<>();
+		chain.simulateParallel(new ParallelObserver(recorder(events), true), true, pool);
+		assertEquals("Ordered notifications should be the same as the sequential ones", expected, events);
+	}
+}
@@ -0,0 +1,155 @@
+package it.polito.oop.test;
+
+import hydraulic.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+
+public class TestTopologyFile {
+
+	private HSystem s;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Before
+	public void setUp() {
+		s = new HSystem();
+		Source src = new Source("Src");
+		Tap tap = new Tap("Tap");
+		Split t = new Split("T");
+		Multisplit ms = new Multisplit("MS", 3);
+		Source src2 = new Source("Src 2");
+		Tap tap2 = new Tap("Tap 2");
+		s.addElement(src);
+		s.addElement(tap);
+		s.addElement(t);
+		s.addElement(ms);
+		s.addElement(src2);
+		s.addElement(tap2);
+		String[] sinks = {"Sink A", "Sink B", "Sink C", "Sink D", "Sink E"};
+		Sink[] sink = new Sink[sinks.length];
+		for(int i=0; i<sinks.length; ++i) {
+			sink[i] = new Sink(sinks[i]);
+			s.addElement(sink[i]);
+		}
+		s.addElement(new Multisplit("Spare", 2));
+
+		src.connect(tap);
+		tap.connect(t);
+		t.connect(ms, 0);
+		t.connect(sink[0], 1);
+		ms.connect(sink[1], 0);
+		ms.connect(sink[2], 1);
+		ms.connect(sink[3], 2);
+		src2.connect(tap2);
+		tap2.connect(sink[4]);
+
+		src.setFlow(100.0);
+		src2.setFlow(1.0/3);
+		tap.setOpen(true);
+		tap2.setOpen(false);
+		ms.setProportions(0.5, 0.3, 0.2);
+		for(Element e : s.getElements()) {
+			e.setMaxFlow(e.getName().length() * 10.0);
+		}
+	}
+
+	private void assertSameSystem(HSystem restored) {
+		assertEquals("Wrong layout", s.layout(), restored.layout());
+		Element[] elements = s.getElements();
+		Element[] other = restored.getElements();
+		assertEquals("Wrong number of elements", elements.length, other.length);
+		for(int i=0; i<elements.length; ++i) {
+			assertEquals(elements[i].getClass(), other[i].getClass());
+			assertEquals(elements[i].getName(), other[i].getName());
+		}
+
+		StoreObserver expected = new StoreObserver();
+		s.simulate(expected, true);
+		StoreObserver obs = new StoreObserver();
+		restored.simulate(obs, true);
+		assertEquals("Wrong number of errors", expected.getErrorCount(), obs.getErrorCount());
+		for(String name : List.of("Src 2", "Tap", "MS", "Sink A", "Sink D", "Sink E")) {
+			assertEquals("Wrong input flow of " + name, expected.inFlowOf(name), obs.inFlowOf(name), 0.0);
+			assertEquals("Wrong error of " + name, expected.containsError(name), obs.containsError(name));
+		}
+	}
+
+	@Test
+	public void testBinary() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("system.hsys");
+		TopologyFile.write(s, file);
+		assertSameSystem(TopologyFile.read(file));
+	}
+
+	@Test
+	public void testText() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("system.txt");
+		TopologyFile.writeText(s, file);
+		List<String> lines = Files.readAllLines(file);
+		assertEquals("Tap 30.0 open 2 Tap", lines.get(2));
+		assertEquals("Multisplit 20.0 0.5,0.3,0.2 7,8,9 MS", lines.get(4));
+		assertEquals("Sink 60.0 - - Sink A", lines.get(7));
+		assertEquals("Multisplit 50.0 - *,* Spare", lines.get(12));
+		assertSameSystem(TopologyFile.readText(file));
+
+		Files.write(file, List.of("# comment", "Source 0.0 10.0 1 Src", "", "Sink 0.0 - - The sink"));
+		HSystem written = TopologyFile.readText(file);
+		assertEquals("The sink", written.getElement("Src").getOutput().getName());
+	}
+
+	@Test
+	public void testCorruption() throws IOException {
+		Path file = folder.getRoot().toPath().resolve("system.hsys");
+		TopologyFile.write(s, file);
+		byte[] bytes = Files.readAllBytes(file);
+		bytes[bytes.length / 2] ^= 0x10;
+		Files.write(file, bytes);
+		assertThrows(StreamCorruptedException.class, () -> TopologyFile.read(file));
+
+		Files.write(file, List.of("Tap 0.0 ajar 1 Tap"));
+		assertThrows(StreamCorruptedException.class, () -> TopologyFile.readText(file));
+		Files.write(file, List.of("Tap 0.0 open 7 Tap"));
+		assertThrows(StreamCorruptedException.class, () -> TopologyFile.readText(file));
+	}
+
+	@Test
+	public void testLargeSystem() throws IOException {
+		final int numTaps = 1_000_000;
+		HSystem large = new HSystem();
+		Source src = new Source("Src");
+		src.setFlow(10.0);
+		large.addElement(src);
+		Element last = src;
+		for(int i=0; i<numTaps; ++i) {
+			Tap tap = new Tap("Tap" + i);
+			tap.setOpen(true);
+			large.addElement(tap);
+			last.connect(tap);
+			last = tap;
+		}
+		Sink sink = new Sink("Sink");
+		large.addElement(sink);
+		last.connect(sink);
+
+		Path file = folder.getRoot().toPath().resolve("large.hsys");
+		TopologyFile.write(large, file);
+		long bytesPerElement = Files.size(file) / (numTaps + 2);
+		assertTrue("File too large: " + bytesPerElement + " bytes per element", bytesPerElement <= 32);
+		HSystem restored = TopologyFile.read(file);
+
+		assertEquals(numTaps + 2, restored.getElements().length);
+		assertSame(restored.getElement("Sink"), restored.getElement("Tap" + (numTaps - 1)).getOutput());
+	}
+}
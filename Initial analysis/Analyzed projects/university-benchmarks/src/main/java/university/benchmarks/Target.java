@@ -0,0 +1,24 @@
+package university.benchmarks;
+
+/**
+ * Operations of a University implementation that are measured by the benchmarks.
+ *
+ * Each implementation provides a {@code Targets} class, selected by a Maven profile,
+ * that adapts its API to this interface.
+ */
+public interface Target {
+
+	int enroll(String first, String last);
+
+	int activate(String title, String teacher);
+
+	void register(int studentId, int courseCode);
+
+	void exam(int studentId, int courseCode, int grade);
+
+	String studentAvg(int studentId);
+
+	String courseAvg(int courseCode);
+
+	String topThreeStudents();
+}
@@ -0,0 +1,212 @@
+package university.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the main operations of a University, for different numbers of students.
+ *
+ * The write operations ({@code enroll}, {@code register}, {@code exam}) are measured
+ * as the time to apply them to all the students of a freshly prepared university;
+ * the queries are measured as the average time of a single call on a populated university.
+ *
+ * Every student is registered to {@value #COURSES_PER_STUDENT} of the {@value #COURSES}
+ * courses and takes an exam in each of them.
+ * Implementations with a fixed capacity (see {@link Targets#MAX_STUDENTS}) are populated
+ * up to their capacity, so their results for larger sizes are not comparable.
+ */
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class UniversityBenchmark {
+
+	static final int COURSES = 50;
+	static final int COURSES_PER_STUDENT = 5;
+	static final int INITIAL_ID = 10000;
+	static final int INITIAL_CODE = 10;
+
+	/**
+	 * Preparation stages of a university
+	 */
+	enum Stage { COURSES, STUDENTS, REGISTRATIONS, EXAMS }
+
+	@State(Scope.Benchmark)
+	public static class Size {
+		@Param({"1000", "100000", "1000000"})
+		public int students;
+
+		int actual() {
+			return Math.min(students, Targets.MAX_STUDENTS);
+		}
+	}
+
+	/**
+	 * Builds a university populated up to the given stage
+	 */
+	static Target prepare(int students, Stage stage) {
+		Logger.getLogger("University").setLevel(Level.OFF);
+		Target u = Targets.create("Benchmark University");
+		for(int c=0; c<COURSES; ++c) {
+			u.activate("Course " + c, "Teacher " + c);
+		}
+		if(stage.compareTo(Stage.STUDENTS) >= 0) enrollAll(u, students);
+		if(stage.compareTo(Stage.REGISTRATIONS) >= 0) registerAll(u, students);
+		if(stage.compareTo(Stage.EXAMS) >= 0) examAll(u, students);
+		return u;
+	}
+
+	static void enrollAll(Target u, int students) {
+		for(int i=0; i<students; ++i) {
+			u.enroll("First" + i, "Last" + i);
+		}
+	}
+
+	static void registerAll(Target u, int students) {
+		for(int i=0; i<students; ++i) {
+			for(int j=0; j<COURSES_PER_STUDENT; ++j) {
+				u.register(INITIAL_ID + i, courseOf(i, j));
+			}
+		}
+	}
+
+	static void examAll(Target u, int students) {
+		for(int i=0; i<students; ++i) {
+			for(int j=0; j<COURSES_PER_STUDENT; ++j) {
+				u.exam(INITIAL_ID + i, courseOf(i, j), 18 + (i + j) % 13);
+			}
+		}
+	}
+
+	static int courseOf(int student, int j) {
+		return INITIAL_CODE + (student + j) % COURSES;
+	}
+
+// Write operations
+
+	@State(Scope.Thread)
+	public static class Fresh {
+		Target university;
+		int students;
+
+		@Setup(org.openjdk.jmh.annotations.Level.Invocation)
+		public void setUp(Size size) {
+			students = size.actual();
+			university = prepare(students, Stage.COURSES);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Enrolled {
+		Target university;
+		int students;
+
+		@Setup(org.openjdk.jmh.annotations.Level.Invocation)
+		public void setUp(Size size) {
+			students = size.actual();
+			university = prepare(students, Stage.STUDENTS);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Registered {
+		Target university;
+		int students;
+
+		@Setup(org.openjdk.jmh.annotations.Level.Invocation)
+		public void setUp(Size size) {
+			students = size.actual();
+			university = prepare(students, Stage.REGISTRATIONS);
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public Target enroll(Fresh state) {
+		enrollAll(state.university, state.students);
+		return state.university;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public Target register(Enrolled state) {
+		registerAll(state.university, state.students);
+		return state.university;
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public Target exam(Registered state) {
+		examAll(state.university, state.students);
+		return state.university;
+	}
+
+// Queries
+
+	@State(Scope.Benchmark)
+	public static class Populated {
+		Target university;
+		int students;
+
+		@Setup(org.openjdk.jmh.annotations.Level.Trial)
+		public void setUp(Size size) {
+			students = size.actual();
+			university = prepare(students, Stage.EXAMS);
+		}
+	}
+
+	/**
+	 * Spreads the queries over all the students and courses
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+		private static final int STRIDE = 7919; // prime, visits all the students in turn
+		private int next;
+
+		int nextStudent(Populated p) {
+			next = (next + STRIDE) % p.students;
+			return INITIAL_ID + next;
+		}
+
+		int nextCourse() {
+			next = (next + STRIDE) % COURSES;
+			return INITIAL_CODE + next;
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public String studentAvg(Populated state, Cursor cursor) {
+		return state.university.studentAvg(cursor.nextStudent(state));
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public String courseAvg(Populated state, Cursor cursor) {
+		return state.university.courseAvg(cursor.nextCourse());
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	public String topThreeStudents(Populated state) {
+		return state.university.topThreeStudents();
+	}
+}
@@ -0,0 +1,58 @@
+package university.benchmarks;
+
+import university.UniversityExt;
+
+/**
+ * Adapter for the LAB01_University implementation ({@link UniversityExt})
+ */
+public final class Targets {
+
+	public static final String NAME = "LAB01_University";
+
+	/**
+	 * Maximum number of students the implementation can hold: it uses fixed-size arrays
+	 */
+	public static final int MAX_STUDENTS = 1000;
+
+	private Targets() {}
+
+	public static Target create(String name) {
+		UniversityExt u = new UniversityExt(name);
+		return new Target() {
+			@Override
+			public int enroll(String first, String last) {
+				return u.enroll(first, last);
+			}
+
+			@Override
+			public int activate(String title, String teacher) {
+				return u.activate(title, teacher);
+			}
+
+			@Override
+			public void register(int studentId, int courseCode) {
+				u.register(studentId, courseCode);
+			}
+
+			@Override
+			public void exam(int studentId, int courseCode, int grade) {
+				u.exam(studentId, courseCode, grade);
+			}
+
+			@Override
+			public String studentAvg(int studentId) {
+				return u.studentAvg(studentId);
+			}
+
+			@Override
+			public String courseAvg(int courseCode) {
+				return u.courseAvg(courseCode);
+			}
+
+			@Override
+			public String topThreeStudents() {
+				return u.topThreeStudents();
+			}
+		};
+	}
+}
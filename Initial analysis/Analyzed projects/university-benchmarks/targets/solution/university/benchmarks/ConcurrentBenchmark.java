@@ -0,0 +1,97 @@
+package university.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import university.University;
+
+/**
+ * Scaling of the concurrent writes of a University with the number of threads.
+ *
+ * The same work, enrolling {@value #STUDENTS} students and registering each of them
+ * to {@value UniversityBenchmark#COURSES_PER_STUDENT} courses with an exam,
+ * is split evenly among the threads: with linear scaling the time halves
+ * every time the threads double, up to the number of available processors.
+ *
+ * Only the lab1_university_solution implementation is thread-safe,
+ * so the benchmark is part of its profile.
+ */
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class ConcurrentBenchmark {
+
+	static final int STUDENTS = 32_000;
+
+	@State(Scope.Benchmark)
+	public static class Workers {
+		@Param({"1", "2", "4", "8", "16", "32"})
+		public int threads;
+
+		ExecutorService pool;
+		University university;
+
+		@Setup(org.openjdk.jmh.annotations.Level.Trial)
+		public void start() {
+			pool = Executors.newFixedThreadPool(threads);
+		}
+
+		@TearDown(org.openjdk.jmh.annotations.Level.Trial)
+		public void stop() {
+			pool.shutdown();
+		}
+
+		@Setup(org.openjdk.jmh.annotations.Level.Invocation)
+		public void setUp() {
+			Logger.getLogger("University").setLevel(Level.OFF);
+			university = new University("Benchmark University");
+			for(int c=0; c<UniversityBenchmark.COURSES; ++c) {
+				university.activate("Course " + c, "Teacher " + c);
+			}
+		}
+	}
+
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public University writes(Workers state) throws Exception {
+		University u = state.university;
+		int perThread = STUDENTS / state.threads;
+		List<Future<?>> done = new ArrayList<>(state.threads);
+		for(int t=0; t<state.threads; ++t) {
+			done.add(state.pool.submit(() -> {
+				for(int i=0; i<perThread; ++i) {
+					int id = u.enroll("First" + i, "Last" + i);
+					for(int j=0; j<UniversityBenchmark.COURSES_PER_STUDENT; ++j) {
+						int code = UniversityBenchmark.courseOf(id, j);
+						u.register(id, code);
+						u.exam(id, code, 18 + j);
+					}
+				}
+			}));
+		}
+		for(Future<?> f : done) {
+			f.get();
+		}
+		return u;
+	}
+}
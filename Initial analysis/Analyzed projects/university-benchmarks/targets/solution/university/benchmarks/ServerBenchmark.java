@@ -0,0 +1,122 @@
+package university.benchmarks;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import university.University;
+import university.UniversityServer;
+
+/**
+ * Throughput and latency of the requests to a UniversityServer under a mixed load.
+ *
+ * 1024 concurrent clients, each with its own connection, send enrollments, registrations,
+ * averages and rankings at the same time; the throughput mode reports the requests
+ * per millisecond of each kind and of the whole group, and the sample time mode reports
+ * the distribution of the latencies (p50, p99, ...) of each kind of request.
+ *
+ * The server is started with the idle connection limit of the JDK server raised
+ * above the number of clients, as documented by {@link UniversityServer}.
+ */
+@Fork(value = 1, jvmArgsAppend = "-Dsun.net.httpserver.maxIdleConnections=" + ServerBenchmark.MAX_CONNECTIONS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ServerBenchmark {
+
+	static final String MAX_CONNECTIONS = "4096";
+	static final int STUDENTS = 2_000;
+
+	@State(Scope.Group)
+	public static class Service {
+		University university;
+		UniversityServer server;
+		HttpClient client;
+		String base;
+
+		@Setup(org.openjdk.jmh.annotations.Level.Trial)
+		public void start() throws IOException {
+			Logger.getLogger("University").setLevel(Level.OFF);
+			university = new University("Benchmark University");
+			for(int c=0; c<UniversityBenchmark.COURSES; ++c) {
+				university.activate("Course " + c, "Teacher " + c);
+			}
+			for(int i=0; i<STUDENTS; ++i) {
+				university.enroll("First" + i, "Last" + i);
+			}
+			server = new UniversityServer(university, 0);
+			server.start();
+			client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+			base = "http://localhost:" + server.getPort();
+		}
+
+		@TearDown(org.openjdk.jmh.annotations.Level.Trial)
+		public void stop() {
+			server.stop(0);
+		}
+
+		int send(String method, String path) throws IOException, InterruptedException {
+			HttpRequest request = HttpRequest.newBuilder(URI.create(base + path))
+					.method(method, HttpRequest.BodyPublishers.noBody())
+					.build();
+			int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+			if(status >= 300) throw new IllegalStateException("Request " + path + " failed with status " + status);
+			return status;
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Client {
+		int next;
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(256)
+	public int enroll(Service service, Client client) throws Exception {
+		return service.send("POST", "/enroll?first=New" + client.next++ + "&last=Student");
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(256)
+	public int register(Service service, Client client) throws Exception {
+		int i = client.next++;
+		int id = UniversityBenchmark.INITIAL_ID + i % STUDENTS;
+		return service.send("POST", "/register?student=" + id + "&course=" + UniversityBenchmark.courseOf(id, i / STUDENTS));
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(256)
+	public int avg(Service service, Client client) throws Exception {
+		return service.send("GET", "/avg?student=" + (UniversityBenchmark.INITIAL_ID + client.next++ % STUDENTS));
+	}
+
+	@Benchmark
+	@Group("mixed")
+	@GroupThreads(256)
+	public int top(Service service) throws Exception {
+		return service.send("GET", "/top?k=5");
+	}
+}
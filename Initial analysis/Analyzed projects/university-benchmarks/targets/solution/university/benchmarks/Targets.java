@@ -0,0 +1,58 @@
+package university.benchmarks;
+
+import university.University;
+
+/**
+ * Adapter for the lab1_university_solution implementation
+ */
+public final class Targets {
+
+	public static final String NAME = "lab1_university_solution";
+
+	/**
+	 * Maximum number of students the implementation can hold
+	 */
+	public static final int MAX_STUDENTS = Integer.MAX_VALUE;
+
+	private Targets() {}
+
+	public static Target create(String name) {
+		University u = new University(name);
+		return new Target() {
+			@Override
+			public int enroll(String first, String last) {
+				return u.enroll(first, last);
+			}
+
+			@Override
+			public int activate(String title, String teacher) {
+				return u.activate(title, teacher);
+			}
+
+			@Override
+			public void register(int studentId, int courseCode) {
+				u.register(studentId, courseCode);
+			}
+
+			@Override
+			public void exam(int studentId, int courseCode, int grade) {
+				u.exam(studentId, courseCode, grade);
+			}
+
+			@Override
+			public String studentAvg(int studentId) {
+				return u.studentAvg(studentId);
+			}
+
+			@Override
+			public String courseAvg(int courseCode) {
+				return u.courseAvg(courseCode);
+			}
+
+			@Override
+			public String topThreeStudents() {
+				return u.topThreeStudents();
+			}
+		};
+	}
+}